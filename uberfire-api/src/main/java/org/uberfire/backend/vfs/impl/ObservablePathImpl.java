@@ -4,10 +4,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.enterprise.context.Dependent;
-import javax.enterprise.event.Observes;
+import javax.enterprise.event.Event;
 import javax.enterprise.inject.Alternative;
 import javax.inject.Inject;
 
+import org.jboss.errai.bus.client.api.Subscription;
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageBus;
+import org.jboss.errai.bus.client.api.messaging.MessageCallback;
 import org.jboss.errai.common.client.api.annotations.Portable;
 import org.jboss.errai.ioc.client.container.IOC;
 import org.jboss.errai.security.shared.api.identity.User;
@@ -17,11 +21,13 @@ import org.uberfire.backend.vfs.Path;
 import org.uberfire.mvp.Command;
 import org.uberfire.mvp.ParameterizedCommand;
 import org.uberfire.rpc.SessionInfo;
+import org.uberfire.workbench.events.PathSubscriptionEvent;
 import org.uberfire.workbench.events.ResourceBatchChangesEvent;
 import org.uberfire.workbench.events.ResourceChange;
 import org.uberfire.workbench.events.ResourceCopied;
 import org.uberfire.workbench.events.ResourceCopiedEvent;
 import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceOverflowEvent;
 import org.uberfire.workbench.events.ResourceRenamed;
 import org.uberfire.workbench.events.ResourceRenamedEvent;
 import org.uberfire.workbench.events.ResourceUpdatedEvent;
@@ -38,6 +44,14 @@ IsVersioned {
     @Inject
     private transient SessionInfo sessionInfo;
 
+    @Inject
+    private transient MessageBus bus;
+
+    @Inject
+    private transient Event<PathSubscriptionEvent> pathSubscriptionEvent;
+
+    private transient Subscription subscription;
+
     private transient List<Command> onRenameCommand = new ArrayList<Command>();
     private transient List<Command> onDeleteCommand = new ArrayList<Command>();
     private transient List<Command> onUpdateCommand = new ArrayList<Command>();
@@ -52,15 +66,60 @@ IsVersioned {
 
     @Override
     public ObservablePath wrap( final Path path ) {
+        // the subscription belongs to the path wrapped so far
+        unsubscribe();
         if ( path instanceof ObservablePathImpl ) {
             this.original = ( (ObservablePathImpl) path ).path;
         } else {
             this.original = path;
         }
         this.path = this.original;
+        subscribe();
         return this;
     }
 
+    /**
+     * Resource events are not broadcast to every client: the server only sends this session the events of the paths
+     * it subscribed to, so each managed instance subscribes its path while it's alive.
+     */
+    private void subscribe() {
+        if ( bus == null || pathSubscriptionEvent == null || sessionInfo == null || sessionInfo.getId() == null ) {
+            return;
+        }
+        subscription = bus.subscribe( PathSubscriptionEvent.RESOURCE_EVENTS_SUBJECT, new MessageCallback() {
+            @Override
+            public void callback( final Message message ) {
+                onResourceEvent( message.get( Object.class, PathSubscriptionEvent.EVENT_PART ) );
+            }
+        } );
+        pathSubscriptionEvent.fire( new PathSubscriptionEvent( path.toURI(), true ) );
+    }
+
+    private void unsubscribe() {
+        if ( subscription == null ) {
+            return;
+        }
+        subscription.remove();
+        subscription = null;
+        pathSubscriptionEvent.fire( new PathSubscriptionEvent( path.toURI(), false ) );
+    }
+
+    void onResourceEvent( final Object event ) {
+        if ( event instanceof ResourceRenamedEvent ) {
+            onResourceRenamed( (ResourceRenamedEvent) event );
+        } else if ( event instanceof ResourceDeletedEvent ) {
+            onResourceDeleted( (ResourceDeletedEvent) event );
+        } else if ( event instanceof ResourceUpdatedEvent ) {
+            onResourceUpdated( (ResourceUpdatedEvent) event );
+        } else if ( event instanceof ResourceCopiedEvent ) {
+            onResourceCopied( (ResourceCopiedEvent) event );
+        } else if ( event instanceof ResourceBatchChangesEvent ) {
+            onResourceBatchEvent( (ResourceBatchChangesEvent) event );
+        } else if ( event instanceof ResourceOverflowEvent ) {
+            onResourceOverflow( (ResourceOverflowEvent) event );
+        }
+    }
+
     @Override
     public String getFileName() {
         return path.getFileName();
@@ -151,12 +210,13 @@ IsVersioned {
         onConcurrentDeleteCommand.clear();
         onConcurrentUpdateCommand.clear();
         onConcurrentCopyCommand.clear();
+        unsubscribe();
         if ( IOC.getBeanManager() != null ) {
             IOC.getBeanManager().destroyBean( this );
         }
     }
 
-    void onResourceRenamed( @Observes final ResourceRenamedEvent renamedEvent ) {
+    void onResourceRenamed( final ResourceRenamedEvent renamedEvent ) {
         if ( path != null && path.equals( renamedEvent.getPath() ) ) {
             path = renamedEvent.getDestinationPath();
             if ( sessionInfo.getId().equals( renamedEvent.getSessionInfo().getId() ) ) {
@@ -170,7 +230,7 @@ IsVersioned {
         }
     }
 
-    void onResourceDeleted( @Observes final ResourceDeletedEvent deletedEvent ) {
+    void onResourceDeleted( final ResourceDeletedEvent deletedEvent ) {
         if ( path != null && path.equals( deletedEvent.getPath() ) ) {
             if ( sessionInfo.getId().equals( deletedEvent.getSessionInfo().getId() ) ) {
                 executeDeleteCommands();
@@ -182,7 +242,7 @@ IsVersioned {
         }
     }
 
-    void onResourceUpdated( @Observes final ResourceUpdatedEvent updatedEvent ) {
+    void onResourceUpdated( final ResourceUpdatedEvent updatedEvent ) {
         if ( path != null && path.equals( updatedEvent.getPath() ) ) {
             if ( sessionInfo.getId().equals( updatedEvent.getSessionInfo().getId() ) ) {
                 executeUpdateCommands();
@@ -194,7 +254,7 @@ IsVersioned {
         }
     }
 
-    void onResourceCopied( @Observes final ResourceCopiedEvent copiedEvent ) {
+    void onResourceCopied( final ResourceCopiedEvent copiedEvent ) {
         if ( path != null && path.equals( copiedEvent.getPath() ) ) {
             if ( sessionInfo.getId().equals( copiedEvent.getSessionInfo().getId() ) ) {
                 executeCopyCommands();
@@ -207,7 +267,18 @@ IsVersioned {
         }
     }
 
-    void onResourceBatchEvent( @Observes final ResourceBatchChangesEvent batchEvent ) {
+    /**
+     * Changes below the root were lost, so the path is handled as updated by someone else.
+     */
+    void onResourceOverflow( final ResourceOverflowEvent overflowEvent ) {
+        if ( path != null && overflowEvent.affects( path ) ) {
+            executeConcurrentUpdateCommand( path,
+                                            overflowEvent.getSessionInfo().getId(),
+                                            overflowEvent.getSessionInfo().getIdentity() );
+        }
+    }
+
+    void onResourceBatchEvent( final ResourceBatchChangesEvent batchEvent ) {
         if ( path != null && batchEvent.containPath( path ) ) {
             if ( sessionInfo.getId().equals( batchEvent.getSessionInfo().getId() ) ) {
                 for ( final ResourceChange change : batchEvent.getChanges( path ) ) {
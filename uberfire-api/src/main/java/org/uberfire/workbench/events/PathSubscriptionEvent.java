@@ -0,0 +1,44 @@
+package org.uberfire.workbench.events;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+import static org.uberfire.commons.validation.PortablePreconditions.*;
+
+/**
+ * An Event sent by a client to (un)subscribe its session to the resource events of a Path. The session is the one the
+ * event arrives from on the server, never one named by the client. Resource events of subscribed paths are delivered
+ * to the session on {@link #RESOURCE_EVENTS_SUBJECT}, under {@link #EVENT_PART}.
+ */
+@Portable
+public class PathSubscriptionEvent implements UberFireEvent {
+
+    public static final String RESOURCE_EVENTS_SUBJECT = "org.uberfire.backend.vfs.ResourceEvents";
+    public static final String EVENT_PART = "event";
+
+    private String uri;
+    private boolean subscribe;
+
+    public PathSubscriptionEvent() {
+        //Empty constructor for Errai marshalling
+    }
+
+    public PathSubscriptionEvent( final String uri,
+                                  final boolean subscribe ) {
+        this.uri = checkNotEmpty( "uri", uri );
+        this.subscribe = subscribe;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public boolean isSubscribe() {
+        return subscribe;
+    }
+
+    @Override
+    public String toString() {
+        return "PathSubscriptionEvent [uri=" + uri + ", subscribe=" + subscribe + "]";
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.uberfire.workbench.events;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.rpc.SessionInfo;
+
+import static org.uberfire.commons.validation.PortablePreconditions.*;
+
+/**
+ * An Event indicating resource events below a root were dropped, so anything open below it may have changed without
+ * notice and has to be reloaded.
+ */
+@Portable
+public class ResourceOverflowEvent implements UberFireEvent {
+
+    private Path root;
+    private SessionInfo sessionInfo;
+
+    public ResourceOverflowEvent() {
+        //Empty constructor for Errai marshalling
+    }
+
+    public ResourceOverflowEvent( final Path root,
+                                  final SessionInfo sessionInfo ) {
+        this.root = checkNotNull( "root", root );
+        this.sessionInfo = checkNotNull( "sessionInfo", sessionInfo );
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public SessionInfo getSessionInfo() {
+        return sessionInfo;
+    }
+
+    public boolean affects( final Path path ) {
+        return path != null && affects( path.toURI() );
+    }
+
+    public boolean affects( final String uri ) {
+        final String rootUri = root.toURI();
+        if ( uri == null ) {
+            return false;
+        }
+        if ( uri.equals( rootUri ) ) {
+            return true;
+        }
+        return uri.startsWith( rootUri.endsWith( "/" ) ? rootUri : rootUri + "/" );
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceOverflowEvent [root=" + root + ", sessionInfo=" + sessionInfo + "]";
+    }
+
+}
@@ -1,13 +1,7 @@
 package org.uberfire.backend.server.io.watch;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PreDestroy;
@@ -16,11 +10,7 @@ import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.naming.InitialContext;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.util.Filter;
-import org.uberfire.commons.async.DescriptiveRunnable;
-import org.uberfire.commons.async.DescriptiveThreadFactory;
 import org.uberfire.commons.services.cdi.ApplicationStarted;
 import org.uberfire.io.IOWatchService;
 import org.uberfire.java.nio.file.FileSystem;
@@ -30,24 +20,28 @@ import org.uberfire.java.nio.file.WatchService;
 import org.uberfire.workbench.events.ResourceAddedEvent;
 import org.uberfire.workbench.events.ResourceBatchChangesEvent;
 import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceOverflowEvent;
 import org.uberfire.workbench.events.ResourceRenamedEvent;
 import org.uberfire.workbench.events.ResourceUpdatedEvent;
 
 public abstract class AbstractIOWatchService implements IOWatchService,
                                                         Filter<WatchEvent<?>> {
 
-    private static final Logger LOG = LoggerFactory.getLogger( AbstractIOWatchService.class );
-
     private static final Integer AWAIT_TERMINATION_TIMEOUT = Integer.parseInt(System.getProperty("org.uberfire.watcher.quitetimeout", "3"));
+    private static final Integer WORKER_THREADS = Integer.parseInt( System.getProperty( "org.uberfire.watcher.workers", "4" ) );
+    private static final Integer BATCH_SIZE = Integer.parseInt( System.getProperty( "org.uberfire.watcher.batchsize", "100" ) );
+    private static final Long MAX_IDLE_WAIT = Long.parseLong( System.getProperty( "org.uberfire.watcher.idlewait", "50" ) );
 
-    private final ExecutorService executorService = Executors.newCachedThreadPool( new DescriptiveThreadFactory() );
+    private final WatchServiceDispatcher dispatcher = new WatchServiceDispatcher( "uberfire-watch",
+                                                                                  Math.max( 1, WORKER_THREADS ),
+                                                                                  Math.max( 1, BATCH_SIZE ),
+                                                                                  Math.max( 1, MAX_IDLE_WAIT ) );
 
     private final List<FileSystem> fileSystems = new ArrayList<FileSystem>();
     private final List<WatchService> watchServices = new ArrayList<WatchService>();
     protected boolean isDisposed = false;
 
     private boolean started;
-    private final Set<AsyncWatchService> watchThreads = new HashSet<AsyncWatchService>();
     @Inject
     private Event<ResourceBatchChangesEvent> resourceBatchChanges;
     @Inject
@@ -58,10 +52,10 @@ public abstract class AbstractIOWatchService implements IOWatchService,
     private Event<ResourceDeletedEvent> resourceDeletedEvent;
     @Inject
     private Event<ResourceAddedEvent> resourceAddedEvent;
+    @Inject
+    private Event<ResourceOverflowEvent> resourceOverflowEvent;
 
-    private IOWatchServiceExecutor executor = null;
-
-    private final Set<Future<?>> jobs = new CopyOnWriteArraySet<Future<?>>();
+    private volatile IOWatchServiceExecutor executor = null;
 
     public AbstractIOWatchService() {
         final boolean autostart = Boolean.parseBoolean( System.getProperty( "org.uberfire.watcher.autostart", "true" ) );
@@ -73,21 +67,14 @@ public abstract class AbstractIOWatchService implements IOWatchService,
     public synchronized void start() {
         if ( !started ) {
             this.started = true;
-            for ( final AsyncWatchService watchThread : watchThreads ) {
-                final IOWatchServiceExecutor watchServiceExecutor = getWatchServiceExecutor();
-                jobs.add( executorService.submit( new DescriptiveRunnable() {
-                    @Override
-                    public String getDescription() {
-                        return watchThread.getDescription();
-                    }
-
-                    @Override
-                    public void run() {
-                        watchThread.execute( watchServiceExecutor );
-                    }
-                } ) );
-            }
-            watchThreads.clear();
+            // events are only injected once constructed, so the executor is looked up on first use
+            dispatcher.start( new IOWatchServiceExecutor() {
+                @Override
+                public void execute( final WatchKey watchKey,
+                                     final Filter<WatchEvent<?>> filter ) {
+                    getWatchServiceExecutor().execute( watchKey, filter );
+                }
+            }, this );
         }
     }
 
@@ -97,27 +84,7 @@ public abstract class AbstractIOWatchService implements IOWatchService,
         for ( final WatchService watchService : watchServices ) {
             watchService.close();
         }
-        for ( final Future<?> job : jobs ) {
-            if ( !job.isCancelled() && !job.isDone() ) {
-                job.cancel( true );
-            }
-        }
-        executorService.shutdown(); // Disable new tasks from being submitted
-        try {
-            // Wait a while for existing tasks to terminate
-            if ( !executorService.awaitTermination( AWAIT_TERMINATION_TIMEOUT, TimeUnit.SECONDS ) ) {
-                executorService.shutdownNow(); // Cancel currently executing tasks
-                // Wait a while for tasks to respond to being cancelled
-                if ( !executorService.awaitTermination( AWAIT_TERMINATION_TIMEOUT, TimeUnit.SECONDS ) ) {
-                    LOG.error( "Thread pool did not terminate" );
-                }
-            }
-        } catch ( InterruptedException ie ) {
-            // (Re-)Cancel if current thread also interrupted
-            executorService.shutdownNow();
-            // Preserve interrupt status
-            Thread.currentThread().interrupt();
-        }
+        dispatcher.shutdown( AWAIT_TERMINATION_TIMEOUT, TimeUnit.SECONDS );
     }
 
     @Override
@@ -125,78 +92,50 @@ public abstract class AbstractIOWatchService implements IOWatchService,
         return fileSystems.contains( fs );
     }
 
+    /**
+     * Watch services are not given a thread each: their keys are picked up by a shared {@link WatchServiceDispatcher},
+     * which fires the events of a file system in order, in batches, once this service is started.
+     */
     @Override
     public void addWatchService( final FileSystem fs,
                                  final WatchService ws ) {
         fileSystems.add( fs );
         watchServices.add( ws );
-
-        final AsyncWatchService asyncWatchService = new AsyncWatchService() {
-            @Override
-            public void execute( final IOWatchServiceExecutor wsExecutor ) {
-                while ( !isDisposed ) {
-                    final WatchKey wk;
-                    try {
-                        wk = ws.take();
-                    } catch ( final Exception ex ) {
-                        break;
-                    }
-
-                    wsExecutor.execute( wk, AbstractIOWatchService.this );
-
-                    // Reset the key -- this step is critical if you want to
-                    // receive further watch events.  If the key is no longer valid,
-                    // the directory is inaccessible so exit the loop.
-                    boolean valid = wk.reset();
-                    if ( !valid ) {
-                        break;
-                    }
-                }
-            }
-
-            @Override
-            public String getDescription() {
-                return AbstractIOWatchService.this.getClass().getName() + "(" + ws.toString() + ")";
-            }
-        };
-
-        if ( started ) {
-            final IOWatchServiceExecutor watchServiceExecutor = getWatchServiceExecutor();
-            executorService.execute( new DescriptiveRunnable() {
-                @Override
-                public String getDescription() {
-                    return asyncWatchService.getDescription();
-                }
-
-                @Override
-                public void run() {
-                    asyncWatchService.execute( watchServiceExecutor );
-                }
-            } );
-        } else {
-            watchThreads.add( asyncWatchService );
-        }
+        dispatcher.register( ws );
     }
 
     public void configureOnEvent( @Observes ApplicationStarted applicationStartedEvent ) {
         start();
     }
 
+    /**
+     * Resolved once, by the first dispatcher worker that needs it; the other workers wait for it rather than creating
+     * executors (and coalescers) of their own.
+     */
     protected IOWatchServiceExecutor getWatchServiceExecutor() {
-        if ( executor == null ) {
-            IOWatchServiceExecutor _executor = null;
-            try {
-                _executor = InitialContext.doLookup( "java:module/IOWatchServiceExecutorImpl" );
-            } catch ( final Exception ignored ) {
+        final IOWatchServiceExecutor current = executor;
+        if ( current != null ) {
+            return current;
+        }
+        synchronized ( this ) {
+            if ( executor == null ) {
+                executor = lookupWatchServiceExecutor();
             }
+            return executor;
+        }
+    }
 
-            if ( _executor == null ) {
-                _executor = new IOWatchServiceExecutorImpl();
-                ( (IOWatchServiceExecutorImpl) _executor ).setEvents( resourceBatchChanges, resourceUpdatedEvent, resourceRenamedEvent, resourceDeletedEvent, resourceAddedEvent );
-            }
-            executor = _executor;
+    private IOWatchServiceExecutor lookupWatchServiceExecutor() {
+        IOWatchServiceExecutor _executor = null;
+        try {
+            _executor = InitialContext.doLookup( "java:module/IOWatchServiceExecutorImpl" );
+        } catch ( final Exception ignored ) {
         }
 
-        return executor;
+        if ( _executor == null ) {
+            _executor = new IOWatchServiceExecutorImpl();
+            ( (IOWatchServiceExecutorImpl) _executor ).setEvents( resourceBatchChanges, resourceUpdatedEvent, resourceRenamedEvent, resourceDeletedEvent, resourceAddedEvent, resourceOverflowEvent );
+        }
+        return _executor;
     }
 }
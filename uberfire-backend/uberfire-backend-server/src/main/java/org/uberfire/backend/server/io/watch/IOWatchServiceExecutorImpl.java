@@ -3,12 +3,17 @@ package org.uberfire.backend.server.io.watch;
 import static javax.ejb.TransactionAttributeType.*;
 import static org.uberfire.backend.server.util.Paths.*;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
+import javax.annotation.PreDestroy;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.TransactionAttribute;
@@ -34,6 +39,7 @@ import org.uberfire.workbench.events.ResourceChange;
 import org.uberfire.workbench.events.ResourceDeleted;
 import org.uberfire.workbench.events.ResourceDeletedEvent;
 import org.uberfire.workbench.events.ResourceEvent;
+import org.uberfire.workbench.events.ResourceOverflowEvent;
 import org.uberfire.workbench.events.ResourceRenamed;
 import org.uberfire.workbench.events.ResourceRenamedEvent;
 import org.uberfire.workbench.events.ResourceUpdated;
@@ -46,6 +52,9 @@ public class IOWatchServiceExecutorImpl implements IOWatchServiceExecutor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( IOWatchServiceExecutorImpl.class );
 
+    private static final Long COALESCE_WINDOW = Long.parseLong( System.getProperty( "org.uberfire.watcher.coalesce.window", "100" ) );
+    private static final Integer COALESCE_MAX_PATHS = Integer.parseInt( System.getProperty( "org.uberfire.watcher.coalesce.maxpaths", "500" ) );
+
     @Inject
     private Event<ResourceBatchChangesEvent> resourceBatchChanges;
 
@@ -61,108 +70,125 @@ public class IOWatchServiceExecutorImpl implements IOWatchServiceExecutor {
     @Inject
     private Event<ResourceAddedEvent> resourceAddedEvent;
 
+    @Inject
+    private Event<ResourceOverflowEvent> resourceOverflowEvent;
+
+    private final ConcurrentMap<Object, ResourceChangeCoalescer> coalescers = new ConcurrentHashMap<Object, ResourceChangeCoalescer>();
+
+    private final ScheduledExecutorService coalescerScheduler = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+        @Override
+        public Thread newThread( final Runnable r ) {
+            final Thread thread = new Thread( r, "uberfire-watch-coalescer" );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
     public void setEvents( final Event<ResourceBatchChangesEvent> resourceBatchChanges,
                            final Event<ResourceUpdatedEvent> resourceUpdatedEvent,
                            final Event<ResourceRenamedEvent> resourceRenamedEvent,
                            final Event<ResourceDeletedEvent> resourceDeletedEvent,
-                           final Event<ResourceAddedEvent> resourceAddedEvent ) {
+                           final Event<ResourceAddedEvent> resourceAddedEvent,
+                           final Event<ResourceOverflowEvent> resourceOverflowEvent ) {
         this.resourceBatchChanges = resourceBatchChanges;
         this.resourceUpdatedEvent = resourceUpdatedEvent;
         this.resourceRenamedEvent = resourceRenamedEvent;
         this.resourceDeletedEvent = resourceDeletedEvent;
         this.resourceAddedEvent = resourceAddedEvent;
+        this.resourceOverflowEvent = resourceOverflowEvent;
+    }
+
+    @PreDestroy
+    public void dispose() {
+        for ( final ResourceChangeCoalescer coalescer : coalescers.values() ) {
+            coalescer.dispose();
+        }
+        coalescers.clear();
+        coalescerScheduler.shutdownNow();
     }
 
     @Override
     public void execute( final WatchKey wk,
                          final Filter<WatchEvent<?>> filter ) {
-        final List<WatchEvent<?>> events = wk.pollEvents();
-        WatchContext firstContext = null;
-
-        if ( events.size() > 1 ) {
-            final Map<Path, Collection<ResourceChange>> changes = new HashMap<Path, Collection<ResourceChange>>();
-            for ( final WatchEvent event : events ) {
-                if ( !filter.doFilter( event ) ) {
-                    if ( firstContext == null ) {
-                        firstContext = (WatchContext) event.context();
-                    }
+        final ResourceChangeCoalescer coalescer = coalescerOf( wk );
+        for ( final WatchEvent<?> event : wk.pollEvents() ) {
+            try {
+                if ( event.kind().equals( StandardWatchEventKind.OVERFLOW ) ) {
+                    fireOverflow( wk, event, coalescer );
+                } else if ( !filter.doFilter( event ) ) {
                     final Pair<Path, ResourceChange> result = buildChange( event );
                     if ( result != null ) {
-                        if ( !changes.containsKey( result.getK1() ) ) {
-                            changes.put( result.getK1(), new ArrayList<ResourceChange>() );
-                        }
-                        changes.get( result.getK1() ).add( result.getK2() );
-                    }
-                }
-            }
-            if ( changes.size() == 1 && changes.values().size() == 1 ) {
-                final ResourceChange _event = changes.values().iterator().next().iterator().next();
-                if ( _event instanceof ResourceUpdated ) {
-                    resourceUpdatedEvent.fire( (ResourceUpdatedEvent) toEvent( changes.keySet().iterator().next(), _event, firstContext ) );
-                } else if ( _event instanceof ResourceAdded ) {
-                    resourceAddedEvent.fire( (ResourceAddedEvent) toEvent( changes.keySet().iterator().next(), _event, firstContext ) );
-                } else if ( _event instanceof ResourceRenamed ) {
-                    resourceRenamedEvent.fire( (ResourceRenamedEvent) toEvent( changes.keySet().iterator().next(), _event, firstContext ) );
-                } else if ( _event instanceof ResourceDeleted ) {
-                    resourceDeletedEvent.fire( (ResourceDeletedEvent) toEvent( changes.keySet().iterator().next(), _event, firstContext ) );
-                }
-            } else if ( changes.size() > 1 ) {
-                resourceBatchChanges.fire( new ResourceBatchChangesEvent( changes, message( firstContext ), sessionInfo( firstContext ) ) );
-            }
-        } else if ( events.size() == 1 ) {
-            try {
-                final WatchEvent<?> event = events.get( 0 );
-                if ( !filter.doFilter( event ) ) {
-                    if ( event.kind().equals( StandardWatchEventKind.ENTRY_MODIFY ) ) {
-                        resourceUpdatedEvent.fire( buildEvent( ResourceUpdatedEvent.class, event ).getK2() );
-                    } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_CREATE ) ) {
-                        resourceAddedEvent.fire( buildEvent( ResourceAddedEvent.class, event ).getK2() );
-                    } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_RENAME ) ) {
-                        resourceRenamedEvent.fire( buildEvent( ResourceRenamedEvent.class, event ).getK2() );
-                    } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_DELETE ) ) {
-                        resourceDeletedEvent.fire( buildEvent( ResourceDeletedEvent.class, event ).getK2() );
+                        coalescer.add( result.getK1(), result.getK2(), (WatchContext) event.context() );
                     }
                 }
             } catch ( final Exception ex ) {
                 LOGGER.error( "Unexpected error during WatchService events fire.", ex );
             }
         }
+        coalescer.flushIfDue();
     }
 
-    private String message( final WatchContext context ) {
-        if ( context == null ) {
-            return null;
+    /**
+     * Events were dropped, so clients are told, after the changes still pending, to reload whatever they have open
+     * below the watched root: they can't tell what changed.
+     */
+    private void fireOverflow( final WatchKey wk,
+                               final WatchEvent<?> event,
+                               final ResourceChangeCoalescer coalescer ) {
+        LOGGER.warn( "{} watch events of {} were dropped by a full watch queue, clients have to reload it.", event.count(), wk.watchable() );
+        if ( !( wk.watchable() instanceof org.uberfire.java.nio.file.Path ) ) {
+            return;
         }
-        return context.getMessage();
-    }
+        coalescer.flush();
 
-    private <T extends ResourceEvent> Pair<Path, T> buildEvent( final Class<T> clazz,
-                                                                final WatchEvent<?> event ) {
-        final WatchContext context = (WatchContext) event.context();
+        resourceOverflowEvent.fire( new ResourceOverflowEvent( convert( (org.uberfire.java.nio.file.Path) wk.watchable() ),
+                                                               new SessionInfoImpl( "<system>", new UserImpl( "<system>" ) ) ) );
+    }
 
-        final Path _affectedPath;
-        final T result;
-        if ( event.kind().equals( StandardWatchEventKind.ENTRY_MODIFY ) ) {
-            _affectedPath = convert( context.getOldPath() );
-            result = (T) new ResourceUpdatedEvent( _affectedPath, context.getMessage(), sessionInfo( context ) );
-        } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_CREATE ) ) {
-            _affectedPath = convert( context.getPath() );
-            result = (T) new ResourceAddedEvent( _affectedPath, context.getMessage(), sessionInfo( context ) );
-        } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_RENAME ) ) {
-            _affectedPath = convert( context.getOldPath() );
-            result = (T) new ResourceRenamedEvent( _affectedPath, convert( context.getPath() ), context.getMessage(), sessionInfo( context ) );
-        } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_DELETE ) ) {
-            _affectedPath = convert( context.getOldPath() );
-            result = (T) new ResourceDeletedEvent( _affectedPath, context.getMessage(), sessionInfo( context ) );
+    /**
+     * Each file system gets its own coalescer, so a slow observer of one file system doesn't hold up the others.
+     */
+    private ResourceChangeCoalescer coalescerOf( final WatchKey wk ) {
+        final Object key;
+        if ( wk.watchable() instanceof org.uberfire.java.nio.file.Path ) {
+            key = ( (org.uberfire.java.nio.file.Path) wk.watchable() ).getFileSystem();
+        } else if ( wk.watchable() != null ) {
+            key = wk.watchable();
         } else {
-            _affectedPath = null;
-            result = null;
+            key = this;
         }
-        if ( _affectedPath == null ) {
-            return null;
+        final ResourceChangeCoalescer coalescer = coalescers.get( key );
+        if ( coalescer != null ) {
+            return coalescer;
         }
+        final ResourceChangeCoalescer newCoalescer = new ResourceChangeCoalescer( COALESCE_WINDOW, Math.max( 1, COALESCE_MAX_PATHS ), coalescerScheduler, new ResourceChangeCoalescer.Sink() {
+            @Override
+            public void flush( final Map<Path, List<ResourceChange>> changes,
+                               final WatchContext context ) {
+                fire( changes, context );
+            }
+        } );
+        final ResourceChangeCoalescer existing = coalescers.putIfAbsent( key, newCoalescer );
+        return existing != null ? existing : newCoalescer;
+    }
 
-        return Pair.newPair( _affectedPath, result );
+    private void fire( final Map<Path, List<ResourceChange>> changes,
+                       final WatchContext context ) {
+        if ( changes.size() == 1 && changes.values().iterator().next().size() == 1 ) {
+            final Path path = changes.keySet().iterator().next();
+            final ResourceChange _event = changes.values().iterator().next().get( 0 );
+            if ( _event instanceof ResourceUpdated ) {
+                resourceUpdatedEvent.fire( (ResourceUpdatedEvent) toEvent( path, _event, context ) );
+            } else if ( _event instanceof ResourceAdded ) {
+                resourceAddedEvent.fire( (ResourceAddedEvent) toEvent( path, _event, context ) );
+            } else if ( _event instanceof ResourceRenamed ) {
+                resourceRenamedEvent.fire( (ResourceRenamedEvent) toEvent( path, _event, context ) );
+            } else if ( _event instanceof ResourceDeleted ) {
+                resourceDeletedEvent.fire( (ResourceDeletedEvent) toEvent( path, _event, context ) );
+            }
+        } else if ( !changes.isEmpty() ) {
+            resourceBatchChanges.fire( new ResourceBatchChangesEvent( new HashMap<Path, Collection<ResourceChange>>( changes ), context.getMessage(), sessionInfo( context ) ) );
+        }
     }
 
     private Pair<Path, ResourceChange> buildChange( final WatchEvent<?> event ) {
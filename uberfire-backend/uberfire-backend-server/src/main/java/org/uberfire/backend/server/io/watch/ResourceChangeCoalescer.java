@@ -0,0 +1,262 @@
+package org.uberfire.backend.server.io.watch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.java.nio.base.WatchContext;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
+import org.uberfire.workbench.events.ResourceUpdated;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Holds resource changes for a short window and merges the ones hitting the same path before they're fired.
+ * <p>
+ * A window only ever holds changes of a single session and user, so events keep their attribution: a change made by
+ * someone else closes the current window first. Within a window, an add followed by updates stays an add, updates
+ * followed by a delete become the delete, an add followed by a delete cancels out and a delete followed by an add
+ * becomes an update; renames and copies are kept as they are. The window is flushed once it's older than the
+ * configured time or holds the configured number of paths; with no window, every call to {@link #flushIfDue()}
+ * flushes.
+ * <p>
+ * A closed window is taken out under the coalescer's monitor and handed to the {@link Sink} outside of it, so
+ * readers aren't held up by event delivery; windows of the same coalescer are still delivered one at a time, in the
+ * order they were closed.
+ */
+public class ResourceChangeCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ResourceChangeCoalescer.class );
+
+    public interface Sink {
+
+        /**
+         * @param changes changed paths, in the order they were first changed
+         * @param context context of the latest change of the window, for message and session
+         */
+        void flush( final Map<Path, List<ResourceChange>> changes,
+                    final WatchContext context );
+    }
+
+    private final long window;
+    private final int maxPaths;
+    private final Sink sink;
+    private final boolean sharedScheduler;
+    private final ReentrantLock fireLock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+
+    private Map<Path, List<ResourceChange>> pending = new LinkedHashMap<Path, List<ResourceChange>>();
+    private WatchContext context = null;
+    private long windowStart = 0;
+    private long generation = 0;
+
+    public ResourceChangeCoalescer( final long window,
+                                    final int maxPaths,
+                                    final Sink sink ) {
+        this( window, maxPaths, null, sink );
+    }
+
+    /**
+     * @param scheduler scheduler for window expiration, left running on {@link #dispose()}; if <code>null</code>
+     * the coalescer starts its own on first use
+     */
+    public ResourceChangeCoalescer( final long window,
+                                    final int maxPaths,
+                                    final ScheduledExecutorService scheduler,
+                                    final Sink sink ) {
+        this.window = window;
+        this.maxPaths = maxPaths;
+        this.scheduler = scheduler;
+        this.sharedScheduler = scheduler != null;
+        this.sink = checkNotNull( "sink", sink );
+    }
+
+    public void add( final Path path,
+                     final ResourceChange change,
+                     final WatchContext context ) {
+        fireLock.lock();
+        try {
+            final Batch closed;
+            final Batch full;
+            synchronized ( this ) {
+                if ( this.context != null && ( !sameAttribution( this.context, context ) || isDue() ) ) {
+                    closed = take();
+                } else {
+                    closed = null;
+                }
+                if ( this.context == null ) {
+                    windowStart = System.currentTimeMillis();
+                    scheduleFlush();
+                }
+                this.context = context;
+                merge( path, change );
+                full = pending.size() >= maxPaths ? take() : null;
+            }
+            fire( closed );
+            fire( full );
+        } finally {
+            fireLock.unlock();
+        }
+    }
+
+    public void flushIfDue() {
+        fireLock.lock();
+        try {
+            final Batch batch;
+            synchronized ( this ) {
+                batch = context != null && isDue() ? take() : null;
+            }
+            fire( batch );
+        } finally {
+            fireLock.unlock();
+        }
+    }
+
+    public void flush() {
+        fireLock.lock();
+        try {
+            final Batch batch;
+            synchronized ( this ) {
+                batch = take();
+            }
+            fire( batch );
+        } finally {
+            fireLock.unlock();
+        }
+    }
+
+    public synchronized int getPendingPaths() {
+        return pending.size();
+    }
+
+    public void dispose() {
+        flush();
+        synchronized ( this ) {
+            if ( scheduler != null && !sharedScheduler ) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
+
+    private Batch take() {
+        final Batch batch = new Batch( pending, context );
+        pending = new LinkedHashMap<Path, List<ResourceChange>>();
+        context = null;
+        generation++;
+        return batch;
+    }
+
+    private void fire( final Batch batch ) {
+        if ( batch == null || batch.context == null || batch.changes.isEmpty() ) {
+            return;
+        }
+        try {
+            sink.flush( batch.changes, batch.context );
+        } catch ( final Exception ex ) {
+            LOG.error( "Unexpected error during WatchService events fire.", ex );
+        }
+    }
+
+    private boolean isDue() {
+        return window <= 0 || System.currentTimeMillis() - windowStart >= window;
+    }
+
+    private void merge( final Path path,
+                        final ResourceChange change ) {
+        List<ResourceChange> changes = pending.get( path );
+        if ( changes == null ) {
+            changes = new ArrayList<ResourceChange>( 1 );
+            pending.put( path, changes );
+        }
+        if ( changes.isEmpty() ) {
+            changes.add( change );
+            return;
+        }
+
+        final int last = changes.size() - 1;
+        final ResourceChangeType previous = changes.get( last ).getType();
+        final ResourceChangeType current = change.getType();
+        if ( previous == ResourceChangeType.ADD && current == ResourceChangeType.UPDATE ) {
+            return;
+        } else if ( previous == ResourceChangeType.UPDATE && current == ResourceChangeType.UPDATE ) {
+            return;
+        } else if ( previous == ResourceChangeType.UPDATE && current == ResourceChangeType.DELETE ) {
+            changes.set( last, change );
+        } else if ( previous == ResourceChangeType.ADD && current == ResourceChangeType.DELETE ) {
+            changes.remove( last );
+            if ( changes.isEmpty() ) {
+                pending.remove( path );
+            }
+        } else if ( previous == ResourceChangeType.DELETE && current == ResourceChangeType.ADD ) {
+            changes.set( last, new ResourceUpdated() );
+        } else {
+            changes.add( change );
+        }
+    }
+
+    private void scheduleFlush() {
+        if ( window <= 0 ) {
+            return;
+        }
+        if ( scheduler == null ) {
+            scheduler = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+                @Override
+                public Thread newThread( final Runnable r ) {
+                    final Thread thread = new Thread( r, "uberfire-watch-coalescer" );
+                    thread.setDaemon( true );
+                    return thread;
+                }
+            } );
+        }
+        final long windowGeneration = generation;
+        scheduler.schedule( new Runnable() {
+            @Override
+            public void run() {
+                fireLock.lock();
+                try {
+                    final Batch batch;
+                    synchronized ( ResourceChangeCoalescer.this ) {
+                        batch = generation == windowGeneration ? take() : null;
+                    }
+                    fire( batch );
+                } finally {
+                    fireLock.unlock();
+                }
+            }
+        }, window, TimeUnit.MILLISECONDS );
+    }
+
+    private static boolean sameAttribution( final WatchContext one,
+                                            final WatchContext other ) {
+        return equals( one.getSessionId(), other.getSessionId() ) && equals( one.getUser(), other.getUser() );
+    }
+
+    private static boolean equals( final String one,
+                                   final String other ) {
+        return one == null ? other == null : one.equals( other );
+    }
+
+    private static class Batch {
+
+        private final Map<Path, List<ResourceChange>> changes;
+        private final WatchContext context;
+
+        private Batch( final Map<Path, List<ResourceChange>> changes,
+                       final WatchContext context ) {
+            this.changes = changes;
+            this.context = context;
+        }
+    }
+}
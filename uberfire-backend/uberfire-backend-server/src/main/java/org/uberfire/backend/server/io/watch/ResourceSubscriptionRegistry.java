@@ -0,0 +1,224 @@
+package org.uberfire.backend.server.io.watch;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.api.messaging.MessageBus;
+import org.jboss.errai.bus.client.api.messaging.MessageParts;
+import org.jboss.errai.bus.server.api.QueueCloseEvent;
+import org.jboss.errai.bus.server.api.QueueClosedListener;
+import org.jboss.errai.bus.server.api.QueueSession;
+import org.jboss.errai.bus.server.api.RpcContext;
+import org.jboss.errai.bus.server.api.ServerMessageBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.PathSubscriptionEvent;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceCopiedEvent;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceOverflowEvent;
+import org.uberfire.workbench.events.ResourceRenamed;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
+import org.uberfire.workbench.events.ResourceUpdatedEvent;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Keeps which client sessions have each path open, and sends the resource events of a path only to those sessions,
+ * on {@link PathSubscriptionEvent#RESOURCE_EVENTS_SUBJECT}.
+ * <p>
+ * Sessions subscribe once per open path instance, so a path stays subscribed until all of them are gone; renames
+ * move the subscriptions to the destination path, and everything a session subscribed is dropped when its queue
+ * closes. An overflow goes to every session with a path open below its root.
+ */
+@ApplicationScoped
+public class ResourceSubscriptionRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ResourceSubscriptionRegistry.class );
+
+    @Inject
+    private MessageBus bus;
+
+    // uri -> session id -> number of subscriptions
+    private final Map<String, Map<String, Integer>> subscriptions = new HashMap<String, Map<String, Integer>>();
+
+    @PostConstruct
+    public void setup() {
+        if ( bus instanceof ServerMessageBus ) {
+            ( (ServerMessageBus) bus ).addQueueClosedListener( new QueueClosedListener() {
+                @Override
+                public void queueClosed( final QueueCloseEvent event ) {
+                    unsubscribeSession( event.getQueue().getSession().getSessionId() );
+                }
+            } );
+        }
+    }
+
+    /**
+     * Subscriptions always belong to the session the event came from.
+     */
+    public void onPathSubscription( @Observes final PathSubscriptionEvent event ) {
+        final String sessionId = currentSessionId();
+        if ( sessionId == null ) {
+            LOG.debug( "Path subscription outside of a client session ignored: " + event );
+            return;
+        }
+        if ( event.isSubscribe() ) {
+            subscribe( sessionId, event.getUri() );
+        } else {
+            unsubscribe( sessionId, event.getUri() );
+        }
+    }
+
+    protected String currentSessionId() {
+        final QueueSession session = RpcContext.getQueueSession();
+        return session == null ? null : session.getSessionId();
+    }
+
+    public synchronized void subscribe( final String sessionId,
+                                        final String uri ) {
+        checkNotEmpty( "sessionId", sessionId );
+        checkNotEmpty( "uri", uri );
+        Map<String, Integer> sessions = subscriptions.get( uri );
+        if ( sessions == null ) {
+            sessions = new HashMap<String, Integer>();
+            subscriptions.put( uri, sessions );
+        }
+        final Integer count = sessions.get( sessionId );
+        sessions.put( sessionId, count == null ? 1 : count + 1 );
+    }
+
+    public synchronized void unsubscribe( final String sessionId,
+                                          final String uri ) {
+        final Map<String, Integer> sessions = subscriptions.get( uri );
+        if ( sessions == null ) {
+            return;
+        }
+        final Integer count = sessions.get( sessionId );
+        if ( count == null || count <= 1 ) {
+            sessions.remove( sessionId );
+        } else {
+            sessions.put( sessionId, count - 1 );
+        }
+        if ( sessions.isEmpty() ) {
+            subscriptions.remove( uri );
+        }
+    }
+
+    public synchronized void unsubscribeSession( final String sessionId ) {
+        final Iterator<Map<String, Integer>> iterator = subscriptions.values().iterator();
+        while ( iterator.hasNext() ) {
+            final Map<String, Integer> sessions = iterator.next();
+            sessions.remove( sessionId );
+            if ( sessions.isEmpty() ) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized Set<String> getSubscribers( final Path path ) {
+        final Map<String, Integer> sessions = subscriptions.get( path.toURI() );
+        if ( sessions == null ) {
+            return new HashSet<String>();
+        }
+        return new HashSet<String>( sessions.keySet() );
+    }
+
+    public synchronized Set<String> getSubscribers( final ResourceOverflowEvent event ) {
+        final Set<String> result = new HashSet<String>();
+        for ( final Map.Entry<String, Map<String, Integer>> entry : subscriptions.entrySet() ) {
+            if ( event.affects( entry.getKey() ) ) {
+                result.addAll( entry.getValue().keySet() );
+            }
+        }
+        return result;
+    }
+
+    public synchronized int getSubscribedPaths() {
+        return subscriptions.size();
+    }
+
+    public void onResourceUpdated( @Observes final ResourceUpdatedEvent event ) {
+        route( getSubscribers( event.getPath() ), event );
+    }
+
+    public void onResourceDeleted( @Observes final ResourceDeletedEvent event ) {
+        route( getSubscribers( event.getPath() ), event );
+    }
+
+    public void onResourceCopied( @Observes final ResourceCopiedEvent event ) {
+        route( getSubscribers( event.getPath() ), event );
+    }
+
+    public void onResourceRenamed( @Observes final ResourceRenamedEvent event ) {
+        route( getSubscribers( event.getPath() ), event );
+        move( event.getPath(), event.getDestinationPath() );
+    }
+
+    public void onResourceOverflow( @Observes final ResourceOverflowEvent event ) {
+        route( getSubscribers( event ), event );
+    }
+
+    public void onResourceBatchChanges( @Observes final ResourceBatchChangesEvent event ) {
+        final Set<String> sessions = new HashSet<String>();
+        for ( final Path path : event.getAffectedPaths() ) {
+            sessions.addAll( getSubscribers( path ) );
+        }
+        route( sessions, event );
+
+        for ( final Map.Entry<Path, Collection<ResourceChange>> entry : event.getBatch().entrySet() ) {
+            for ( final ResourceChange change : entry.getValue() ) {
+                if ( change instanceof ResourceRenamed ) {
+                    move( entry.getKey(), ( (ResourceRenamed) change ).getDestinationPath() );
+                }
+            }
+        }
+    }
+
+    private synchronized void move( final Path source,
+                                    final Path destination ) {
+        final Map<String, Integer> sessions = subscriptions.remove( source.toURI() );
+        if ( sessions == null ) {
+            return;
+        }
+        for ( final Map.Entry<String, Integer> session : sessions.entrySet() ) {
+            for ( int i = 0; i < session.getValue(); i++ ) {
+                subscribe( session.getKey(), destination.toURI() );
+            }
+        }
+    }
+
+    private void route( final Set<String> sessions,
+                        final Object event ) {
+        for ( final String sessionId : sessions ) {
+            try {
+                send( sessionId, event );
+            } catch ( final Exception ex ) {
+                LOG.warn( "Resource event couldn't be sent to session " + sessionId, ex );
+            }
+        }
+    }
+
+    protected void send( final String sessionId,
+                         final Object event ) {
+        MessageBuilder.createMessage()
+                .toSubject( PathSubscriptionEvent.RESOURCE_EVENTS_SUBJECT )
+                .signalling()
+                .with( MessageParts.SessionID, sessionId )
+                .with( PathSubscriptionEvent.EVENT_PART, event )
+                .noErrorHandling()
+                .sendNowWith( bus );
+    }
+}
@@ -0,0 +1,251 @@
+package org.uberfire.backend.server.io.watch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.backend.server.util.Filter;
+import org.uberfire.java.nio.file.WatchEvent;
+import org.uberfire.java.nio.file.WatchKey;
+import org.uberfire.java.nio.file.WatchService;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Multiplexes any number of {@link WatchService}s over a single dispatch thread and a fixed pool of workers.
+ * <p>
+ * The dispatch loop drains the pending keys of every watch service without blocking, up to a batch size, and hands
+ * each batch to a worker that executes the keys in order. A watch service has at most one batch in flight, so events
+ * of a file system are fired in the order they happened while different file systems are served in parallel; keys
+ * arriving meanwhile stay queued in the watch service. When a whole pass finds nothing the loop backs off, up to the
+ * idle wait, until a new key shows up.
+ */
+public class WatchServiceDispatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger( WatchServiceDispatcher.class );
+
+    private final String name;
+    private final int batchSize;
+    private final long maxIdleWait;
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<Registration>();
+    private final Object monitor = new Object();
+    private final ExecutorService workers;
+
+    private Thread dispatchThread;
+    private IOWatchServiceExecutor executor;
+    private Filter<WatchEvent<?>> filter;
+    private volatile boolean running = false;
+    private volatile boolean signaled = false;
+
+    public WatchServiceDispatcher( final String name,
+                                   final int workerThreads,
+                                   final int batchSize,
+                                   final long maxIdleWait ) {
+        this.name = checkNotNull( "name", name );
+        this.batchSize = batchSize;
+        this.maxIdleWait = maxIdleWait;
+        this.workers = Executors.newFixedThreadPool( workerThreads, new WorkerThreadFactory( name ) );
+    }
+
+    public synchronized void register( final WatchService watchService ) {
+        registrations.add( new Registration( checkNotNull( "watchService", watchService ) ) );
+        if ( running && dispatchThread == null ) {
+            startDispatchThread();
+        }
+        wakeUp();
+    }
+
+    /**
+     * Starts dispatching; the dispatch thread itself is only created once there's a watch service to serve.
+     */
+    public synchronized void start( final IOWatchServiceExecutor executor,
+                                    final Filter<WatchEvent<?>> filter ) {
+        if ( running ) {
+            return;
+        }
+        this.executor = checkNotNull( "executor", executor );
+        this.filter = filter;
+        this.running = true;
+        if ( !registrations.isEmpty() ) {
+            startDispatchThread();
+        }
+    }
+
+    private void startDispatchThread() {
+        dispatchThread = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, name + "-dispatcher" );
+        dispatchThread.setDaemon( true );
+        dispatchThread.start();
+    }
+
+    public int getWatchServiceCount() {
+        return registrations.size();
+    }
+
+    private void dispatch() {
+        long idleWait = 1;
+        while ( running ) {
+            boolean dispatched = false;
+            for ( final Registration registration : registrations ) {
+                if ( !registration.busy ) {
+                    dispatched |= dispatch( registration );
+                }
+            }
+            if ( dispatched ) {
+                idleWait = 1;
+                continue;
+            }
+            synchronized ( monitor ) {
+                if ( !signaled && running ) {
+                    try {
+                        monitor.wait( idleWait );
+                    } catch ( final InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if ( signaled ) {
+                    idleWait = 1;
+                } else {
+                    idleWait = Math.min( idleWait * 2, maxIdleWait );
+                }
+                signaled = false;
+            }
+        }
+    }
+
+    private boolean dispatch( final Registration registration ) {
+        final List<WatchKey> batch = new ArrayList<WatchKey>();
+        try {
+            while ( batch.size() < batchSize ) {
+                final WatchKey key = registration.watchService.poll();
+                if ( key == null ) {
+                    break;
+                }
+                batch.add( key );
+            }
+        } catch ( final Exception ex ) {
+            // closed watch service, nothing else will come from it
+            registrations.remove( registration );
+            if ( batch.isEmpty() ) {
+                return false;
+            }
+        }
+        if ( batch.isEmpty() ) {
+            return false;
+        }
+
+        registration.busy = true;
+        try {
+            workers.execute( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        execute( registration, batch );
+                    } finally {
+                        registration.busy = false;
+                        wakeUp();
+                    }
+                }
+            } );
+        } catch ( final RuntimeException ex ) {
+            // workers already shut down
+            registration.busy = false;
+            return false;
+        }
+        return true;
+    }
+
+    private void execute( final Registration registration,
+                          final List<WatchKey> batch ) {
+        for ( final WatchKey key : batch ) {
+            try {
+                executor.execute( key, filter );
+            } catch ( final Exception ex ) {
+                LOG.error( "Error firing watch events of " + registration.watchService, ex );
+            }
+
+            // Reset the key -- this step is critical if you want to
+            // receive further watch events.  If the key is no longer valid,
+            // the directory is inaccessible so stop watching it.
+            if ( !key.reset() ) {
+                registrations.remove( registration );
+                return;
+            }
+        }
+    }
+
+    private void wakeUp() {
+        synchronized ( monitor ) {
+            signaled = true;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Stops dispatching and waits for the batches in flight to complete.
+     */
+    public void shutdown( final long timeout,
+                          final TimeUnit unit ) {
+        synchronized ( this ) {
+            running = false;
+        }
+        wakeUp();
+        workers.shutdown(); // Disable new tasks from being submitted
+        try {
+            // Wait a while for existing tasks to terminate
+            if ( !workers.awaitTermination( timeout, unit ) ) {
+                workers.shutdownNow(); // Cancel currently executing tasks
+                // Wait a while for tasks to respond to being cancelled
+                if ( !workers.awaitTermination( timeout, unit ) ) {
+                    LOG.error( "Thread pool did not terminate" );
+                }
+            }
+        } catch ( InterruptedException ie ) {
+            // (Re-)Cancel if current thread also interrupted
+            workers.shutdownNow();
+            // Preserve interrupt status
+            Thread.currentThread().interrupt();
+        }
+        registrations.clear();
+    }
+
+    private static class Registration {
+
+        private final WatchService watchService;
+        private volatile boolean busy = false;
+
+        Registration( final WatchService watchService ) {
+            this.watchService = watchService;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger( 0 );
+
+        WorkerThreadFactory( final String name ) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread( final Runnable r ) {
+            final Thread thread = new Thread( r, name + "-worker-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.uberfire.backend.server.security;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.security.shared.api.Role;
+import org.jboss.errai.security.shared.api.identity.User;
+import org.jboss.errai.security.shared.api.identity.UserImpl;
+
+import static org.uberfire.commons.validation.PortablePreconditions.*;
+
+/**
+ * Users that recently authenticated successfully, so repeated logins with the same credentials don't go back to the
+ * realm until the entry expires.
+ * <p>
+ * Credentials are never kept: entries are keyed by a SHA-256 hash of the user name and password, salted with random
+ * bytes generated for this cache instance only. Failed logins aren't cached, so realms keep seeing (and may lock out)
+ * wrong passwords, and a password change takes effect once the old entry expires or the user is invalidated.
+ */
+public class CredentialCache {
+
+    public static final long DEFAULT_TTL = 60 * 1000;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final int SALT_SIZE = 32;
+
+    private final long ttl;
+    private final byte[] salt = new byte[ SALT_SIZE ];
+    private final Map<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param ttl time in milliseconds a successful login is reused; zero or less disables the cache
+     * @param maxEntries maximum number of cached logins, the least recently used ones are dropped first
+     */
+    public CredentialCache( final long ttl,
+                            final int maxEntries ) {
+        this.ttl = ttl;
+        new SecureRandom().nextBytes( salt );
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, Entry> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return ttl > 0;
+    }
+
+    /**
+     * @return the user authenticated with these credentials, or null if it has to authenticate against the realm
+     */
+    public synchronized User get( final String username,
+                                  final String password ) {
+        if ( !isEnabled() || username == null || password == null ) {
+            return null;
+        }
+        final String key = key( username, password );
+        final Entry entry = entries.get( key );
+        if ( entry == null ) {
+            misses++;
+            return null;
+        }
+        if ( System.currentTimeMillis() - entry.created > ttl ) {
+            entries.remove( key );
+            misses++;
+            return null;
+        }
+        hits++;
+        return new UserImpl( entry.username, entry.roles );
+    }
+
+    public synchronized void put( final String username,
+                                  final String password,
+                                  final User user ) {
+        checkNotNull( "user", user );
+        if ( !isEnabled() || username == null || password == null ) {
+            return;
+        }
+        entries.put( key( username, password ), new Entry( username, new ArrayList<Role>( user.getRoles() ) ) );
+    }
+
+    /**
+     * Forgets every cached login of the given user, e.g. after its password or roles changed.
+     */
+    public synchronized void invalidate( final String username ) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while ( iterator.hasNext() ) {
+            if ( iterator.next().username.equals( username ) ) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private String key( final String username,
+                        final String password ) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            digest.update( salt );
+            digest.update( username.getBytes( UTF_8 ) );
+            digest.update( (byte) 0 );
+            digest.update( password.getBytes( UTF_8 ) );
+            final byte[] hash = digest.digest();
+
+            final StringBuilder result = new StringBuilder( hash.length * 2 );
+            for ( final byte b : hash ) {
+                result.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) );
+                result.append( Character.forDigit( b & 0xF, 16 ) );
+            }
+            return result.toString();
+        } catch ( final NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static class Entry {
+
+        private final String username;
+        private final List<Role> roles;
+        private final long created = System.currentTimeMillis();
+
+        Entry( final String username,
+               final List<Role> roles ) {
+            this.username = username;
+            this.roles = roles;
+        }
+    }
+}
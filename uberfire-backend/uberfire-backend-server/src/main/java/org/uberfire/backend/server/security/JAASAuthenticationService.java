@@ -40,23 +40,42 @@ public class JAASAuthenticationService extends GroupAdapterAuthorizationSource i
 
     public static final String DEFAULT_DOMAIN = "ApplicationRealm";
 
+    private static final long CACHE_TTL = Long.parseLong( System.getProperty( "org.uberfire.security.auth.cache.ttl", String.valueOf( CredentialCache.DEFAULT_TTL ) ) );
+    private static final int CACHE_SIZE = Integer.parseInt( System.getProperty( "org.uberfire.security.auth.cache.size", String.valueOf( CredentialCache.DEFAULT_MAX_ENTRIES ) ) );
+
     private static final String DEFAULT_ROLE_PRINCIPLE_NAME = "Roles";
     private final String rolePrincipleName = DEFAULT_ROLE_PRINCIPLE_NAME;
 
     private final ThreadLocal<User> userOnThisThread = new ThreadLocal<User>();
 
     private final String domain;
+    private final CredentialCache credentialCache;
 
     public JAASAuthenticationService(String domain) {
+        this( domain, new CredentialCache( CACHE_TTL, CACHE_SIZE ) );
+    }
+
+    /**
+     * @param credentialCache successful logins reused until they expire, so the realm is only hit on a cache miss
+     */
+    public JAASAuthenticationService( final String domain,
+                                      final CredentialCache credentialCache ) {
         this.domain = PortablePreconditions.checkNotNull( "domain", domain );
+        this.credentialCache = PortablePreconditions.checkNotNull( "credentialCache", credentialCache );
     }
 
     @Override
     public User login( String username, String password ) {
+        final User cached = credentialCache.get( username, password );
+        if ( cached != null ) {
+            userOnThisThread.set( cached );
+            return cached;
+        }
         try {
             final LoginContext loginContext = new LoginContext( domain, new UsernamePasswordCallbackHandler( username, password ) );
             loginContext.login();
             UserImpl user = new UserImpl( username, loadRoles( username, loginContext.getSubject() ) );
+            credentialCache.put( username, password, user );
             userOnThisThread.set( user );
 
             return user;
@@ -84,6 +103,18 @@ public class JAASAuthenticationService extends GroupAdapterAuthorizationSource i
         return userOnThisThread.get() != null;
     }
 
+    /**
+     * Forces the next login of the given user to authenticate against the realm again, e.g. after its password or
+     * roles changed.
+     */
+    public void invalidate( final String username ) {
+        credentialCache.invalidate( username );
+    }
+
+    public void invalidateAll() {
+        credentialCache.invalidateAll();
+    }
+
     private List<Role> loadRoles( String username, Subject subject ) {
         List<Role> roles = new ArrayList<Role>();
         try {
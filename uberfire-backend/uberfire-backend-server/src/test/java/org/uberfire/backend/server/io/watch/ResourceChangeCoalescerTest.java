@@ -0,0 +1,145 @@
+package org.uberfire.backend.server.io.watch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.backend.vfs.PathFactory;
+import org.uberfire.java.nio.base.WatchContext;
+import org.uberfire.workbench.events.ResourceAdded;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
+import org.uberfire.workbench.events.ResourceDeleted;
+import org.uberfire.workbench.events.ResourceUpdated;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ResourceChangeCoalescerTest {
+
+    private final Path pathA = PathFactory.newPath( "a.txt", "git://repo/a.txt" );
+    private final Path pathB = PathFactory.newPath( "b.txt", "git://repo/b.txt" );
+    private final Path pathC = PathFactory.newPath( "c.txt", "git://repo/c.txt" );
+
+    private final List<Map<Path, List<ResourceChange>>> flushed = new ArrayList<Map<Path, List<ResourceChange>>>();
+    private final List<WatchContext> contexts = new ArrayList<WatchContext>();
+
+    private final ResourceChangeCoalescer.Sink sink = new ResourceChangeCoalescer.Sink() {
+        @Override
+        public void flush( final Map<Path, List<ResourceChange>> changes,
+                           final WatchContext context ) {
+            flushed.add( changes );
+            contexts.add( context );
+        }
+    };
+
+    @Test
+    public void testMergesChangesPerPath() {
+        final ResourceChangeCoalescer coalescer = new ResourceChangeCoalescer( 60000, 100, sink );
+        final WatchContext first = context( "session1", "admin", "first" );
+        final WatchContext last = context( "session1", "admin", "last" );
+
+        coalescer.add( pathA, new ResourceAdded(), first );
+        coalescer.add( pathA, new ResourceUpdated(), first );
+        coalescer.add( pathB, new ResourceUpdated(), first );
+        coalescer.add( pathB, new ResourceUpdated(), first );
+        coalescer.add( pathB, new ResourceDeleted(), first );
+        coalescer.add( pathC, new ResourceAdded(), first );
+        coalescer.add( pathC, new ResourceDeleted(), last );
+
+        coalescer.flushIfDue();
+        assertTrue( flushed.isEmpty() );
+
+        coalescer.flush();
+
+        assertEquals( 1, flushed.size() );
+        final Map<Path, List<ResourceChange>> changes = flushed.get( 0 );
+        assertEquals( 2, changes.size() );
+        assertEquals( 1, changes.get( pathA ).size() );
+        assertEquals( ResourceChangeType.ADD, changes.get( pathA ).get( 0 ).getType() );
+        assertEquals( 1, changes.get( pathB ).size() );
+        assertEquals( ResourceChangeType.DELETE, changes.get( pathB ).get( 0 ).getType() );
+        assertFalse( changes.containsKey( pathC ) );
+        assertSame( last, contexts.get( 0 ) );
+    }
+
+    @Test
+    public void testKeepsAttribution() {
+        final ResourceChangeCoalescer coalescer = new ResourceChangeCoalescer( 60000, 100, sink );
+
+        coalescer.add( pathA, new ResourceUpdated(), context( "session1", "admin", "mine" ) );
+        coalescer.add( pathA, new ResourceUpdated(), context( "session2", "guest", "theirs" ) );
+        coalescer.flush();
+
+        assertEquals( 2, flushed.size() );
+        assertEquals( "mine", contexts.get( 0 ).getMessage() );
+        assertEquals( "theirs", contexts.get( 1 ).getMessage() );
+    }
+
+    @Test
+    public void testFlushesWhenFullOrWithoutWindow() {
+        final ResourceChangeCoalescer bounded = new ResourceChangeCoalescer( 60000, 2, sink );
+        final WatchContext context = context( "session1", "admin", "message" );
+
+        bounded.add( pathA, new ResourceUpdated(), context );
+        bounded.add( pathB, new ResourceUpdated(), context );
+        assertEquals( 1, flushed.size() );
+        assertEquals( 0, bounded.getPendingPaths() );
+
+        final ResourceChangeCoalescer immediate = new ResourceChangeCoalescer( 0, 100, sink );
+        immediate.add( pathC, new ResourceUpdated(), context );
+        immediate.flushIfDue();
+        assertEquals( 2, flushed.size() );
+    }
+
+    @Test
+    public void testFlushesWhenWindowExpires() throws Exception {
+        final CountDownLatch latch = new CountDownLatch( 1 );
+        final ResourceChangeCoalescer coalescer = new ResourceChangeCoalescer( 50, 100, new ResourceChangeCoalescer.Sink() {
+            @Override
+            public void flush( final Map<Path, List<ResourceChange>> changes,
+                               final WatchContext context ) {
+                latch.countDown();
+            }
+        } );
+        try {
+            coalescer.add( pathA, new ResourceUpdated(), context( "session1", "admin", "message" ) );
+            assertTrue( latch.await( 5, TimeUnit.SECONDS ) );
+        } finally {
+            coalescer.dispose();
+        }
+    }
+
+    @Test
+    public void testFiresOutsideOfMonitor() {
+        final List<Boolean> heldLock = new ArrayList<Boolean>();
+        final ResourceChangeCoalescer[] coalescer = new ResourceChangeCoalescer[ 1 ];
+        coalescer[ 0 ] = new ResourceChangeCoalescer( 0, 100, new ResourceChangeCoalescer.Sink() {
+            @Override
+            public void flush( final Map<Path, List<ResourceChange>> changes,
+                               final WatchContext context ) {
+                heldLock.add( Thread.holdsLock( coalescer[ 0 ] ) );
+            }
+        } );
+
+        coalescer[ 0 ].add( pathA, new ResourceUpdated(), context( "session1", "admin", "message" ) );
+        coalescer[ 0 ].flushIfDue();
+
+        assertEquals( 1, heldLock.size() );
+        assertFalse( heldLock.get( 0 ) );
+    }
+
+    private WatchContext context( final String sessionId,
+                                  final String user,
+                                  final String message ) {
+        final WatchContext context = mock( WatchContext.class );
+        when( context.getSessionId() ).thenReturn( sessionId );
+        when( context.getUser() ).thenReturn( user );
+        when( context.getMessage() ).thenReturn( message );
+        return context;
+    }
+}
@@ -0,0 +1,133 @@
+package org.uberfire.backend.server.io.watch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.security.shared.api.identity.UserImpl;
+import org.junit.Test;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.backend.vfs.PathFactory;
+import org.uberfire.commons.data.Pair;
+import org.uberfire.rpc.SessionInfo;
+import org.uberfire.rpc.impl.SessionInfoImpl;
+import org.uberfire.workbench.events.PathSubscriptionEvent;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceOverflowEvent;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
+import org.uberfire.workbench.events.ResourceUpdated;
+import org.uberfire.workbench.events.ResourceUpdatedEvent;
+
+import static org.junit.Assert.*;
+
+public class ResourceSubscriptionRegistryTest {
+
+    private final Path pathA = PathFactory.newPath( "a.txt", "git://repo/a.txt" );
+    private final Path pathB = PathFactory.newPath( "b.txt", "git://repo/b.txt" );
+    private final Path pathC = PathFactory.newPath( "c.txt", "git://repo/c.txt" );
+    private final SessionInfo sessionInfo = new SessionInfoImpl( "writer", new UserImpl( "admin" ) );
+
+    private final List<Pair<String, Object>> sent = new ArrayList<Pair<String, Object>>();
+    private String currentSession = null;
+
+    private final ResourceSubscriptionRegistry registry = new ResourceSubscriptionRegistry() {
+        @Override
+        protected String currentSessionId() {
+            return currentSession;
+        }
+
+        @Override
+        protected void send( final String sessionId,
+                             final Object event ) {
+            sent.add( Pair.newPair( sessionId, event ) );
+        }
+    };
+
+    @Test
+    public void testRoutesOnlyToSubscribedSessions() {
+        currentSession = "session1";
+        registry.onPathSubscription( new PathSubscriptionEvent( pathA.toURI(), true ) );
+        currentSession = "session2";
+        registry.onPathSubscription( new PathSubscriptionEvent( pathB.toURI(), true ) );
+
+        final ResourceUpdatedEvent event = new ResourceUpdatedEvent( pathA, "update", sessionInfo );
+        registry.onResourceUpdated( event );
+        registry.onResourceUpdated( new ResourceUpdatedEvent( pathC, "update", sessionInfo ) );
+
+        assertEquals( 1, sent.size() );
+        assertEquals( "session1", sent.get( 0 ).getK1() );
+        assertSame( event, sent.get( 0 ).getK2() );
+    }
+
+    @Test
+    public void testSubscriptionWithoutSessionIsIgnored() {
+        registry.onPathSubscription( new PathSubscriptionEvent( pathA.toURI(), true ) );
+
+        assertEquals( 0, registry.getSubscribedPaths() );
+    }
+
+    @Test
+    public void testSubscriptionsAreCounted() {
+        registry.subscribe( "session1", pathA.toURI() );
+        registry.subscribe( "session1", pathA.toURI() );
+
+        registry.unsubscribe( "session1", pathA.toURI() );
+        assertEquals( Collections.singleton( "session1" ), registry.getSubscribers( pathA ) );
+
+        registry.unsubscribe( "session1", pathA.toURI() );
+        assertTrue( registry.getSubscribers( pathA ).isEmpty() );
+        assertEquals( 0, registry.getSubscribedPaths() );
+    }
+
+    @Test
+    public void testRenameMovesSubscriptions() {
+        registry.subscribe( "session1", pathA.toURI() );
+
+        registry.onResourceRenamed( new ResourceRenamedEvent( pathA, pathB, "rename", sessionInfo ) );
+
+        assertEquals( 1, sent.size() );
+        assertTrue( registry.getSubscribers( pathA ).isEmpty() );
+        assertEquals( Collections.singleton( "session1" ), registry.getSubscribers( pathB ) );
+    }
+
+    @Test
+    public void testBatchSentOncePerSession() {
+        registry.subscribe( "session1", pathA.toURI() );
+        registry.subscribe( "session1", pathB.toURI() );
+        registry.subscribe( "session2", pathC.toURI() );
+
+        final Map<Path, Collection<ResourceChange>> changes = new HashMap<Path, Collection<ResourceChange>>();
+        changes.put( pathA, Collections.<ResourceChange>singletonList( new ResourceUpdated() ) );
+        changes.put( pathB, Collections.<ResourceChange>singletonList( new ResourceUpdated() ) );
+        registry.onResourceBatchChanges( new ResourceBatchChangesEvent( changes, "batch", sessionInfo ) );
+
+        assertEquals( 1, sent.size() );
+        assertEquals( "session1", sent.get( 0 ).getK1() );
+    }
+
+    @Test
+    public void testOverflowSentToSessionsBelowRoot() {
+        registry.subscribe( "session1", pathA.toURI() );
+        registry.subscribe( "session1", pathB.toURI() );
+        registry.subscribe( "session2", "git://repo2/a.txt" );
+
+        registry.onResourceOverflow( new ResourceOverflowEvent( PathFactory.newPath( "/", "git://repo" ), sessionInfo ) );
+
+        assertEquals( 1, sent.size() );
+        assertEquals( "session1", sent.get( 0 ).getK1() );
+    }
+
+    @Test
+    public void testClosedSessionIsDropped() {
+        registry.subscribe( "session1", pathA.toURI() );
+        registry.subscribe( "session2", pathA.toURI() );
+
+        registry.unsubscribeSession( "session1" );
+
+        assertEquals( Collections.singleton( "session2" ), registry.getSubscribers( pathA ) );
+    }
+}
@@ -0,0 +1,144 @@
+package org.uberfire.backend.server.io.watch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.uberfire.backend.server.util.Filter;
+import org.uberfire.java.nio.file.ClosedWatchServiceException;
+import org.uberfire.java.nio.file.WatchEvent;
+import org.uberfire.java.nio.file.WatchKey;
+import org.uberfire.java.nio.file.WatchService;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class WatchServiceDispatcherTest {
+
+    private final WatchServiceDispatcher dispatcher = new WatchServiceDispatcher( "test-watch", 2, 3, 10 );
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown( 1, TimeUnit.SECONDS );
+    }
+
+    @Test
+    public void testKeepsOrderPerWatchService() throws Exception {
+        final int fileSystems = 20;
+        final int keysPerFileSystem = 10;
+        final CountDownLatch fired = new CountDownLatch( fileSystems * keysPerFileSystem );
+        final Map<WatchService, List<WatchKey>> executed = new ConcurrentHashMap<WatchService, List<WatchKey>>();
+        final Map<WatchKey, WatchService> owners = new ConcurrentHashMap<WatchKey, WatchService>();
+
+        final List<QueueWatchService> watchServices = new ArrayList<QueueWatchService>();
+        for ( int i = 0; i < fileSystems; i++ ) {
+            final QueueWatchService ws = new QueueWatchService();
+            executed.put( ws, Collections.synchronizedList( new ArrayList<WatchKey>() ) );
+            watchServices.add( ws );
+            dispatcher.register( ws );
+        }
+
+        dispatcher.start( new IOWatchServiceExecutor() {
+            @Override
+            public void execute( final WatchKey watchKey,
+                                 final Filter<WatchEvent<?>> filter ) {
+                executed.get( owners.get( watchKey ) ).add( watchKey );
+                fired.countDown();
+            }
+        }, null );
+
+        final Map<WatchService, List<WatchKey>> published = new ConcurrentHashMap<WatchService, List<WatchKey>>();
+        for ( int k = 0; k < keysPerFileSystem; k++ ) {
+            for ( final QueueWatchService ws : watchServices ) {
+                final WatchKey key = validKey();
+                owners.put( key, ws );
+                if ( !published.containsKey( ws ) ) {
+                    published.put( ws, new ArrayList<WatchKey>() );
+                }
+                published.get( ws ).add( key );
+                ws.keys.add( key );
+            }
+        }
+
+        assertTrue( fired.await( 10, TimeUnit.SECONDS ) );
+        for ( final QueueWatchService ws : watchServices ) {
+            assertEquals( published.get( ws ), executed.get( ws ) );
+        }
+    }
+
+    @Test
+    public void testDropsClosedAndInvalidWatchServices() throws Exception {
+        final CountDownLatch fired = new CountDownLatch( 1 );
+        final QueueWatchService closed = new QueueWatchService();
+        final QueueWatchService invalid = new QueueWatchService();
+
+        dispatcher.register( closed );
+        dispatcher.register( invalid );
+        dispatcher.start( new IOWatchServiceExecutor() {
+            @Override
+            public void execute( final WatchKey watchKey,
+                                 final Filter<WatchEvent<?>> filter ) {
+                fired.countDown();
+            }
+        }, null );
+
+        final WatchKey key = mock( WatchKey.class );
+        when( key.reset() ).thenReturn( false );
+        invalid.keys.add( key );
+        closed.close();
+
+        assertTrue( fired.await( 10, TimeUnit.SECONDS ) );
+        for ( int i = 0; i < 100 && dispatcher.getWatchServiceCount() > 0; i++ ) {
+            Thread.sleep( 20 );
+        }
+        assertEquals( 0, dispatcher.getWatchServiceCount() );
+    }
+
+    private WatchKey validKey() {
+        final WatchKey key = mock( WatchKey.class );
+        when( key.reset() ).thenReturn( true );
+        return key;
+    }
+
+    private static class QueueWatchService implements WatchService {
+
+        private final LinkedBlockingQueue<WatchKey> keys = new LinkedBlockingQueue<WatchKey>();
+        private volatile boolean closed = false;
+
+        @Override
+        public WatchKey poll() throws ClosedWatchServiceException {
+            if ( closed ) {
+                throw new ClosedWatchServiceException();
+            }
+            return keys.poll();
+        }
+
+        @Override
+        public WatchKey poll( final long timeout,
+                              final TimeUnit unit ) throws ClosedWatchServiceException {
+            return poll();
+        }
+
+        @Override
+        public WatchKey take() throws ClosedWatchServiceException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isClose() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
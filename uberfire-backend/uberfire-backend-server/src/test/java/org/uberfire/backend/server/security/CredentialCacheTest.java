@@ -0,0 +1,76 @@
+package org.uberfire.backend.server.security;
+
+import java.util.Arrays;
+
+import org.jboss.errai.security.shared.api.Role;
+import org.jboss.errai.security.shared.api.RoleImpl;
+import org.jboss.errai.security.shared.api.identity.User;
+import org.jboss.errai.security.shared.api.identity.UserImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CredentialCacheTest {
+
+    private final User john = new UserImpl( "john", Arrays.<Role>asList( new RoleImpl( "admin" ) ) );
+
+    @Test
+    public void testHitsOnlyWithSameCredentials() {
+        final CredentialCache cache = new CredentialCache( 60000, 10 );
+
+        assertNull( cache.get( "john", "secret" ) );
+        cache.put( "john", "secret", john );
+
+        final User cached = cache.get( "john", "secret" );
+        assertNotNull( cached );
+        assertEquals( "john", cached.getIdentifier() );
+        assertEquals( 1, cached.getRoles().size() );
+
+        assertNull( cache.get( "john", "wrong" ) );
+        assertNull( cache.get( "johns", "ecret" ) );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 3, cache.getMisses() );
+    }
+
+    @Test
+    public void testExpiresAfterTtl() throws Exception {
+        final CredentialCache cache = new CredentialCache( 20, 10 );
+
+        cache.put( "john", "secret", john );
+        Thread.sleep( 50 );
+
+        assertNull( cache.get( "john", "secret" ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testInvalidation() {
+        final CredentialCache cache = new CredentialCache( 60000, 10 );
+
+        cache.put( "john", "secret", john );
+        cache.put( "john", "other", john );
+        cache.put( "mary", "secret", new UserImpl( "mary" ) );
+
+        cache.invalidate( "john" );
+        assertNull( cache.get( "john", "secret" ) );
+        assertNull( cache.get( "john", "other" ) );
+        assertNotNull( cache.get( "mary", "secret" ) );
+
+        cache.invalidateAll();
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testBoundedAndDisabled() {
+        final CredentialCache cache = new CredentialCache( 60000, 1 );
+        cache.put( "john", "secret", john );
+        cache.put( "mary", "secret", new UserImpl( "mary" ) );
+        assertEquals( 1, cache.size() );
+        assertNull( cache.get( "john", "secret" ) );
+
+        final CredentialCache disabled = new CredentialCache( 0, 10 );
+        disabled.put( "john", "secret", john );
+        assertEquals( 0, disabled.size() );
+        assertNull( disabled.get( "john", "secret" ) );
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar.
+ * <p>
+ * Without arguments every benchmark of this module is run once per thread count in {@link #THREAD_COUNTS}, so
+ * contention on the file system locks shows up next to the single threaded numbers. Any argument hands control over
+ * to the standard JMH command line (e.g. <code>-t 8 IOServiceBenchmark.exists</code>).
+ */
+public class BenchmarkRunner {
+
+    public static final int[] THREAD_COUNTS = new int[]{ 1, 4, 16 };
+
+    public static void main( final String[] args ) throws Exception {
+        if ( args.length > 0 ) {
+            Main.main( args );
+            return;
+        }
+
+        for ( final int threads : THREAD_COUNTS ) {
+            final Options options = new OptionsBuilder()
+                    .include( "org\\.uberfire\\.benchmarks\\..*" )
+                    .threads( threads )
+                    .forks( 1 )
+                    .build();
+
+            new Runner( options ).run();
+        }
+    }
+}
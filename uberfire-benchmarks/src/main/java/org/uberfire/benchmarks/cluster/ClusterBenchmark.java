@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.benchmarks.cluster;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uberfire.io.IOService;
+import org.uberfire.io.impl.IOServiceDotFileImpl;
+import org.uberfire.io.impl.cluster.IOServiceClusterImpl;
+import org.uberfire.io.impl.cluster.local.LocalCluster;
+import org.uberfire.io.impl.cluster.local.LocalClusterServiceFactory;
+import org.uberfire.java.nio.file.FileSystem;
+import org.uberfire.java.nio.file.FileSystemAlreadyExistsException;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystemProvider;
+
+/**
+ * Clustered writes over a {@link LocalCluster} of a few nodes, each one an {@link IOServiceClusterImpl} with the same
+ * service id, as every node of a real deployment has.
+ * <p>
+ * Every node has a git provider and repositories of its own, serving them through a git daemon on a port of its own,
+ * so the syncs a write triggers fetch the new commits from the writer as in a real deployment: what's measured is the
+ * cost of the cluster locks and messaging, with the simulated latency, plus the transfer.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ClusterBenchmark {
+
+    @Param({ "2", "4" })
+    public int nodes;
+
+    /**
+     * Simulated latency, in milliseconds, of every message and lock round trip.
+     */
+    @Param({ "0", "5" })
+    public long latency;
+
+    @Param({ "1024" })
+    public int fileSize;
+
+    private File tempDir;
+    private LocalCluster cluster;
+    private JGitFileSystemProvider[] providers;
+    private IOService[] services;
+    private byte[] content;
+
+    private final AtomicInteger threadSequence = new AtomicInteger( 0 );
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        tempDir = File.createTempFile( "uberfire-benchmark", "" );
+        tempDir.delete();
+        tempDir.mkdirs();
+
+        content = new byte[ fileSize ];
+        Arrays.fill( content, (byte) 'u' );
+
+        cluster = new LocalCluster( latency, 0 );
+        providers = new JGitFileSystemProvider[ nodes ];
+        services = new IOService[ nodes ];
+        for ( int i = 0; i < nodes; i++ ) {
+            providers[ i ] = new JGitFileSystemProvider( gitPrefs( new File( tempDir, "node" + i ) ) );
+            final LocalClusterServiceFactory factory = new LocalClusterServiceFactory( cluster, "node" + i, false );
+            services[ i ] = new IOServiceClusterImpl( new NodeIOService( "benchmark", providers[ i ] ), factory, false );
+            factory.startClusterService();
+        }
+
+        // peers create the file system in their own provider when they get the announcement
+        services[ 0 ].newFileSystem( URI.create( "git://benchmark" ), new HashMap<String, Object>() {{
+            put( "init", "true" );
+        }} );
+        cluster.awaitIdle( 10, TimeUnit.SECONDS );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        cluster.awaitIdle( 10, TimeUnit.SECONDS );
+        for ( final IOService service : services ) {
+            service.dispose();
+        }
+        cluster.shutdown();
+        for ( final JGitFileSystemProvider provider : providers ) {
+            provider.shutdown();
+        }
+        FileUtils.deleteQuietly( tempDir );
+    }
+
+    private static Map<String, String> gitPrefs( final File dir ) throws Exception {
+        final String port = String.valueOf( freePort() );
+        final Map<String, String> prefs = new HashMap<String, String>();
+        prefs.put( "org.uberfire.nio.git.dir", dir.getAbsolutePath() );
+        prefs.put( "org.uberfire.nio.git.daemon.enabled", "true" );
+        prefs.put( "org.uberfire.nio.git.daemon.port", port );
+        prefs.put( "org.uberfire.nio.git.daemon.hostport", port );
+        prefs.put( "org.uberfire.nio.git.ssh.enabled", "false" );
+        return prefs;
+    }
+
+    private static int freePort() throws Exception {
+        final ServerSocket socket = new ServerSocket( 0 );
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Resolves git URIs against the provider of its node instead of the one installed in the JVM.
+     */
+    private static class NodeIOService extends IOServiceDotFileImpl {
+
+        private final JGitFileSystemProvider provider;
+
+        NodeIOService( final String serviceId,
+                       final JGitFileSystemProvider provider ) {
+            super( serviceId );
+            this.provider = provider;
+        }
+
+        @Override
+        public Path get( final URI uri ) {
+            return provider.getPath( uri );
+        }
+
+        @Override
+        public FileSystem getFileSystem( final URI uri ) {
+            final FileSystem fs = provider.getFileSystem( uri );
+            fileSystems.add( fs );
+            return fs;
+        }
+
+        @Override
+        public FileSystem newFileSystem( final URI uri,
+                                         final Map<String, ?> env ) {
+            try {
+                final FileSystem fs = provider.newFileSystem( uri, env );
+                fileSystems.add( fs );
+                return fs;
+            } catch ( final FileSystemAlreadyExistsException ex ) {
+                fileSystems.add( provider.getFileSystem( uri ) );
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Spreads the benchmark threads over the nodes, each one writing a file of its own in the repository of its node,
+     * with a different content every time so each write is a real commit to sync.
+     */
+    @State(Scope.Thread)
+    public static class Node {
+
+        private IOService service;
+        private Path target;
+        private byte[] content;
+        private long writes = 0;
+
+        @Setup(Level.Trial)
+        public void setup( final ClusterBenchmark benchmark ) {
+            final int thread = benchmark.threadSequence.getAndIncrement();
+            service = benchmark.services[ thread % benchmark.services.length ];
+            target = service.getFileSystem( URI.create( "git://benchmark" ) ).getPath( "/data", "thread" + thread + ".txt" );
+            content = benchmark.content.clone();
+        }
+
+        byte[] nextContent() {
+            long value = ++writes;
+            for ( int i = 0; i < 8 && i < content.length; i++ ) {
+                content[ i ] = (byte) value;
+                value >>>= 8;
+            }
+            return content;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Path write( final Node node ) {
+        return node.service.write( node.target, node.nextContent() );
+    }
+
+    /**
+     * Time from a write until every peer handled the sync it triggered.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean syncLag( final Node node ) throws InterruptedException {
+        node.service.write( node.target, node.nextContent() );
+        return cluster.awaitIdle( 10, TimeUnit.SECONDS );
+    }
+}
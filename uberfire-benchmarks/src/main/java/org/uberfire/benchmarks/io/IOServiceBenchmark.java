@@ -0,0 +1,232 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.benchmarks.io;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uberfire.io.IOService;
+import org.uberfire.io.impl.IOServiceDotFileImpl;
+import org.uberfire.io.impl.IOServiceNio2WrapperImpl;
+import org.uberfire.java.nio.file.DirectoryStream;
+import org.uberfire.java.nio.file.FileSystem;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.api.FileSystemProviders;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystemProvider;
+
+/**
+ * Throughput of the most used {@link IOService} operations over the git and the plain file system providers, for
+ * both service implementations and for a few repository sizes.
+ * <p>
+ * Everything happens under a temporary directory created for the trial and deleted at its end. The git provider reads
+ * its root directory from a system property when it's bootstrapped, so every trial must run in its own JVM: keep
+ * forks above zero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IOServiceBenchmark {
+
+    /**
+     * "dotfile" for {@link IOServiceDotFileImpl}, "nio2" for {@link IOServiceNio2WrapperImpl}.
+     */
+    @Param({ "dotfile", "nio2" })
+    public String service;
+
+    /**
+     * "git" for the JGit provider, "file" for the plain file system one.
+     */
+    @Param({ "git", "file" })
+    public String fileSystem;
+
+    /**
+     * Number of files the benchmarked directory holds before the measurement starts.
+     */
+    @Param({ "10", "100", "1000" })
+    public int files;
+
+    @Param({ "1024" })
+    public int fileSize;
+
+    private File tempDir;
+    private IOService ioService;
+    private Path dir;
+    private Path[] paths;
+    private byte[] content;
+
+    private final AtomicInteger threadSequence = new AtomicInteger( 0 );
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        tempDir = File.createTempFile( "uberfire-benchmark", "" );
+        tempDir.delete();
+        tempDir.mkdirs();
+
+        System.setProperty( "org.uberfire.nio.git.dir", new File( tempDir, ".niogit" ).getAbsolutePath() );
+        System.setProperty( "org.uberfire.nio.git.daemon.enabled", "false" );
+        System.setProperty( "org.uberfire.nio.git.ssh.enabled", "false" );
+
+        if ( "nio2".equals( service ) ) {
+            ioService = new IOServiceNio2WrapperImpl();
+        } else {
+            ioService = new IOServiceDotFileImpl();
+        }
+
+        content = new byte[ fileSize ];
+        Arrays.fill( content, (byte) 'u' );
+
+        final FileSystem fs;
+        if ( "git".equals( fileSystem ) ) {
+            fs = ioService.newFileSystem( URI.create( "git://benchmark" ), new HashMap<String, Object>() {{
+                put( "init", "true" );
+            }} );
+            dir = fs.getPath( "/data" );
+        } else {
+            final File root = new File( tempDir, "files" );
+            new File( root, "data" ).mkdirs();
+            dir = ioService.get( root.toURI() ).resolve( "data" );
+            fs = dir.getFileSystem();
+        }
+
+        paths = new Path[ files ];
+        if ( "git".equals( fileSystem ) ) {
+            // one commit for the whole population; the plain file system has no batch state to set
+            ioService.startBatch( fs );
+            try {
+                populate();
+            } finally {
+                ioService.endBatch();
+            }
+        } else {
+            populate();
+        }
+    }
+
+    private void populate() {
+        for ( int i = 0; i < files; i++ ) {
+            paths[ i ] = dir.resolve( "file" + i + ".txt" );
+            ioService.write( paths[ i ], content );
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if ( "git".equals( fileSystem ) ) {
+            final JGitFileSystemProvider provider = (JGitFileSystemProvider) FileSystemProviders.resolveProvider( URI.create( "git://benchmark" ) );
+            provider.shutdown();
+        }
+        ioService.dispose();
+        FileUtils.deleteQuietly( tempDir );
+    }
+
+    /**
+     * Per thread cursor over the populated files and a file of its own to write to, so concurrent writers don't
+     * overwrite each other's content and contend only on the file system.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private Path[] paths;
+        private Path target;
+        private byte[] content;
+        private long writes = 0;
+        private int next = 0;
+
+        @Setup(Level.Trial)
+        public void setup( final IOServiceBenchmark benchmark ) {
+            paths = benchmark.paths;
+            final int thread = benchmark.threadSequence.getAndIncrement();
+            target = benchmark.dir.resolve( "thread" + thread + ".txt" );
+            content = benchmark.content.clone();
+            next = thread;
+        }
+
+        /**
+         * The content to write next, never equal to the previous one: identical content makes no git commit at all.
+         */
+        byte[] nextContent() {
+            long value = ++writes;
+            for ( int i = 0; i < 8 && i < content.length; i++ ) {
+                content[ i ] = (byte) value;
+                value >>>= 8;
+            }
+            return content;
+        }
+
+        Path next() {
+            final Path path = paths[ next % paths.length ];
+            next++;
+            return path;
+        }
+    }
+
+    @Benchmark
+    public Path write( final Cursor cursor ) {
+        return ioService.write( cursor.target, cursor.nextContent() );
+    }
+
+    @Benchmark
+    public byte[] readAllBytes( final Cursor cursor ) {
+        return ioService.readAllBytes( cursor.next() );
+    }
+
+    @Benchmark
+    public boolean exists( final Cursor cursor ) {
+        return ioService.exists( cursor.next() );
+    }
+
+    @Benchmark
+    public Map<String, Object> readAttributes( final Cursor cursor ) {
+        return ioService.readAttributes( cursor.next() );
+    }
+
+    @Benchmark
+    public int newDirectoryStream() {
+        int count = 0;
+        final DirectoryStream<Path> stream = ioService.newDirectoryStream( dir );
+        try {
+            for ( final Path path : stream ) {
+                count++;
+            }
+        } finally {
+            stream.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.benchmarks.regex;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uberfire.io.regex.AntPathFilter;
+import org.uberfire.io.regex.AntPathMatcher;
+
+/**
+ * Include/exclude checks as done by the file servlets on every request, parsing the patterns on each call through
+ * {@link AntPathMatcher} against evaluating the same patterns compiled once into an {@link AntPathFilter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AntPathMatcherBenchmark {
+
+    private final Collection<String> includes = Arrays.asList( "git://**", "default://master@*/**", "**/repo/**" );
+    private final Collection<String> excludes = Arrays.asList( "**/.git/**", "**/*.tmp", "git://system/**" );
+
+    private final URI[] uris = new URI[]{
+            URI.create( "git://uf-playground/mortgages/src/main/resources/org/mortgages/Pricing.gdst" ),
+            URI.create( "default://master@uf-playground/mortgages/pom.xml" ),
+            URI.create( "git://system/system.git/config" ),
+            URI.create( "file:///var/tmp/upload.tmp" )
+    };
+
+    private AntPathFilter filter;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        filter = new AntPathFilter( includes, excludes );
+    }
+
+    @Benchmark
+    public boolean antPathMatcher() {
+        return AntPathMatcher.filter( includes, excludes, nextUri() );
+    }
+
+    @Benchmark
+    public boolean compiledFilter() {
+        return filter.accept( nextUri() );
+    }
+
+    private URI nextUri() {
+        return uris[ ( next++ & Integer.MAX_VALUE ) % uris.length ];
+    }
+}
@@ -12,8 +12,9 @@ abstract class BaseLockExecuteNotifyReleaseTemplate<V> {
 
     public V execute( final ClusterService clusterService,
                       final RunnableFuture<V> task ) {
+        final String[] resourceIds = getResourceIds();
         try {
-            clusterService.lock();
+            lock( clusterService, resourceIds );
 
             task.run();
 
@@ -27,11 +28,29 @@ abstract class BaseLockExecuteNotifyReleaseTemplate<V> {
         } catch ( final Exception e ) {
             throwException( e );
         } finally {
-            clusterService.unlock();
+            unlock( clusterService, resourceIds );
         }
         return null;
     }
 
+    private void lock( final ClusterService clusterService,
+                       final String[] resourceIds ) {
+        if ( resourceIds == null || resourceIds.length == 0 ) {
+            clusterService.lock();
+        } else {
+            clusterService.lock( resourceIds );
+        }
+    }
+
+    private void unlock( final ClusterService clusterService,
+                         final String[] resourceIds ) {
+        if ( resourceIds == null || resourceIds.length == 0 ) {
+            clusterService.unlock();
+        } else {
+            clusterService.unlock( resourceIds );
+        }
+    }
+
     private void throwException( final Throwable e ) {
         if ( e instanceof RuntimeException ) {
             throw (RuntimeException) e;
@@ -46,4 +65,11 @@ abstract class BaseLockExecuteNotifyReleaseTemplate<V> {
     public abstract String getServiceId();
 
     public abstract Map<String, String> buildContent();
+
+    /**
+     * Ids of the resources the task works on, only their locks are taken; none means the cluster wide lock.
+     */
+    public String[] getResourceIds() {
+        return null;
+    }
 }
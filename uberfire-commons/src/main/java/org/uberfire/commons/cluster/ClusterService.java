@@ -16,4 +16,13 @@ public interface ClusterService extends MessageService,
     void onStart( Runnable runnable );
 
     boolean isInnerLocked();
+
+    /**
+     * Takes the cluster lock of the given resources only (e.g. file system ids), so work on other resources can go on
+     * in other nodes. Locks are reentrant for the calling thread and taken in the same order whatever the order of
+     * the arguments.
+     */
+    void lock( final String... resourceIds );
+
+    void unlock( final String... resourceIds );
 }
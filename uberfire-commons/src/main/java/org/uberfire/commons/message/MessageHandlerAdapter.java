@@ -0,0 +1,40 @@
+package org.uberfire.commons.message;
+
+import java.util.Map;
+
+import org.uberfire.commons.data.Pair;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Lets a string map {@link MessageHandler} receive typed payloads: the payload is handed over through
+ * {@link MessagePayload#asMap()} and the reply converted back.
+ */
+public class MessageHandlerAdapter implements PayloadMessageHandler {
+
+    private final MessageHandler handler;
+
+    public MessageHandlerAdapter( final MessageHandler handler ) {
+        this.handler = checkNotNull( "handler", handler );
+    }
+
+    /**
+     * Returns the handler itself if it already handles payloads, an adapter otherwise.
+     */
+    public static PayloadMessageHandler adapt( final MessageHandler handler ) {
+        if ( handler instanceof PayloadMessageHandler ) {
+            return (PayloadMessageHandler) handler;
+        }
+        return new MessageHandlerAdapter( handler );
+    }
+
+    @Override
+    public Pair<MessageType, MessagePayload> handlePayload( final MessageType type,
+                                                            final MessagePayload payload ) {
+        final Pair<MessageType, Map<String, String>> result = handler.handleMessage( type, payload.asMap() );
+        if ( result == null ) {
+            return null;
+        }
+        return new Pair<MessageType, MessagePayload>( result.getK1(), MessagePayload.fromMap( result.getK2() ) );
+    }
+}
@@ -0,0 +1,153 @@
+package org.uberfire.commons.message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Typed content of a cluster message, encoded by {@link MessagePayloadCodec}.
+ * <p>
+ * Handlers written against plain string maps see the payload through {@link #asMap()}: numbers and booleans become
+ * their string form and a list of strings {@code key} becomes {@code key_0}, {@code key_1}... entries, which is how
+ * those handlers used to pack lists. {@link #getStrings(String)} reads lists packed that way as well.
+ */
+public class MessagePayload {
+
+    private final Map<String, Object> fields = new LinkedHashMap<String, Object>();
+
+    public static MessagePayload fromMap( final Map<String, String> content ) {
+        final MessagePayload payload = new MessagePayload();
+        if ( content != null ) {
+            for ( final Map.Entry<String, String> entry : content.entrySet() ) {
+                payload.putString( entry.getKey(), entry.getValue() );
+            }
+        }
+        return payload;
+    }
+
+    public MessagePayload putString( final String key,
+                                     final String value ) {
+        fields.put( checkNotNull( "key", key ), value );
+        return this;
+    }
+
+    public MessagePayload putLong( final String key,
+                                   final long value ) {
+        fields.put( checkNotNull( "key", key ), value );
+        return this;
+    }
+
+    public MessagePayload putBoolean( final String key,
+                                      final boolean value ) {
+        fields.put( checkNotNull( "key", key ), value );
+        return this;
+    }
+
+    public MessagePayload putStrings( final String key,
+                                      final List<String> values ) {
+        fields.put( checkNotNull( "key", key ), new ArrayList<String>( checkNotNull( "values", values ) ) );
+        return this;
+    }
+
+    public boolean contains( final String key ) {
+        return fields.containsKey( key );
+    }
+
+    public Set<String> keys() {
+        return Collections.unmodifiableSet( fields.keySet() );
+    }
+
+    public String getString( final String key ) {
+        final Object value = fields.get( key );
+        if ( value == null || value instanceof List ) {
+            return null;
+        }
+        return value.toString();
+    }
+
+    public long getLong( final String key,
+                         final long defaultValue ) {
+        final Object value = fields.get( key );
+        if ( value instanceof Long ) {
+            return (Long) value;
+        }
+        if ( value instanceof String ) {
+            try {
+                return Long.parseLong( (String) value );
+            } catch ( final NumberFormatException ignored ) {
+            }
+        }
+        return defaultValue;
+    }
+
+    public boolean getBoolean( final String key ) {
+        final Object value = fields.get( key );
+        if ( value instanceof Boolean ) {
+            return (Boolean) value;
+        }
+        return value instanceof String && Boolean.parseBoolean( (String) value );
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> getStrings( final String key ) {
+        final Object value = fields.get( key );
+        if ( value instanceof List ) {
+            return Collections.unmodifiableList( (List<String>) value );
+        }
+
+        final List<String> result = new ArrayList<String>();
+        for ( int i = 0; fields.containsKey( key + "_" + i ); i++ ) {
+            result.add( getString( key + "_" + i ) );
+        }
+        return result;
+    }
+
+    Map<String, Object> fields() {
+        return fields;
+    }
+
+    public Map<String, String> asMap() {
+        final Map<String, String> result = new HashMap<String, String>();
+        for ( final Map.Entry<String, Object> entry : fields.entrySet() ) {
+            if ( entry.getValue() instanceof List ) {
+                int i = 0;
+                for ( final Object value : (List<?>) entry.getValue() ) {
+                    result.put( entry.getKey() + "_" + i, (String) value );
+                    i++;
+                }
+            } else if ( entry.getValue() != null ) {
+                result.put( entry.getKey(), entry.getValue().toString() );
+            } else {
+                result.put( entry.getKey(), null );
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !( o instanceof MessagePayload ) ) {
+            return false;
+        }
+        return fields.equals( ( (MessagePayload) o ).fields );
+    }
+
+    @Override
+    public int hashCode() {
+        return fields.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePayload" + fields;
+    }
+}
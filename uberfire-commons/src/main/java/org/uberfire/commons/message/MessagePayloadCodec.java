@@ -0,0 +1,234 @@
+package org.uberfire.commons.message;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Binary form of {@link MessagePayload}s, several times smaller than the same content as a map of strings.
+ * <p>
+ * Layout: a version byte, a kind byte (single payload or batch), then for a batch the number of payloads, and for
+ * every payload its number of fields followed by each field as key, type tag and value. Counts, lengths and numbers
+ * are variable length integers, strings are UTF-8. Decoders reject versions newer than the one they know, so the
+ * version must be bumped on any layout change; older versions must keep being read.
+ */
+public final class MessagePayloadCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final byte SINGLE = 0;
+    private static final byte BATCH = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+    private static final byte TYPE_STRINGS = 4;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private MessagePayloadCodec() {
+    }
+
+    public static byte[] encode( final MessagePayload payload ) {
+        checkNotNull( "payload", payload );
+        final Output out = new Output();
+        out.write( VERSION );
+        out.write( SINGLE );
+        writePayload( out, payload );
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes several payloads in one envelope, so they travel as a single message.
+     */
+    public static byte[] encodeBatch( final List<MessagePayload> payloads ) {
+        checkNotNull( "payloads", payloads );
+        final Output out = new Output();
+        out.write( VERSION );
+        out.write( BATCH );
+        out.writeVarLong( payloads.size() );
+        for ( final MessagePayload payload : payloads ) {
+            writePayload( out, payload );
+        }
+        return out.toByteArray();
+    }
+
+    public static MessagePayload decode( final byte[] content ) {
+        final List<MessagePayload> result = decodeBatch( content );
+        if ( result.size() != 1 ) {
+            throw new IllegalArgumentException( "Expected a single message payload, found " + result.size() );
+        }
+        return result.get( 0 );
+    }
+
+    /**
+     * Decodes a batch envelope; a single payload is returned as a batch of one.
+     */
+    public static List<MessagePayload> decodeBatch( final byte[] content ) {
+        checkNotNull( "content", content );
+        final Input in = new Input( content );
+        final byte version = in.read();
+        if ( version < 1 || version > VERSION ) {
+            throw new IllegalArgumentException( "Unsupported message payload version " + version );
+        }
+        final byte kind = in.read();
+        if ( kind == SINGLE ) {
+            return Collections.singletonList( readPayload( in ) );
+        }
+        if ( kind != BATCH ) {
+            throw new IllegalArgumentException( "Unknown message payload kind " + kind );
+        }
+        final int size = in.readSize();
+        final List<MessagePayload> result = new ArrayList<MessagePayload>( size );
+        for ( int i = 0; i < size; i++ ) {
+            result.add( readPayload( in ) );
+        }
+        return result;
+    }
+
+    public static boolean isBatch( final byte[] content ) {
+        return content != null && content.length > 1 && content[ 1 ] == BATCH;
+    }
+
+    private static void writePayload( final Output out,
+                                      final MessagePayload payload ) {
+        final Map<String, Object> fields = payload.fields();
+        out.writeVarLong( fields.size() );
+        for ( final Map.Entry<String, Object> field : fields.entrySet() ) {
+            out.writeString( field.getKey() );
+            final Object value = field.getValue();
+            if ( value == null ) {
+                out.write( TYPE_NULL );
+            } else if ( value instanceof String ) {
+                out.write( TYPE_STRING );
+                out.writeString( (String) value );
+            } else if ( value instanceof Long ) {
+                out.write( TYPE_LONG );
+                out.writeVarLong( zigZag( (Long) value ) );
+            } else if ( value instanceof Boolean ) {
+                out.write( TYPE_BOOLEAN );
+                out.write( (byte) ( (Boolean) value ? 1 : 0 ) );
+            } else {
+                final List<?> values = (List<?>) value;
+                out.write( TYPE_STRINGS );
+                out.writeVarLong( values.size() );
+                for ( final Object item : values ) {
+                    out.writeString( (String) item );
+                }
+            }
+        }
+    }
+
+    private static MessagePayload readPayload( final Input in ) {
+        final MessagePayload payload = new MessagePayload();
+        final int size = in.readSize();
+        for ( int i = 0; i < size; i++ ) {
+            final String key = in.readString();
+            final byte type = in.read();
+            switch ( type ) {
+                case TYPE_NULL:
+                    payload.putString( key, null );
+                    break;
+                case TYPE_STRING:
+                    payload.putString( key, in.readString() );
+                    break;
+                case TYPE_LONG:
+                    payload.putLong( key, unZigZag( in.readVarLong() ) );
+                    break;
+                case TYPE_BOOLEAN:
+                    payload.putBoolean( key, in.read() != 0 );
+                    break;
+                case TYPE_STRINGS:
+                    final int count = in.readSize();
+                    final List<String> values = new ArrayList<String>( count );
+                    for ( int j = 0; j < count; j++ ) {
+                        values.add( in.readString() );
+                    }
+                    payload.putStrings( key, values );
+                    break;
+                default:
+                    throw new IllegalArgumentException( "Unknown message payload field type " + type );
+            }
+        }
+        return payload;
+    }
+
+    private static long zigZag( final long value ) {
+        return ( value << 1 ) ^ ( value >> 63 );
+    }
+
+    private static long unZigZag( final long value ) {
+        return ( value >>> 1 ) ^ -( value & 1 );
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        void write( final byte value ) {
+            super.write( value );
+        }
+
+        void writeVarLong( long value ) {
+            while ( ( value & ~0x7FL ) != 0 ) {
+                super.write( (int) ( ( value & 0x7F ) | 0x80 ) );
+                value >>>= 7;
+            }
+            super.write( (int) value );
+        }
+
+        void writeString( final String value ) {
+            final byte[] bytes = value.getBytes( UTF_8 );
+            writeVarLong( bytes.length );
+            super.write( bytes, 0, bytes.length );
+        }
+    }
+
+    private static class Input {
+
+        private final byte[] content;
+        private int position = 0;
+
+        Input( final byte[] content ) {
+            this.content = content;
+        }
+
+        byte read() {
+            if ( position >= content.length ) {
+                throw new IllegalArgumentException( "Truncated message payload" );
+            }
+            return content[ position++ ];
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for ( int shift = 0; shift < 64; shift += 7 ) {
+                final byte b = read();
+                result |= (long) ( b & 0x7F ) << shift;
+                if ( ( b & 0x80 ) == 0 ) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException( "Malformed message payload number" );
+        }
+
+        int readSize() {
+            final long size = readVarLong();
+            if ( size < 0 || size > content.length - position ) {
+                throw new IllegalArgumentException( "Malformed message payload size " + size );
+            }
+            return (int) size;
+        }
+
+        String readString() {
+            final int length = readSize();
+            final String result = new String( content, position, length, UTF_8 );
+            position += length;
+            return result;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.uberfire.commons.message;
 
+import java.util.List;
 import java.util.Map;
 
 public interface MessageService {
@@ -19,6 +20,13 @@ public interface MessageService {
                     final MessageType type,
                     final Map<String, String> content );
 
+    /**
+     * Broadcasts several messages of the same type in a single envelope; receivers handle them one by one, in order.
+     */
+    void broadcast( final String serviceId,
+                    final MessageType type,
+                    final List<Map<String, String>> contents );
+
     void broadcast( final String serviceId,
                     final MessageType type,
                     final Map<String, String> content,
@@ -0,0 +1,14 @@
+package org.uberfire.commons.message;
+
+import org.uberfire.commons.data.Pair;
+
+/**
+ * Handler of typed message content; cluster services prefer it over the string map contract of
+ * {@link MessageHandler} when a resolved handler implements both.
+ */
+public interface PayloadMessageHandler {
+
+    Pair<MessageType, MessagePayload> handlePayload( final MessageType type,
+                                                     final MessagePayload payload );
+
+}
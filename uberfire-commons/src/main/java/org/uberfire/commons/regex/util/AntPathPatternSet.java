@@ -0,0 +1,207 @@
+package org.uberfire.commons.regex.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.uberfire.commons.validation.PortablePreconditions.*;
+
+/**
+ * A set of Ant-style path patterns compiled once, matching the same paths as {@link AntPathMatcher#match(String, String)}
+ * with the default "/" separator.
+ * <p>
+ * Patterns are split into segments up front; paths are walked in place, segment by segment, instead of being
+ * tokenized for every pattern, so {@link #matches(String)} doesn't allocate. Instances are immutable and can be shared
+ * between threads.
+ */
+public final class AntPathPatternSet {
+
+    private static final char SEPARATOR = '/';
+
+    private final Pattern[] patterns;
+
+    public AntPathPatternSet( final Collection<String> patterns ) {
+        checkNotNull( "patterns", patterns );
+        this.patterns = new Pattern[ patterns.size() ];
+        int i = 0;
+        for ( final String pattern : patterns ) {
+            this.patterns[ i++ ] = new Pattern( checkNotNull( "pattern", pattern ) );
+        }
+    }
+
+    public boolean isEmpty() {
+        return patterns.length == 0;
+    }
+
+    /**
+     * @return true if any of the patterns matches the whole path
+     */
+    public boolean matches( final String path ) {
+        checkNotNull( "path", path );
+        final boolean absolute = path.length() > 0 && path.charAt( 0 ) == SEPARATOR;
+        final boolean trailingSeparator = path.length() > 0 && path.charAt( path.length() - 1 ) == SEPARATOR;
+        for ( final Pattern pattern : patterns ) {
+            if ( pattern.absolute == absolute && pattern.matches( path, trailingSeparator ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Pattern {
+
+        private final boolean absolute;
+        private final boolean trailingSeparator;
+        private final boolean hasDoubleStar;
+        private final char[][] segments;
+        private final boolean[] doubleStar;
+
+        Pattern( final String pattern ) {
+            this.absolute = pattern.startsWith( "/" );
+            this.trailingSeparator = pattern.endsWith( "/" );
+
+            final String[] tokens = AntPathMatcher.tokenizeToStringArray( pattern, "/" );
+            final List<char[]> segments = new ArrayList<char[]>( tokens.length );
+            this.doubleStar = new boolean[ tokens.length ];
+            boolean hasDoubleStar = false;
+            for ( int i = 0; i < tokens.length; i++ ) {
+                segments.add( tokens[ i ].toCharArray() );
+                doubleStar[ i ] = "**".equals( tokens[ i ] );
+                hasDoubleStar |= doubleStar[ i ];
+            }
+            this.segments = segments.toArray( new char[ segments.size() ][] );
+            this.hasDoubleStar = hasDoubleStar;
+        }
+
+        boolean matches( final String path,
+                         final boolean pathTrailingSeparator ) {
+            if ( hasDoubleStar ) {
+                return matchesWithDoubleStar( path );
+            }
+
+            int position = 0;
+            for ( int i = 0; i < segments.length; i++ ) {
+                final int start = segmentStart( path, position );
+                if ( start < 0 ) {
+                    // path exhausted: only a trailing "*" may still match a path ending with the separator
+                    return i == segments.length - 1 && isSingleStar( segments[ i ] ) && pathTrailingSeparator;
+                }
+                final int end = segmentEnd( path, start );
+                if ( !matchesSegment( segments[ i ], path, start, end ) ) {
+                    return false;
+                }
+                position = end;
+            }
+            return segmentStart( path, position ) < 0 && trailingSeparator == pathTrailingSeparator;
+        }
+
+        /**
+         * Greedy wildcard matching over segments, "**" standing for any number of them: on a mismatch the last "**"
+         * seen absorbs one more path segment and matching resumes right after it.
+         */
+        private boolean matchesWithDoubleStar( final String path ) {
+            int segment = 0;
+            int position = 0;
+            int starSegment = -1;
+            int starPosition = 0;
+
+            while ( true ) {
+                final int start = segmentStart( path, position );
+                if ( start < 0 ) {
+                    break;
+                }
+                if ( segment < segments.length && doubleStar[ segment ] ) {
+                    starSegment = segment++;
+                    starPosition = position;
+                    continue;
+                }
+                final int end = segmentEnd( path, start );
+                if ( segment < segments.length && matchesSegment( segments[ segment ], path, start, end ) ) {
+                    segment++;
+                    position = end;
+                    continue;
+                }
+                if ( starSegment < 0 ) {
+                    return false;
+                }
+                starPosition = segmentEnd( path, segmentStart( path, starPosition ) );
+                position = starPosition;
+                segment = starSegment + 1;
+            }
+
+            while ( segment < segments.length && doubleStar[ segment ] ) {
+                segment++;
+            }
+            return segment == segments.length;
+        }
+
+        private static boolean isSingleStar( final char[] segment ) {
+            return segment.length == 1 && segment[ 0 ] == '*';
+        }
+
+        /**
+         * Greedy matching of '*' (any characters) and '?' (exactly one) within a single segment.
+         */
+        private static boolean matchesSegment( final char[] pattern,
+                                               final String path,
+                                               final int start,
+                                               final int end ) {
+            int p = 0;
+            int s = start;
+            int star = -1;
+            int starMatch = start;
+
+            while ( s < end ) {
+                if ( p < pattern.length && pattern[ p ] != '*' && ( pattern[ p ] == '?' || pattern[ p ] == path.charAt( s ) ) ) {
+                    p++;
+                    s++;
+                } else if ( p < pattern.length && pattern[ p ] == '*' ) {
+                    star = p++;
+                    starMatch = s;
+                } else if ( star >= 0 ) {
+                    p = star + 1;
+                    s = ++starMatch;
+                } else {
+                    return false;
+                }
+            }
+            while ( p < pattern.length && pattern[ p ] == '*' ) {
+                p++;
+            }
+            return p == pattern.length;
+        }
+    }
+
+    /**
+     * @return start of the next segment at or after the given position, skipping separators, surrounding whitespace and
+     * blank segments the way {@link AntPathMatcher#tokenizeToStringArray(String, String)} does; -1 if there's none
+     */
+    private static int segmentStart( final String path,
+                                     int position ) {
+        final int length = path.length();
+        while ( position < length ) {
+            final char c = path.charAt( position );
+            if ( c == SEPARATOR || c <= ' ' ) {
+                position++;
+            } else {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return end (exclusive) of the segment starting at the given position, trailing whitespace excluded
+     */
+    private static int segmentEnd( final String path,
+                                   final int start ) {
+        int end = path.indexOf( SEPARATOR, start );
+        if ( end < 0 ) {
+            end = path.length();
+        }
+        while ( end > start && path.charAt( end - 1 ) <= ' ' ) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,102 @@
+package org.uberfire.commons.message;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.uberfire.commons.data.Pair;
+
+import static org.junit.Assert.*;
+
+public class MessagePayloadCodecTest {
+
+    @Test
+    public void testRoundTrip() {
+        final MessagePayload payload = new MessagePayload()
+                .putString( "fs_id", "repo" )
+                .putString( "empty", "" )
+                .putString( "missing", null )
+                .putLong( "size", -1234567890123L )
+                .putBoolean( "force", true )
+                .putStrings( "fs_uri", Arrays.asList( "git://localhost/repo", "ssh://localhost:8001/repo" ) );
+
+        final MessagePayload result = MessagePayloadCodec.decode( MessagePayloadCodec.encode( payload ) );
+
+        assertEquals( payload, result );
+        assertEquals( -1234567890123L, result.getLong( "size", 0 ) );
+        assertTrue( result.getBoolean( "force" ) );
+        assertEquals( Arrays.asList( "git://localhost/repo", "ssh://localhost:8001/repo" ), result.getStrings( "fs_uri" ) );
+    }
+
+    @Test
+    public void testBatchKeepsOrder() {
+        final List<MessagePayload> payloads = Arrays.asList( new MessagePayload().putString( "fs_id", "repo1" ),
+                                                             new MessagePayload().putString( "fs_id", "repo2" ) );
+
+        final byte[] content = MessagePayloadCodec.encodeBatch( payloads );
+
+        assertTrue( MessagePayloadCodec.isBatch( content ) );
+        assertEquals( payloads, MessagePayloadCodec.decodeBatch( content ) );
+    }
+
+    @Test
+    public void testSmallerThanStringMap() {
+        final Map<String, String> content = new HashMap<String, String>();
+        content.put( "fs_scheme", "git" );
+        content.put( "fs_id", "repo" );
+        content.put( "fs_uri", "git://localhost:9418/repo" );
+
+        final byte[] encoded = MessagePayloadCodec.encode( MessagePayload.fromMap( content ) );
+
+        assertTrue( encoded.length < content.toString().length() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNewerVersion() {
+        final byte[] content = MessagePayloadCodec.encode( new MessagePayload().putString( "key", "value" ) );
+        content[ 0 ] = MessagePayloadCodec.VERSION + 1;
+
+        MessagePayloadCodec.decode( content );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTruncatedContent() {
+        final byte[] content = MessagePayloadCodec.encode( new MessagePayload().putString( "key", "value" ) );
+
+        MessagePayloadCodec.decode( Arrays.copyOf( content, content.length - 2 ) );
+    }
+
+    @Test
+    public void testStringMapHandlerThroughAdapter() {
+        final PayloadMessageHandler handler = MessageHandlerAdapter.adapt( new MessageHandler() {
+            @Override
+            public Pair<MessageType, Map<String, String>> handleMessage( final MessageType type,
+                                                                  final Map<String, String> content ) {
+                final Map<String, String> reply = new HashMap<String, String>();
+                reply.put( "first", content.get( "uris_0" ) );
+                reply.put( "count", content.get( "count" ) );
+                return new Pair<MessageType, Map<String, String>>( type, reply );
+            }
+        } );
+
+        final MessagePayload payload = new MessagePayload()
+                .putStrings( "uris", Arrays.asList( "a", "b" ) )
+                .putLong( "count", 2 );
+
+        final Pair<MessageType, MessagePayload> result = handler.handlePayload( null, payload );
+
+        assertEquals( "a", result.getK2().getString( "first" ) );
+        assertEquals( 2, result.getK2().getLong( "count", 0 ) );
+    }
+
+    @Test
+    public void testReadsIndexedKeysAsList() {
+        final Map<String, String> content = new HashMap<String, String>();
+        content.put( "fs_id_0", "repo1" );
+        content.put( "fs_id_1", "repo2" );
+
+        assertEquals( Arrays.asList( "repo1", "repo2" ), MessagePayload.fromMap( content ).getStrings( "fs_id" ) );
+    }
+}
@@ -0,0 +1,51 @@
+package org.uberfire.commons.regex.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AntPathPatternSetTest {
+
+    private static final String[] PATTERNS = new String[]{
+            "git://**", "**/repo/**", "default://**", "/docs/*", "/docs/**/*.html", "/docs/cvs/commit.html",
+            "*.html", "/*.html", "git://master@*/**", "**/a?c/*", "/docs/cvs/", "**", "*", "", "/", "/**/x/**/y"
+    };
+
+    private static final String[] PATHS = new String[]{
+            "git://repo", "git://master@repo/some/file.txt", "default://master@repo/dir/repo/file",
+            "file:///Users/home", "/docs/", "/docs/cvs/commit.html", "/docs/cvs/", "/docs/a/b/index.html",
+            "/docs//cvs/commit.html", "index.html", "/index.html", "x/abc/y", "x/ac/y", "", "/", "/x/q/y", "/x/y/x"
+    };
+
+    @Test
+    public void testMatchesLikeAntPathMatcher() {
+        final AntPathMatcher matcher = new AntPathMatcher();
+        for ( final String pattern : PATTERNS ) {
+            final AntPathPatternSet compiled = new AntPathPatternSet( Collections.singleton( pattern ) );
+            for ( final String path : PATHS ) {
+                assertEquals( "'" + pattern + "' on '" + path + "'", matcher.match( pattern, path ), compiled.matches( path ) );
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesAnyPattern() {
+        final AntPathPatternSet set = new AntPathPatternSet( Arrays.asList( "git://**", "**/repo/**" ) );
+
+        assertTrue( set.matches( "git://antpathmatcher" ) );
+        assertTrue( set.matches( "default://master@x/repo/file" ) );
+        assertFalse( set.matches( "file:///Users/home" ) );
+        assertFalse( set.isEmpty() );
+    }
+
+    @Test
+    public void testEmptySetMatchesNothing() {
+        final AntPathPatternSet set = new AntPathPatternSet( Collections.<String>emptyList() );
+
+        assertTrue( set.isEmpty() );
+        assertFalse( set.matches( "git://repo" ) );
+    }
+}
@@ -3,4 +3,9 @@ package org.uberfire.io;
 public interface IOClusteredService extends IOService {
 
     void start();
+
+    /**
+     * True once the node caught up with the rest of the cluster after {@link #start()}.
+     */
+    boolean isReady();
 }
@@ -165,11 +165,15 @@ public abstract class AbstractIOService implements IOServiceIdentifiable {
             cleanupClosedFileSystems();
         }
 
-        for ( final FileSystem fs : fileSystems ) {
-            unsetBatchModeOn( fs );
+        try {
+            for ( final FileSystem fs : batchLockControl.getLockedFileSystems() ) {
+                if ( fs.isOpen() ) {
+                    unsetBatchModeOn( fs );
+                }
+            }
+        } finally {
+            batchLockControl.unlock();
         }
-
-        batchLockControl.unlock();
     }
 
     private void cleanupClosedFileSystems() {
@@ -181,6 +185,9 @@ public abstract class AbstractIOService implements IOServiceIdentifiable {
         }
 
         fileSystems.removeAll( removeList );
+        for ( final FileSystem fileSystem : removeList ) {
+            batchLockControl.remove( fileSystem );
+        }
     }
 
     private void setBatchModeOn( FileSystem fs ) {
@@ -29,6 +29,7 @@ import org.uberfire.java.nio.base.AbstractBasicFileAttributeView;
 import org.uberfire.java.nio.base.AttrHolder;
 import org.uberfire.java.nio.base.NeedsPreloadedAttrs;
 import org.uberfire.java.nio.base.Properties;
+import org.uberfire.java.nio.base.dotfiles.DotFileContentCache;
 import org.uberfire.java.nio.base.dotfiles.DotFileOption;
 import org.uberfire.java.nio.channels.SeekableByteChannel;
 import org.uberfire.java.nio.file.AtomicMoveNotSupportedException;
@@ -40,6 +41,7 @@ import org.uberfire.java.nio.file.Files;
 import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.java.nio.file.OpenOption;
 import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.attribute.BasicFileAttributes;
 import org.uberfire.java.nio.file.attribute.FileAttribute;
 import org.uberfire.java.nio.file.attribute.FileAttributeView;
 
@@ -51,6 +53,10 @@ public class IOServiceDotFileImpl
         extends AbstractIOService
         implements IOService {
 
+    private static final Integer DOT_FILE_CACHE_SIZE = Integer.parseInt( System.getProperty( "org.uberfire.io.dotfile.cache.size", "10000" ) );
+
+    private final DotFileContentCache dotFileCache = new DotFileContentCache( DOT_FILE_CACHE_SIZE );
+
     public IOServiceDotFileImpl() {
         super();
     }
@@ -105,9 +111,11 @@ public class IOServiceDotFileImpl
             throws IllegalArgumentException, UnsupportedOperationException,
             FileAlreadyExistsException, IOException, SecurityException {
         checkNotNull( "path", path );
-        final Properties properties = new Properties();
+        final Properties properties;
         if ( exists( dot( path ) ) ) {
-            properties.load( newInputStream( dot( path ) ) );
+            properties = readDotFile( dot( path ) );
+        } else {
+            properties = new Properties();
         }
         final FileAttribute<?>[] allAttrs = consolidate( properties, attrs );
 
@@ -207,8 +215,7 @@ public class IOServiceDotFileImpl
             if ( isAttrHolder && ( (AttrHolder) path ).getAttrStorage().getContent().size() > 0 ) {
                 return ( (AttrHolder) path ).getAttrStorage().getAllContent();
             }
-            final Properties content = new Properties();
-            content.load( newInputStream( dot( path ) ) );
+            final Properties content = readDotFile( dot( path ) );
             content.putAll( original );
 
             if ( isAttrHolder ) {
@@ -292,14 +299,53 @@ public class IOServiceDotFileImpl
     }
 
     protected void loadDotFile( final Path path ) {
-        final Properties content = new Properties();
-        content.load( newInputStream( dot( path ) ) );
+        final Properties content = readDotFile( dot( path ) );
 
         if ( path instanceof AttrHolder ) {
             ( (AttrHolder) path ).getAttrStorage().loadContent( content );
         }
     }
 
+    /**
+     * Reads a dot-file, reusing the parsed content of a previous read when the stored content is the same.
+     */
+    protected Properties readDotFile( final Path dotPath ) {
+        final Object contentId = contentId( dotPath );
+        if ( contentId != null ) {
+            final Properties cached = dotFileCache.get( contentId );
+            if ( cached != null ) {
+                return cached;
+            }
+        }
+
+        final Properties content = new Properties();
+        content.load( newInputStream( dotPath ) );
+        if ( contentId != null ) {
+            dotFileCache.put( contentId, content );
+        }
+        return content;
+    }
+
+    /**
+     * Id of the stored content of the given path, or null when it can't be told; only git blob ids are used, as
+     * other file keys don't change with the content.
+     */
+    protected Object contentId( final Path path ) {
+        if ( path == null || path.getFileSystem() == null || path.getFileSystem().provider() == null
+                || !path.getFileSystem().provider().getScheme().equals( "git" ) ) {
+            return null;
+        }
+        try {
+            return Files.readAttributes( path, BasicFileAttributes.class ).fileKey();
+        } catch ( final Exception ex ) {
+            return null;
+        }
+    }
+
+    public DotFileContentCache getDotFileCache() {
+        return dotFileCache;
+    }
+
     protected <V extends AbstractBasicFileAttributeView> V newView( final AttrHolder holder,
                                                                     final Class<V> type ) {
         if ( NeedsPreloadedAttrs.class.isAssignableFrom( type ) && holder.getAttrStorage().getContent().size() == 0 ) {
@@ -326,9 +372,11 @@ public class IOServiceDotFileImpl
         try {
             Files.createDirectory( dir, attrs );
         } catch ( final FileAlreadyExistsException ex ) {
-            final Properties properties = new Properties();
+            final Properties properties;
             if ( exists( dot( dir ) ) ) {
-                properties.load( newInputStream( dot( dir ) ) );
+                properties = readDotFile( dot( dir ) );
+            } else {
+                properties = new Properties();
             }
             allAttrs = consolidate( properties, attrs );
             if ( !skipAlreadyExistsException ) {
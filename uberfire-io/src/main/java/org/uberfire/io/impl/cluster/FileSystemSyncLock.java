@@ -6,6 +6,8 @@ import java.util.Map;
 import org.uberfire.commons.cluster.LockExecuteNotifyAsyncReleaseTemplate;
 import org.uberfire.commons.message.MessageType;
 import org.uberfire.java.nio.base.FileSystemId;
+import org.uberfire.java.nio.base.FileSystemRefsAware;
+import org.uberfire.java.nio.base.FileSystemRefsUtil;
 import org.uberfire.java.nio.file.FileSystem;
 
 import static org.uberfire.io.impl.cluster.ClusterMessageType.*;
@@ -16,6 +18,7 @@ public class FileSystemSyncLock<V> extends LockExecuteNotifyAsyncReleaseTemplate
     private final String scheme;
     private final String id;
     private final String uri;
+    private final FileSystem fileSystem;
 
     public FileSystemSyncLock( final String serviceId,
                                final FileSystem fileSystem ) {
@@ -23,6 +26,7 @@ public class FileSystemSyncLock<V> extends LockExecuteNotifyAsyncReleaseTemplate
         this.scheme = fileSystem.getRootDirectories().iterator().next().toUri().getScheme();
         this.id = ( (FileSystemId) fileSystem ).id();
         this.uri = fileSystem.toString();
+        this.fileSystem = fileSystem;
     }
 
     @Override
@@ -35,12 +39,27 @@ public class FileSystemSyncLock<V> extends LockExecuteNotifyAsyncReleaseTemplate
         return serviceId;
     }
 
+    @Override
+    public String[] getResourceIds() {
+        return new String[]{ id };
+    }
+
+    /**
+     * Heads are read once the task ran, so peers that already have them can skip the fetch.
+     */
     @Override
     public Map<String, String> buildContent() {
-        return new HashMap<String, String>() {{
+        final Map<String, String> content = new HashMap<String, String>() {{
             put( "fs_scheme", scheme );
             put( "fs_id", id );
             put( "fs_uri", uri );
         }};
+        if ( fileSystem instanceof FileSystemRefsAware ) {
+            final Map<String, String> refs = ( (FileSystemRefsAware) fileSystem ).getRefs();
+            if ( !refs.isEmpty() ) {
+                content.put( "fs_refs", FileSystemRefsUtil.toString( refs ) );
+            }
+        }
+        return content;
     }
 }
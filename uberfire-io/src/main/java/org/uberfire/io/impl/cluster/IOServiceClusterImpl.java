@@ -12,33 +12,42 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.uberfire.commons.async.DescriptiveRunnable;
-import org.uberfire.commons.async.SimpleAsyncExecutorService;
 import org.uberfire.commons.cluster.ClusterService;
 import org.uberfire.commons.cluster.ClusterServiceFactory;
 import org.uberfire.commons.cluster.LockExecuteNotifySyncReleaseTemplate;
 import org.uberfire.commons.data.Pair;
-import org.uberfire.commons.lock.LockExecuteReleaseTemplate;
 import org.uberfire.commons.message.AsyncCallback;
 import org.uberfire.commons.message.MessageHandler;
 import org.uberfire.commons.message.MessageHandlerResolver;
+import org.uberfire.commons.message.MessagePayload;
 import org.uberfire.commons.message.MessageType;
+import org.uberfire.commons.message.PayloadMessageHandler;
 import org.uberfire.io.IOClusteredService;
 import org.uberfire.io.IOService;
 import org.uberfire.io.impl.IOServiceIdentifiable;
 import org.uberfire.java.nio.IOException;
+import org.uberfire.java.nio.base.AbortableOutputStream;
 import org.uberfire.java.nio.base.FileSystemId;
+import org.uberfire.java.nio.base.FileSystemRefsUtil;
 import org.uberfire.java.nio.base.FileSystemState;
 import org.uberfire.java.nio.base.FileSystemStateAware;
 import org.uberfire.java.nio.base.SeekableByteChannelWrapperImpl;
@@ -70,10 +79,18 @@ public class IOServiceClusterImpl implements IOClusteredService {
 
     private static final Logger logger = LoggerFactory.getLogger( IOServiceClusterImpl.class );
 
+    private static final int QUERY_TIMEOUT = 10000;
+    private static final int BOOTSTRAP_THREADS = Integer.parseInt( System.getProperty( "org.uberfire.cluster.bootstrap.threads", "4" ) );
+    private static final long BOOTSTRAP_TIMEOUT = Long.parseLong( System.getProperty( "org.uberfire.cluster.bootstrap.timeout", "600000" ) );
+
     private final IOServiceIdentifiable service;
     private final ClusterService clusterService;
     private final AtomicBoolean started = new AtomicBoolean( false );
-    private final Set<String> batchFileSystems = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+    private final AtomicBoolean ready = new AtomicBoolean( false );
+    private final SyncFileSystemMessageHandler syncFs = new SyncFileSystemMessageHandler();
+    private final ConcurrentMap<String, CountDownLatch> bootstrapping = new ConcurrentHashMap<String, CountDownLatch>();
+    private final ThreadLocal<BatchState> batchState = new ThreadLocal<BatchState>();
+    private volatile ExecutorService bootstrapExecutor = null;
 
     private NewFileSystemListener newFileSystemListener = null;
 
@@ -92,7 +109,6 @@ public class IOServiceClusterImpl implements IOClusteredService {
         this.clusterService = clusterServiceFactory.build( new MessageHandlerResolver() {
 
             final MessageHandler newFs = new NewFileSystemMessageHandler();
-            final MessageHandler syncFs = new SyncFileSystemMessageHandler();
             final MessageHandler queryFs = new QueryFileSystemMessageHandler();
 
             @Override
@@ -126,89 +142,146 @@ public class IOServiceClusterImpl implements IOClusteredService {
         } );
     }
 
+    /**
+     * Joins the cluster without taking any cluster lock and without waiting for the peers' file systems: those are
+     * created and synced in the background by a bounded pool, a few at a time, and the node is ready once all of them
+     * caught up. Writes other nodes do meanwhile arrive as sync messages, which are serialized per file system with the
+     * bootstrap syncs and merged while one runs; local writes to a file system wait until its first sync succeeded, so
+     * they never build on stale heads.
+     */
     @Override
     public void start() {
         started.set( true );
         logger.debug( "Starting cluster service {}", this );
-        //New cluster members are executed within locked
-        new LockExecuteReleaseTemplate<Void>().execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
+
+        final ConcurrentMap<String, FileSystemInfo> fileSystems = new ConcurrentHashMap<String, FileSystemInfo>();
+        final AtomicBoolean answered = new AtomicBoolean( false );
+
+        clusterService.broadcastAndWait( service.getId(), QUERY_FOR_FS, Collections.<String, String>emptyMap(), QUERY_TIMEOUT, new AsyncCallback() {
             @Override
-            public Void call() throws Exception {
+            public void onTimeOut() {
+            }
 
-                // 10 seconds
-                int timeout = 10000;
-                final AtomicBoolean msgAnsweredOrTimedout = new AtomicBoolean( false );
-                final AtomicBoolean onSync = new AtomicBoolean( false );
+            @Override
+            public void onReply( final MessageType type,
+                                 final Map<String, String> content ) {
+                if ( answered.get() ) {
+                    return;
+                }
+                final MessagePayload payload = MessagePayload.fromMap( content );
+                final List<String> ids = payload.getStrings( "fs_id" );
+                final List<String> schemes = payload.getStrings( "fs_scheme" );
+                final List<String> uris = payload.getStrings( "fs_uri" );
+                for ( int i = 0; i < ids.size() && i < schemes.size() && i < uris.size(); i++ ) {
+                    fileSystems.putIfAbsent( ids.get( i ), new FileSystemInfo( ids.get( i ), schemes.get( i ), uris.get( i ) ) );
+                }
+            }
+        } );
+        answered.set( true );
 
-                final Map<Integer, FileSystemInfo> fileSystems = new HashMap<Integer, FileSystemInfo>();
+        for ( final String id : fileSystems.keySet() ) {
+            bootstrapping.putIfAbsent( id, new CountDownLatch( 1 ) );
+        }
+        ready.set( true );
+        bootstrap( new ArrayList<FileSystemInfo>( fileSystems.values() ) );
+    }
 
-                clusterService.broadcastAndWait( service.getId(), QUERY_FOR_FS, Collections.<String, String>emptyMap(), timeout, new AsyncCallback() {
-                    @Override
-                    public void onTimeOut() {
-                        msgAnsweredOrTimedout.set( true );
-                    }
+    /**
+     * True once the node caught up with the file systems of its peers: a file system whose bootstrap sync failed or
+     * timed out keeps the node not ready until a later sync of it succeeds.
+     */
+    @Override
+    public boolean isReady() {
+        return ready.get() && bootstrapping.isEmpty();
+    }
 
-                    @Override
-                    public void onReply( final MessageType type,
-                                         final Map<String, String> content ) {
-                        if ( msgAnsweredOrTimedout.get() || onSync.get() ) {
-                            return;
-                        }
+    /**
+     * Waits, before a write takes the cluster lock of the file system, until the file system caught up with its
+     * peers.
+     * @throws IOException if it didn't within the bootstrap timeout
+     */
+    private void awaitBootstrap( final FileSystem fs ) {
+        if ( !( fs instanceof FileSystemId ) ) {
+            return;
+        }
+        final String id = ( (FileSystemId) fs ).id();
+        final CountDownLatch latch = bootstrapping.get( id );
+        if ( latch == null ) {
+            return;
+        }
+        try {
+            if ( !latch.await( BOOTSTRAP_TIMEOUT, TimeUnit.MILLISECONDS ) ) {
+                throw new IOException( "File system " + id + " isn't synchronized with the cluster yet" );
+            }
+        } catch ( final InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( ex );
+        }
+    }
 
-                        onSync.set( true );
-
-                        SimpleAsyncExecutorService.getUnmanagedInstance().execute( new DescriptiveRunnable() {
-                            @Override
-                            public String getDescription() {
-                                return "Cluster Messaging Reply [" + service.getId() + "/QUERY_FOR_FS]";
-                            }
-
-                            @Override
-                            public void run() {
-                                for ( final Map.Entry<String, String> entry : content.entrySet() ) {
-                                    if ( entry.getKey().startsWith( "fs_" ) ) {
-                                        int index = Integer.valueOf( entry.getKey().substring( entry.getKey().lastIndexOf( "_" ) + 1 ) );
-                                        if ( !fileSystems.containsKey( index ) ) {
-                                            fileSystems.put( index, new FileSystemInfo() );
-                                        }
-                                        final FileSystemInfo fsInfo = fileSystems.get( index );
-                                        if ( entry.getKey().startsWith( "fs_id_" ) ) {
-                                            fsInfo.setId( entry.getValue() );
-                                        } else if ( entry.getKey().startsWith( "fs_scheme_" ) ) {
-                                            fsInfo.setScheme( entry.getValue() );
-                                        } else if ( entry.getKey().startsWith( "fs_uri_" ) ) {
-                                            fsInfo.setUri( entry.getValue() );
-                                        }
-                                    }
-                                }
-
-                                for ( final FileSystemInfo fileSystemInfo : new HashSet<FileSystemInfo>( fileSystems.values() ) ) {
-                                    try {
-                                        final URI newFS = URI.create( fileSystemInfo.getScheme() + "://" + fileSystemInfo.getId() );
-                                        service.newFileSystem( newFS, Collections.<String, Object>emptyMap() );
-                                    } catch ( FileSystemAlreadyExistsException ex ) {
-                                    }
-
-                                    final URI fs = URI.create( fileSystemInfo.getScheme() + "://" + fileSystemInfo.getId() + "?sync=" + fileSystemInfo.getUri().split( "\n" )[ 0 ] + "&force" );
-                                    service.getFileSystem( fs );
-                                }
-
-                                msgAnsweredOrTimedout.set( true );
-                            }
-                        } );
-                    }
-                } );
+    private void bootstrapped( final String id ) {
+        final CountDownLatch latch = bootstrapping.remove( id );
+        if ( latch != null ) {
+            latch.countDown();
+            if ( isReady() ) {
+                logger.debug( "Cluster service {} is ready", this );
+            }
+        }
+    }
+
+    /**
+     * Waits until the background syncs started by {@link #start()} ended, successfully or not.
+     * @return false if they're still running after the given time
+     */
+    boolean awaitBootstrap( final long timeout,
+                            final TimeUnit unit ) throws InterruptedException {
+        final ExecutorService executor = bootstrapExecutor;
+        return executor == null || executor.awaitTermination( timeout, unit );
+    }
+
+    private <V> FileSystemSyncLock<V> syncLock( final FileSystem fs ) {
+        awaitBootstrap( fs );
+        return new FileSystemSyncLock<V>( service.getId(), fs );
+    }
+
+    private void bootstrap( final List<FileSystemInfo> fileSystems ) {
+        if ( fileSystems.isEmpty() ) {
+            return;
+        }
 
-                while ( !msgAnsweredOrTimedout.get() ) {
+        final ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( BOOTSTRAP_THREADS, fileSystems.size() ) ), new BootstrapThreadFactory() );
+        for ( final FileSystemInfo fileSystemInfo : fileSystems ) {
+            executor.execute( new Runnable() {
+                @Override
+                public void run() {
                     try {
-                        Thread.sleep( 100 );
-                    } catch ( InterruptedException ignored ) {
+                        bootstrap( fileSystemInfo );
+                    } catch ( final Exception ex ) {
+                        logger.error( "File system " + fileSystemInfo.getId() + " synchronization failed", ex );
+                    }
+                    if ( bootstrapping.containsKey( fileSystemInfo.getId() ) ) {
+                        logger.warn( "File system {} not synchronized on startup, writes to it wait for its next successful sync", fileSystemInfo.getId() );
                     }
                 }
+            } );
+        }
+        // queued syncs still run, the threads end with the last one
+        executor.shutdown();
+        bootstrapExecutor = executor;
+    }
 
-                return null;
-            }
-        } ) );
+    private void bootstrap( final FileSystemInfo fileSystemInfo ) {
+        try {
+            final URI newFS = URI.create( fileSystemInfo.getScheme() + "://" + fileSystemInfo.getId() );
+            service.newFileSystem( newFS, Collections.<String, Object>emptyMap() );
+        } catch ( FileSystemAlreadyExistsException ex ) {
+        }
+
+        final Map<String, String> content = new HashMap<String, String>();
+        content.put( "fs_scheme", fileSystemInfo.getScheme() );
+        content.put( "fs_id", fileSystemInfo.getId() );
+        content.put( "fs_uri", fileSystemInfo.getUri() );
+        syncFs.handleMessage( SYNC_FS, content );
     }
 
     @Override
@@ -225,70 +298,133 @@ public class IOServiceClusterImpl implements IOClusteredService {
     @Override
     public void startBatch( FileSystem[] fs,
                             final Option... options ) {
-        clusterService.lock();
-        for ( final FileSystem f : fs ) {
-            if ( f instanceof FileSystemId ) {
-                batchFileSystems.add( ( (FileSystemId) f ).id() );
-            }
+        lockBatch( fs );
+        try {
+            service.startBatch( fs, options );
+        } catch ( final RuntimeException ex ) {
+            unlockBatch( fs );
+            throw ex;
         }
-        service.startBatch( fs, options );
     }
 
     @Override
     public void startBatch( final FileSystem fs,
                             final Option... options ) {
-        clusterService.lock();
-        if ( fs instanceof FileSystemId ) {
-            batchFileSystems.add( ( (FileSystemId) fs ).id() );
+        lockBatch( fs );
+        try {
+            service.startBatch( fs, options );
+        } catch ( final RuntimeException ex ) {
+            unlockBatch( fs );
+            throw ex;
         }
-
-        service.startBatch( fs, options );
     }
 
     @Override
     public void startBatch( final FileSystem... fs ) {
-        clusterService.lock();
-        for ( final FileSystem f : fs ) {
-            if ( f instanceof FileSystemId ) {
-                batchFileSystems.add( ( (FileSystemId) f ).id() );
+        lockBatch( fs );
+        try {
+            service.startBatch( fs );
+        } catch ( final RuntimeException ex ) {
+            unlockBatch( fs );
+            throw ex;
+        }
+    }
+
+    /**
+     * Batches take the cluster locks of their own file systems only. Like the local batch locks, the locks taken by
+     * inner batches are kept until the outermost batch of the thread ends, when every file system touched by the
+     * batch is synced at once.
+     */
+    private void lockBatch( final FileSystem... fs ) {
+        if ( fs != null ) {
+            for ( final FileSystem f : fs ) {
+                awaitBootstrap( f );
+            }
+        }
+        clusterService.lock( idsOf( fs ) );
+
+        BatchState state = batchState.get();
+        if ( state == null ) {
+            state = new BatchState();
+            batchState.set( state );
+        }
+        state.lockedFileSystems.add( fs );
+    }
+
+    private void unlockBatch( final FileSystem... fs ) {
+        final BatchState state = batchState.get();
+        if ( state != null ) {
+            state.lockedFileSystems.remove( state.lockedFileSystems.size() - 1 );
+            if ( state.lockedFileSystems.isEmpty() ) {
+                batchState.remove();
             }
         }
-        service.startBatch( fs );
+        clusterService.unlock( idsOf( fs ) );
     }
 
     @Override
     public void endBatch() {
-        service.endBatch();
-        if ( !clusterService.isInnerLocked() ) {
-            final AtomicInteger process = new AtomicInteger( batchFileSystems.size() );
+        final BatchState state = batchState.get();
+        if ( state == null ) {
+            service.endBatch();
+            return;
+        }
 
-            for ( final FileSystem fs : service.getFileSystems() ) {
-                if ( fs instanceof FileSystemId &&
-                        batchFileSystems.contains( ( (FileSystemId) fs ).id() ) ) {
-                    try {
-                        new FileSystemSyncLock<Void>( service.getId(), fs ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
-                            @Override
-                            public Void call() throws Exception {
-                                if ( process.decrementAndGet() == 0 ) {
-                                    clusterService.unlock();
-                                }
-                                return null;
-                            }
-                        } ) );
-                    } catch ( Exception ex ) {
-                        logger.error( "End batch error", ex );
-                        if ( process.decrementAndGet() == 0 ) {
-                            clusterService.unlock();
-                        }
+        try {
+            service.endBatch();
+        } finally {
+            if ( state.lockedFileSystems.size() == ++state.endedBatches ) {
+                batchState.remove();
+                try {
+                    syncBatch( state );
+                } finally {
+                    for ( int i = state.lockedFileSystems.size() - 1; i >= 0; i-- ) {
+                        clusterService.unlock( idsOf( state.lockedFileSystems.get( i ) ) );
                     }
                 }
             }
-            batchFileSystems.clear();
-        } else {
-            clusterService.unlock();
         }
     }
 
+    private void syncBatch( final BatchState state ) {
+        final Map<String, FileSystem> fileSystems = new LinkedHashMap<String, FileSystem>();
+        for ( final FileSystem[] fss : state.lockedFileSystems ) {
+            for ( final FileSystem fs : fss ) {
+                if ( fs instanceof FileSystemId ) {
+                    fileSystems.put( ( (FileSystemId) fs ).id(), fs );
+                }
+            }
+        }
+
+        // the batch still holds the locks of its file systems, so all syncs go out together in one message
+        final List<Map<String, String>> contents = new ArrayList<Map<String, String>>( fileSystems.size() );
+        for ( final FileSystem fs : fileSystems.values() ) {
+            try {
+                contents.add( new FileSystemSyncLock<Void>( service.getId(), fs ).buildContent() );
+            } catch ( Exception ex ) {
+                logger.error( "End batch error", ex );
+            }
+        }
+
+        if ( contents.size() == 1 ) {
+            clusterService.broadcast( service.getId(), SYNC_FS, contents.get( 0 ) );
+        } else if ( !contents.isEmpty() ) {
+            clusterService.broadcast( service.getId(), SYNC_FS, contents );
+        }
+    }
+
+    private String[] idsOf( final FileSystem... fss ) {
+        final List<String> result = new ArrayList<String>();
+        if ( fss != null ) {
+            for ( final FileSystem fs : fss ) {
+                if ( fs instanceof FileSystemId ) {
+                    result.add( ( (FileSystemId) fs ).id() );
+                }
+            }
+        }
+        return result.toArray( new String[ result.size() ] );
+    }
+
     @Override
     public FileAttribute<?>[] convert( final Map<String, ?> attrs ) {
         return service.convert( attrs );
@@ -387,7 +523,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.createFile( path, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.createFile( path, attrs );
@@ -402,7 +538,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.createDirectory( dir, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), dir.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( dir.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.createDirectory( dir, attrs );
@@ -417,7 +553,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.createDirectories( dir, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), dir.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( dir.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.createDirectories( dir, attrs );
@@ -432,7 +568,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.createDirectory( dir, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), dir.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( dir.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.createDirectory( dir, attrs );
@@ -447,7 +583,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.createDirectories( dir, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), dir.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( dir.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.createDirectories( dir, attrs );
@@ -461,7 +597,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
         if ( isBatch( path.getFileSystem() ) ) {
             service.delete( path, options );
         } else {
-            new FileSystemSyncLock<Void>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
+            this.<Void>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
                 @Override
                 public Void call() throws Exception {
                     service.delete( path, options );
@@ -477,7 +613,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
         if ( isBatch( path.getFileSystem() ) ) {
             return service.deleteIfExists( path, options );
         }
-        return new FileSystemSyncLock<Boolean>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Boolean>( new Callable<Boolean>() {
+        return this.<Boolean>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Boolean>( new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
                 return service.deleteIfExists( path, options );
@@ -521,7 +657,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.copy( source, target, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), target.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( target.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.copy( source, target, options );
@@ -537,7 +673,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.copy( in, target, options );
         }
 
-        return new FileSystemSyncLock<Long>( service.getId(), target.getFileSystem() ).execute( clusterService, new FutureTask<Long>( new Callable<Long>() {
+        return this.<Long>syncLock( target.getFileSystem() ).execute( clusterService, new FutureTask<Long>( new Callable<Long>() {
             @Override
             public Long call() throws Exception {
                 return service.copy( in, target, options );
@@ -559,17 +695,24 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.move( source, target, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), source.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
-            @Override
-            public Path call() throws Exception {
-                return new FileSystemSyncLock<Path>( service.getId(), target.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
-                    @Override
-                    public Path call() throws Exception {
-                        return service.move( source, target, options );
-                    }
-                } ) );
-            }
-        } ) );
+        // both locks up front and in order, nesting them could deadlock with a move the other way around
+        final String[] ids = idsOf( source.getFileSystem(), target.getFileSystem() );
+        clusterService.lock( ids );
+        try {
+            return this.<Path>syncLock( source.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+                @Override
+                public Path call() throws Exception {
+                    return IOServiceClusterImpl.this.<Path>syncLock( target.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+                        @Override
+                        public Path call() throws Exception {
+                            return service.move( source, target, options );
+                        }
+                    } ) );
+                }
+            } ) );
+        } finally {
+            clusterService.unlock( ids );
+        }
     }
 
     @Override
@@ -596,7 +739,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.setAttributes( path, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.setAttributes( path, attrs );
@@ -611,7 +754,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.setAttributes( path, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.setAttributes( path, attrs );
@@ -627,7 +770,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.setAttribute( path, attribute, value );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.setAttribute( path, attribute, value );
@@ -708,7 +851,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, bytes, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, bytes, options );
@@ -725,7 +868,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, bytes, attrs, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, bytes, attrs, options );
@@ -742,7 +885,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, bytes, options, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, bytes, options, attrs );
@@ -759,7 +902,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, lines, cs, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, lines, cs, options );
@@ -775,7 +918,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, content, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, content, options );
@@ -792,7 +935,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, content, cs, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, content, cs, options );
@@ -809,7 +952,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, content, options, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, content, options, attrs );
@@ -827,7 +970,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, content, cs, options, attrs );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, content, cs, options, attrs );
@@ -844,7 +987,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, content, attrs, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, content, attrs, options );
@@ -862,7 +1005,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
             return service.write( path, content, cs, attrs, options );
         }
 
-        return new FileSystemSyncLock<Path>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
+        return this.<Path>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Path>( new Callable<Path>() {
             @Override
             public Path call() throws Exception {
                 return service.write( path, content, cs, attrs, options );
@@ -874,7 +1017,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
     public OutputStream newOutputStream( final Path path,
                                          final OpenOption... options ) throws IllegalArgumentException, UnsupportedOperationException, IOException, SecurityException {
         final OutputStream out = service.newOutputStream( path, options );
-        return new OutputStream() {
+        return new AbortableOutputStream() {
             @Override
             public void write( final int b ) throws java.io.IOException {
                 out.write( b );
@@ -885,7 +1028,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
                 if ( isBatch( path.getFileSystem() ) ) {
                     out.close();
                 } else {
-                    new FileSystemSyncLock<Void>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
+                    IOServiceClusterImpl.this.<Void>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
                         @Override
                         public Void call() throws Exception {
                             out.close();
@@ -894,6 +1037,21 @@ public class IOServiceClusterImpl implements IOClusteredService {
                     } ) );
                 }
             }
+
+            /**
+             * A stream that can't drop its content is only closed here, to release it, without a sync.
+             */
+            @Override
+            public void abort() {
+                if ( out instanceof AbortableOutputStream ) {
+                    ( (AbortableOutputStream) out ).abort();
+                    return;
+                }
+                try {
+                    out.close();
+                } catch ( final java.io.IOException ignored ) {
+                }
+            }
         };
     }
 
@@ -908,7 +1066,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
                 if ( isBatch( path.getFileSystem() ) ) {
                     sbc.close();
                 } else {
-                    new FileSystemSyncLock<Void>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
+                    IOServiceClusterImpl.this.<Void>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
                         @Override
                         public Void call() throws Exception {
                             sbc.close();
@@ -932,7 +1090,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
                 if ( isBatch( path.getFileSystem() ) ) {
                     sbc.close();
                 } else {
-                    new FileSystemSyncLock<Void>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
+                    IOServiceClusterImpl.this.<Void>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
                         @Override
                         public Void call() throws Exception {
                             sbc.close();
@@ -954,7 +1112,7 @@ public class IOServiceClusterImpl implements IOClusteredService {
                 if ( isBatch( path.getFileSystem() ) ) {
                     superClose();
                 } else {
-                    new FileSystemSyncLock<Void>( service.getId(), path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
+                    IOServiceClusterImpl.this.<Void>syncLock( path.getFileSystem() ).execute( clusterService, new FutureTask<Void>( new Callable<Void>() {
                         @Override
                         public Void call() throws Exception {
                             superClose();
@@ -1003,40 +1161,90 @@ public class IOServiceClusterImpl implements IOClusteredService {
         }
     }
 
+    /**
+     * Syncs of the same file system run one at a time, and the messages that arrive while one runs are merged into a
+     * single pending sync (newest head per ref, newest origins), so a burst of writes on a peer costs one fetch here.
+     */
     class SyncFileSystemMessageHandler implements MessageHandler {
 
+        private final ConcurrentMap<String, SyncQueue> queues = new ConcurrentHashMap<String, SyncQueue>();
+
         @Override
         public Pair<MessageType, Map<String, String>> handleMessage( final MessageType type,
                                                                      final Map<String, String> content ) {
             if ( SYNC_FS.equals( type ) ) {
-                final String scheme = content.get( "fs_scheme" );
                 final String id = content.get( "fs_id" );
-                final String[] supportedUris = cleanup( content.get( "fs_uri" ).split( "\n" ) );
+                final SyncQueue queue = queueOf( id );
 
-                for ( final String supportedUri : supportedUris ) {
-                    try {
-                        String origin;
-                        try {
-                            origin = URLEncoder.encode( supportedUri, "UTF-8" );
-                        } catch ( UnsupportedEncodingException e ) {
-                            origin = supportedUri;
-                        }
-
-                        final URI fs = URI.create( scheme + "://" + id + "?sync=" + origin + "&force" );
+                synchronized ( queue ) {
+                    if ( queue.pending == null ) {
+                        queue.pending = new PendingSync( content.get( "fs_scheme" ), id );
+                    }
+                    queue.pending.merge( cleanup( content.get( "fs_uri" ).split( "\n" ) ), FileSystemRefsUtil.fromString( content.get( "fs_refs" ) ) );
+                }
 
-                        service.getFileSystem( fs );
-                        break;
-                    } catch ( Exception e ) {
-                        // try the other supported uri in case of failure
-                        logger.warn( "File system synchronization for origin {} failed with error {}, trying another if available",
-                                     supportedUri, e.getMessage() );
+                queue.lock.lock();
+                try {
+                    final PendingSync sync;
+                    synchronized ( queue ) {
+                        sync = queue.pending;
+                        queue.pending = null;
+                    }
+                    if ( sync != null && sync( sync ) ) {
+                        bootstrapped( id );
                     }
+                } finally {
+                    queue.lock.unlock();
                 }
             }
 
             return null;
         }
 
+        /**
+         * @return true if one of the origins could be synced from, or there's no origin to sync from at all
+         */
+        private boolean sync( final PendingSync sync ) {
+            String refs = null;
+            if ( sync.refs != null ) {
+                refs = FileSystemRefsUtil.toString( sync.refs );
+            }
+
+            for ( final String supportedUri : sync.uris ) {
+                try {
+                    final URI fs = URI.create( sync.scheme + "://" + sync.id + "?sync=" + encode( supportedUri ) + "&force" + ( refs != null ? "&refs=" + encode( refs ) : "" ) );
+
+                    service.getFileSystem( fs );
+                    return true;
+                } catch ( Exception e ) {
+                    // try the other supported uri in case of failure
+                    logger.warn( "File system synchronization for origin {} failed with error {}, trying another if available",
+                                 supportedUri, e.getMessage() );
+                }
+            }
+            return sync.uris.length == 0;
+        }
+
+        private String encode( final String value ) {
+            try {
+                return URLEncoder.encode( value, "UTF-8" );
+            } catch ( UnsupportedEncodingException e ) {
+                return value;
+            }
+        }
+
+        private SyncQueue queueOf( final String id ) {
+            SyncQueue queue = queues.get( id );
+            if ( queue == null ) {
+                final SyncQueue newQueue = new SyncQueue();
+                queue = queues.putIfAbsent( id, newQueue );
+                if ( queue == null ) {
+                    queue = newQueue;
+                }
+            }
+            return queue;
+        }
+
         private String[] cleanup( final String... split ) {
             final List<String> result = new ArrayList<String>( split.length );
             for ( final String s : split ) {
@@ -1049,14 +1257,53 @@ public class IOServiceClusterImpl implements IOClusteredService {
         }
     }
 
-    class QueryFileSystemMessageHandler implements MessageHandler {
+    private static class SyncQueue {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private PendingSync pending = null;
+    }
+
+    private static class PendingSync {
+
+        private final String scheme;
+        private final String id;
+        private String[] uris = new String[ 0 ];
+        private Map<String, String> refs = new LinkedHashMap<String, String>();
+
+        PendingSync( final String scheme,
+                     final String id ) {
+            this.scheme = scheme;
+            this.id = id;
+        }
+
+        /**
+         * A message without refs asks for a full sync, which then covers every other one.
+         */
+        void merge( final String[] uris,
+                    final Map<String, String> refs ) {
+            this.uris = uris;
+            if ( refs == null ) {
+                this.refs = null;
+            } else if ( this.refs != null ) {
+                this.refs.putAll( refs );
+            }
+        }
+    }
+
+    /**
+     * Replies with the file systems as three lists, which string map receivers see as {@code fs_id_0},
+     * {@code fs_scheme_0}, {@code fs_uri_0}... entries.
+     */
+    class QueryFileSystemMessageHandler implements MessageHandler,
+                                                   PayloadMessageHandler {
 
         @Override
-        public Pair<MessageType, Map<String, String>> handleMessage( final MessageType type,
-                                                                     final Map<String, String> content ) {
+        public Pair<MessageType, MessagePayload> handlePayload( final MessageType type,
+                                                                final MessagePayload payload ) {
             if ( QUERY_FOR_FS.equals( type ) ) {
-                Map<String, String> replyContent = new HashMap<String, String>();
-                int i = 0;
+                final List<String> schemes = new ArrayList<String>();
+                final List<String> ids = new ArrayList<String>();
+                final List<String> uris = new ArrayList<String>();
 
                 final Set<FileSystem> fileSystems = new HashSet<FileSystem>();
                 for ( FileSystem fs : service.getFileSystems() ) {
@@ -1064,15 +1311,47 @@ public class IOServiceClusterImpl implements IOClusteredService {
                 }
 
                 for ( final FileSystem fs : fileSystems ) {
-                    replyContent.put( "fs_scheme_" + i, fs.getRootDirectories().iterator().next().toUri().getScheme() );
-                    replyContent.put( "fs_id_" + i, ( (FileSystemId) fs ).id() );
-                    replyContent.put( "fs_uri_" + i, fs.toString() );
-                    i++;
+                    schemes.add( fs.getRootDirectories().iterator().next().toUri().getScheme() );
+                    ids.add( ( (FileSystemId) fs ).id() );
+                    uris.add( fs.toString() );
                 }
-                return new Pair<MessageType, Map<String, String>>( QUERY_FOR_FS_RESULT, replyContent );
+
+                final MessagePayload reply = new MessagePayload()
+                        .putStrings( "fs_scheme", schemes )
+                        .putStrings( "fs_id", ids )
+                        .putStrings( "fs_uri", uris );
+                return new Pair<MessageType, MessagePayload>( QUERY_FOR_FS_RESULT, reply );
             }
             return null;
         }
+
+        @Override
+        public Pair<MessageType, Map<String, String>> handleMessage( final MessageType type,
+                                                                     final Map<String, String> content ) {
+            final Pair<MessageType, MessagePayload> result = handlePayload( type, MessagePayload.fromMap( content ) );
+            if ( result == null ) {
+                return null;
+            }
+            return new Pair<MessageType, Map<String, String>>( result.getK1(), result.getK2().asMap() );
+        }
+    }
+
+    private static class BootstrapThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger( 0 );
+
+        @Override
+        public Thread newThread( final Runnable r ) {
+            final Thread thread = new Thread( r, "uberfire-cluster-bootstrap-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+    private static class BatchState {
+
+        private final List<FileSystem[]> lockedFileSystems = new ArrayList<FileSystem[]>();
+        private int endedBatches = 0;
     }
 
     static class FileSystemInfo {
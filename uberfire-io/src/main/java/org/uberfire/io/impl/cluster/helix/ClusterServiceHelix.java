@@ -2,37 +2,71 @@ package org.uberfire.io.impl.cluster.helix;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.xml.bind.DatatypeConverter;
 
 import org.apache.helix.Criteria;
+import org.apache.helix.HelixAdmin;
+import org.apache.helix.HelixException;
 import org.apache.helix.HelixManager;
 import org.apache.helix.InstanceType;
 import org.apache.helix.NotificationContext;
 import org.apache.helix.messaging.handling.HelixTaskResult;
 import org.apache.helix.messaging.handling.MessageHandler;
 import org.apache.helix.messaging.handling.MessageHandlerFactory;
+import org.apache.helix.model.IdealState;
 import org.apache.helix.model.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.commons.cluster.ClusterService;
 import org.uberfire.commons.data.Pair;
 import org.uberfire.commons.message.AsyncCallback;
+import org.uberfire.commons.message.MessageHandlerAdapter;
 import org.uberfire.commons.message.MessageHandlerResolver;
+import org.uberfire.commons.message.MessagePayload;
+import org.uberfire.commons.message.MessagePayloadCodec;
 import org.uberfire.commons.message.MessageType;
+import org.uberfire.commons.message.PayloadMessageHandler;
 import org.uberfire.io.impl.cluster.ClusterMessageType;
 
 import static java.util.Arrays.*;
 import static java.util.UUID.*;
 import static org.apache.helix.HelixManagerFactory.*;
 
+/**
+ * Cluster locks are the partitions of the lock resource, each one held by a single node at a time: the first partition
+ * is the cluster wide lock, the other ones are shared out among file systems by id. Their number is set with the
+ * <code>org.uberfire.cluster.lock.partitions</code> system property (16 by default) and only applies when the resource
+ * is created; an existing resource is used as it is, and with a single partition every lock is the cluster wide one,
+ * as it was before file system locks.
+ * <p>
+ * Moving an existing cluster to file system locks can't be done node by node: nodes that only know the cluster wide
+ * lock don't exclude file system locks held elsewhere. Stop every node, drop the lock resource and start them again
+ * with this version, so the resource gets created with its partitions.
+ * <p>
+ * Messages carry their content as a {@link MessagePayloadCodec} payload, in a single field of the message record
+ * instead of a map field with one entry per key; messages of nodes that still send the map are read as well. Until
+ * every node reads payloads, messages and replies also carry the map, and batches go out as one message per content;
+ * set <code>org.uberfire.cluster.messages.legacy</code> to <code>false</code> once no former version is left.
+ */
 public class ClusterServiceHelix implements ClusterService {
 
     private static final Logger logger = LoggerFactory.getLogger( ClusterServiceHelix.class );
 
+    public static final int LOCK_PARTITIONS = Integer.parseInt( System.getProperty( "org.uberfire.cluster.lock.partitions", "16" ) );
+    private static final boolean LEGACY_MESSAGES = Boolean.parseBoolean( System.getProperty( "org.uberfire.cluster.messages.legacy", "true" ) );
+
+    private static final String STATE_MODEL = "LeaderStandby";
+    private static final int GLOBAL_PARTITION = 0;
+
     private final String clusterName;
     private final String instanceName;
     private final HelixManager participantManager;
@@ -41,8 +75,9 @@ public class ClusterServiceHelix implements ClusterService {
     private final AtomicBoolean started = new AtomicBoolean( false );
     private final Collection<Runnable> onStart = new ArrayList<Runnable>();
 
-    private final SimpleLock lock = new SimpleLock();
-    private final AtomicInteger stackSize = new AtomicInteger( 0 );
+    private final LockTransitionalFactory lockFactory = new LockTransitionalFactory();
+    private final ConcurrentMap<Integer, ReentrantLock> localLocks = new ConcurrentHashMap<Integer, ReentrantLock>();
+    private volatile int partitions = 1;
 
     public ClusterServiceHelix( final String clusterName,
                                 final String zkAddress,
@@ -70,8 +105,9 @@ public class ClusterServiceHelix implements ClusterService {
         }
         try {
             this.participantManager.connect();
-            disablePartition();
-            this.participantManager.getStateMachineEngine().registerStateModelFactory( "LeaderStandby", new LockTransitionalFactory( lock ) );
+            this.partitions = setupPartitions();
+            disablePartitions( allPartitions() );
+            this.participantManager.getStateMachineEngine().registerStateModelFactory( STATE_MODEL, lockFactory );
             this.participantManager.getMessagingService().registerMessageHandlerFactory( Message.MessageType.USER_DEFINE_MSG.toString(), new MessageHandlerResolverWrapper().convert() );
             this.started.set( true );
             for ( final Runnable runnable : onStart ) {
@@ -100,63 +136,272 @@ public class ClusterServiceHelix implements ClusterService {
 
     @Override
     public boolean isInnerLocked() {
-        return stackSize.get() > 1;
+        for ( final ReentrantLock localLock : localLocks.values() ) {
+            if ( localLock.getHoldCount() > 1 ) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void enablePartition() {
-        if ( !isStarted() ) {
-            return;
+    /**
+     * Creates the lock resource, with a partition for the cluster wide lock plus the configured file system ones, when
+     * it's missing; a resource set up by the operator, or by a former version, is never changed. Another node may be
+     * creating it as well, so it's read again when that fails.
+     * @return number of partitions of the resource
+     */
+    private int setupPartitions() {
+        final HelixAdmin admin = participantManager.getClusterManagmentTool();
+        final int required = 1 + Math.max( 1, LOCK_PARTITIONS );
+        try {
+            if ( admin.getResourceIdealState( clusterName, resourceName ) == null ) {
+                admin.addResource( clusterName, resourceName, required, STATE_MODEL, IdealState.RebalanceMode.FULL_AUTO.toString() );
+                admin.rebalance( clusterName, resourceName, replicas( admin ) );
+            }
+        } catch ( final HelixException ex ) {
+            logger.warn( "Lock resource '" + resourceName + "' created concurrently, using it as it is.", ex );
+        }
+        final IdealState idealState = admin.getResourceIdealState( clusterName, resourceName );
+        if ( idealState == null || idealState.getNumPartitions() < 1 ) {
+            return 1;
+        }
+        if ( idealState.getNumPartitions() < required ) {
+            logger.info( "Lock resource '{}' has {} partitions instead of {}, file systems share fewer locks.",
+                         new Object[]{ resourceName, idealState.getNumPartitions(), required } );
         }
-        participantManager.getClusterManagmentTool().enablePartition( true, clusterName, instanceName, resourceName, asList( resourceName + "_0" ) );
+        return idealState.getNumPartitions();
+    }
+
+    /**
+     * Every node must be able to lead any partition.
+     */
+    private int replicas( final HelixAdmin admin ) {
+        return Math.max( 1, admin.getInstancesInCluster( clusterName ).size() );
+    }
+
+    private List<String> allPartitions() {
+        final List<String> result = new ArrayList<String>( partitions );
+        for ( int i = 0; i < partitions; i++ ) {
+            result.add( partitionName( i ) );
+        }
+        return result;
+    }
+
+    private List<String> partitionNames( final List<Integer> partitions ) {
+        final List<String> result = new ArrayList<String>( partitions.size() );
+        for ( final Integer partition : partitions ) {
+            result.add( partitionName( partition ) );
+        }
+        return result;
+    }
+
+    private String partitionName( final int partition ) {
+        return resourceName + "_" + partition;
+    }
+
+    /**
+     * A resource never maps to the cluster wide partition, unless the resource has only that one.
+     */
+    private int partitionOf( final String resourceId ) {
+        if ( partitions < 2 ) {
+            return GLOBAL_PARTITION;
+        }
+        return 1 + ( resourceId.hashCode() & 0x7fffffff ) % ( partitions - 1 );
+    }
+
+    private void enablePartitions( final List<String> partitionNames ) {
+        participantManager.getClusterManagmentTool().enablePartition( true, clusterName, instanceName, resourceName, partitionNames );
     }
 
-    private void disablePartition() {
+    private void disablePartitions( final List<String> partitionNames ) {
+        participantManager.getClusterManagmentTool().enablePartition( false, clusterName, instanceName, resourceName, partitionNames );
+    }
+
+    /**
+     * The cluster wide lock holds every partition, so no resource lock is held anywhere meanwhile; the global
+     * partition goes first, keeping two nodes asking for it from splitting the others. The file system partitions
+     * are then asked for all at once, see {@link #awaitPartitions(List)}.
+     */
+    @Override
+    public void lock() {
         if ( !isStarted() ) {
             return;
         }
-        participantManager.getClusterManagmentTool().enablePartition( false, clusterName, instanceName, resourceName, asList( resourceName + "_0" ) );
+        lockPartition( GLOBAL_PARTITION );
+        final List<Integer> requested = new ArrayList<Integer>( partitions );
+        int locked = 1;
+        boolean acquired = false;
+        try {
+            for ( ; locked < partitions; locked++ ) {
+                final ReentrantLock localLock = localLockOf( locked );
+                localLock.lock();
+                if ( localLock.getHoldCount() == 1 ) {
+                    requested.add( locked );
+                }
+            }
+            awaitPartitions( requested );
+            acquired = true;
+        } finally {
+            if ( !acquired ) {
+                releasePartitions( requested, locked );
+                unlockPartition( GLOBAL_PARTITION );
+            }
+        }
     }
 
     @Override
-    public void lock() {
+    public void unlock() {
         if ( !isStarted() ) {
             return;
         }
-        stackSize.incrementAndGet();
-        if ( lock.isLocked() ) {
+        final List<Integer> held = new ArrayList<Integer>( partitions );
+        for ( int partition = 1; partition < partitions; partition++ ) {
+            final ReentrantLock localLock = localLocks.get( partition );
+            if ( localLock == null || !localLock.isHeldByCurrentThread() ) {
+                logger.warn( "Cluster lock partition {} released by a thread not holding it, ignored.", partitionName( partition ) );
+                continue;
+            }
+            if ( localLock.getHoldCount() == 1 ) {
+                held.add( partition );
+            }
+        }
+        releasePartitions( held, partitions );
+        unlockPartition( GLOBAL_PARTITION );
+    }
+
+    /**
+     * Asks for the given partitions with a single request, then waits for them in ascending order. Waiting on a
+     * partition held elsewhere, the later ones are handed back until it's granted: the holder may be waiting on one
+     * of them, as it would if they were taken one by one.
+     */
+    private void awaitPartitions( final List<Integer> requested ) {
+        if ( requested.isEmpty() ) {
             return;
         }
-        enablePartition();
+        enablePartitions( partitionNames( requested ) );
+        for ( int i = 0; i < requested.size(); i++ ) {
+            final SimpleLock lock = lockFactory.getLock( partitionName( requested.get( i ) ) );
+            if ( lock.isLocked() ) {
+                continue;
+            }
+            final List<Integer> later = requested.subList( i + 1, requested.size() );
+            if ( later.isEmpty() ) {
+                lock.awaitLocked();
+                continue;
+            }
+            disablePartitions( partitionNames( later ) );
+            for ( final Integer partition : later ) {
+                lockFactory.getLock( partitionName( partition ) ).awaitUnlocked();
+            }
+            lock.awaitLocked();
+            enablePartitions( partitionNames( later ) );
+        }
+    }
 
-        while ( !lock.isLocked() ) {
-            try {
-                Thread.sleep( 10 );
-            } catch ( final InterruptedException ignored ) {
+    /**
+     * Hands back the given partitions with a single request and releases the local locks of the partitions below
+     * <code>locked</code> (the global one excluded) taken by the calling thread.
+     */
+    private void releasePartitions( final List<Integer> held,
+                                    final int locked ) {
+        try {
+            if ( !held.isEmpty() ) {
+                disablePartitions( partitionNames( held ) );
+                for ( final Integer partition : held ) {
+                    lockFactory.getLock( partitionName( partition ) ).awaitUnlocked();
+                }
+            }
+        } finally {
+            for ( int partition = locked - 1; partition > GLOBAL_PARTITION; partition-- ) {
+                final ReentrantLock localLock = localLocks.get( partition );
+                if ( localLock != null && localLock.isHeldByCurrentThread() ) {
+                    localLock.unlock();
+                }
             }
         }
     }
 
     @Override
-    public void unlock() {
+    public void lock( final String... resourceIds ) {
         if ( !isStarted() ) {
             return;
         }
-        stackSize.decrementAndGet();
-        if ( !lock.isLocked() ) {
-            stackSize.set( 0 );
+        // always ascending, so two nodes locking the same resources can't wait on each other
+        for ( final Integer partition : partitionsOf( resourceIds ) ) {
+            lockPartition( partition );
+        }
+    }
+
+    @Override
+    public void unlock( final String... resourceIds ) {
+        if ( !isStarted() ) {
             return;
         }
+        for ( final Integer partition : partitionsOf( resourceIds ).descendingSet() ) {
+            unlockPartition( partition );
+        }
+    }
 
-        if ( stackSize.get() == 0 ) {
-            disablePartition();
+    private TreeSet<Integer> partitionsOf( final String... resourceIds ) {
+        final TreeSet<Integer> result = new TreeSet<Integer>();
+        for ( final String resourceId : resourceIds ) {
+            result.add( partitionOf( resourceId ) );
+        }
+        return result;
+    }
 
-            while ( lock.isLocked() ) {
-                try {
-                    Thread.sleep( 10 );
-                } catch ( InterruptedException e ) {
-                }
+    /**
+     * A partition is held by one thread of this node at a time; the first (outermost) lock asks the cluster for the
+     * partition and waits for the transition that grants it.
+     */
+    private void lockPartition( final int partition ) {
+        final ReentrantLock localLock = localLockOf( partition );
+        localLock.lock();
+        if ( localLock.getHoldCount() > 1 ) {
+            return;
+        }
+
+        boolean acquired = false;
+        try {
+            final String partitionName = partitionName( partition );
+            enablePartitions( asList( partitionName ) );
+            lockFactory.getLock( partitionName ).awaitLocked();
+            acquired = true;
+        } finally {
+            if ( !acquired ) {
+                localLock.unlock();
+            }
+        }
+    }
+
+    private void unlockPartition( final int partition ) {
+        final ReentrantLock localLock = localLocks.get( partition );
+        if ( localLock == null || !localLock.isHeldByCurrentThread() ) {
+            logger.warn( "Cluster lock partition {} released by a thread not holding it, ignored.", partitionName( partition ) );
+            return;
+        }
+
+        try {
+            if ( localLock.getHoldCount() == 1 ) {
+                final String partitionName = partitionName( partition );
+                disablePartitions( asList( partitionName ) );
+                lockFactory.getLock( partitionName ).awaitUnlocked();
+            }
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    private ReentrantLock localLockOf( final int partition ) {
+        ReentrantLock localLock = localLocks.get( partition );
+        if ( localLock == null ) {
+            final ReentrantLock newLock = new ReentrantLock( true );
+            localLock = localLocks.putIfAbsent( partition, newLock );
+            if ( localLock == null ) {
+                localLock = newLock;
             }
         }
+        return localLock;
     }
 
     @Override
@@ -164,7 +409,7 @@ public class ClusterServiceHelix implements ClusterService {
         if ( !isStarted() ) {
             return true;
         }
-        return lock.isLocked();
+        return lockFactory.getLock( partitionName( GLOBAL_PARTITION ) ).isLocked();
     }
 
     @Override
@@ -224,6 +469,26 @@ public class ClusterServiceHelix implements ClusterService {
         participantManager.getMessagingService().send( buildCriteria(), buildMessage( serviceId, type, content ) );
     }
 
+    @Override
+    public void broadcast( final String serviceId,
+                           final MessageType type,
+                           final List<Map<String, String>> contents ) {
+        if ( !isStarted() || contents.isEmpty() ) {
+            return;
+        }
+        if ( LEGACY_MESSAGES ) {
+            for ( final Map<String, String> content : contents ) {
+                broadcast( serviceId, type, content );
+            }
+            return;
+        }
+        final List<MessagePayload> payloads = new ArrayList<MessagePayload>( contents.size() );
+        for ( final Map<String, String> content : contents ) {
+            payloads.add( MessagePayload.fromMap( content ) );
+        }
+        participantManager.getMessagingService().send( buildCriteria(), buildMessage( serviceId, type, MessagePayloadCodec.encodeBatch( payloads ) ) );
+    }
+
     @Override
     public void broadcast( final String serviceId,
                            final MessageType type,
@@ -242,7 +507,7 @@ public class ClusterServiceHelix implements ClusterService {
             @Override
             public void onReplyMessage( final Message message ) {
                 final MessageType type = buildMessageTypeFromReply( message );
-                final Map<String, String> map = getMessageContent( message );
+                final Map<String, String> map = getMessageContentFromReply( message );
 
                 callback.onReply( type, map );
             }
@@ -277,9 +542,19 @@ public class ClusterServiceHelix implements ClusterService {
     private Message buildMessage( final String serviceId,
                                   final MessageType type,
                                   final Map<String, String> content ) {
+        final Message message = buildMessage( serviceId, type, MessagePayloadCodec.encode( MessagePayload.fromMap( content ) ) );
+        if ( LEGACY_MESSAGES ) {
+            message.getRecord().setMapField( "content", content );
+        }
+        return message;
+    }
+
+    private Message buildMessage( final String serviceId,
+                                  final MessageType type,
+                                  final byte[] payload ) {
         return new Message( Message.MessageType.USER_DEFINE_MSG, randomUUID().toString() ) {{
             setMsgState( Message.MessageState.NEW );
-            getRecord().setMapField( "content", content );
+            getRecord().setSimpleField( "payload", DatatypeConverter.printBase64Binary( payload ) );
             getRecord().setSimpleField( "serviceId", serviceId );
             getRecord().setSimpleField( "type", type.toString() );
             getRecord().setSimpleField( "origin", instanceName );
@@ -301,9 +576,13 @@ public class ClusterServiceHelix implements ClusterService {
                             try {
                                 final String serviceId = _message.getRecord().getSimpleField( "serviceId" );
                                 final MessageType type = buildMessageType( _message.getRecord().getSimpleField( "type" ) );
-                                final Map<String, String> map = getMessageContent( _message );
+                                final PayloadMessageHandler handler = MessageHandlerAdapter.adapt( messageHandlerResolver.get( serviceId ).resolveHandler( serviceId, type ) );
 
-                                final Pair<MessageType, Map<String, String>> result = messageHandlerResolver.get( serviceId ).resolveHandler( serviceId, type ).handleMessage( type, map );
+                                Pair<MessageType, MessagePayload> reply = null;
+                                for ( final MessagePayload payload : getMessagePayloads( _message ) ) {
+                                    reply = handler.handlePayload( type, payload );
+                                }
+                                final Pair<MessageType, MessagePayload> result = reply;
 
                                 if ( result == null ) {
                                     return new HelixTaskResult() {{
@@ -313,12 +592,13 @@ public class ClusterServiceHelix implements ClusterService {
 
                                 return new HelixTaskResult() {{
                                     setSuccess( true );
+                                    if ( LEGACY_MESSAGES ) {
+                                        getTaskResultMap().putAll( result.getK2().asMap() );
+                                    }
                                     getTaskResultMap().put( "serviceId", serviceId );
                                     getTaskResultMap().put( "type", result.getK1().toString() );
                                     getTaskResultMap().put( "origin", instanceName );
-                                    for ( Map.Entry<String, String> entry : result.getK2().entrySet() ) {
-                                        getTaskResultMap().put( entry.getKey(), entry.getValue() );
-                                    }
+                                    getTaskResultMap().put( "payload", DatatypeConverter.printBase64Binary( MessagePayloadCodec.encode( result.getK2() ) ) );
                                 }};
                             } catch ( final Throwable e ) {
                                 logger.error( "Error while processing cluster message", e );
@@ -381,13 +661,25 @@ public class ClusterServiceHelix implements ClusterService {
         return buildMessageType( result.get( "type" ) );
     }
 
-    private Map<String, String> getMessageContent( final Message message ) {
-        return message.getRecord().getMapField( "content" );
+    /**
+     * The payloads of a message, several if it's a batch; a message without payload comes from a node that still
+     * sends the content as a map.
+     */
+    private List<MessagePayload> getMessagePayloads( final Message message ) {
+        final String payload = message.getRecord().getSimpleField( "payload" );
+        if ( payload == null ) {
+            return Collections.singletonList( MessagePayload.fromMap( message.getRecord().getMapField( "content" ) ) );
+        }
+        return MessagePayloadCodec.decodeBatch( DatatypeConverter.parseBase64Binary( payload ) );
     }
 
     private Map<String, String> getMessageContentFromReply( final Message message ) {
+        final Map<String, String> result = message.getRecord().getMapField( Message.Attributes.MESSAGE_RESULT.toString() );
+        if ( result.containsKey( "payload" ) ) {
+            return MessagePayloadCodec.decode( DatatypeConverter.parseBase64Binary( result.get( "payload" ) ) ).asMap();
+        }
         return new HashMap<String, String>() {{
-            for ( final Map.Entry<String, String> field : message.getRecord().getMapField( Message.Attributes.MESSAGE_RESULT.toString() ).entrySet() ) {
+            for ( final Map.Entry<String, String> field : result.entrySet() ) {
                 if ( !field.getKey().equals( "serviceId" ) && !field.getKey().equals( "origin" ) && !field.getKey().equals( "type" ) ) {
                     put( field.getKey(), field.getValue() );
                 }
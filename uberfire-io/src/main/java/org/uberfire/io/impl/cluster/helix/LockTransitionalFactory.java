@@ -1,17 +1,34 @@
 package org.uberfire.io.impl.cluster.helix;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.helix.participant.statemachine.StateModelFactory;
 
 public class LockTransitionalFactory extends StateModelFactory<LockTransitionModel> {
 
-    private final SimpleLock lock;
+    private final ConcurrentMap<String, SimpleLock> locks = new ConcurrentHashMap<String, SimpleLock>();
 
-    LockTransitionalFactory( final SimpleLock lock ) {
-        this.lock = lock;
+    LockTransitionalFactory() {
     }
 
     @Override
     public LockTransitionModel createNewStateModel( final String lockName ) {
-        return new LockTransitionModel( lockName, lock );
+        return new LockTransitionModel( lockName, getLock( lockName ) );
+    }
+
+    /**
+     * Returns the local view of the given lock partition, flipped by the transitions of its state model.
+     */
+    SimpleLock getLock( final String lockName ) {
+        SimpleLock lock = locks.get( lockName );
+        if ( lock == null ) {
+            final SimpleLock newLock = new SimpleLock();
+            lock = locks.putIfAbsent( lockName, newLock );
+            if ( lock == null ) {
+                lock = newLock;
+            }
+        }
+        return lock;
     }
 }
@@ -1,21 +1,64 @@
 package org.uberfire.io.impl.cluster.helix;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 class SimpleLock {
 
-    private AtomicBoolean isLocked = new AtomicBoolean( false );
+    private final ReentrantLock stateLock = new ReentrantLock();
+    private final Condition stateChanged = stateLock.newCondition();
+    private boolean isLocked = false;
 
     public void lock() {
-        isLocked.set( true );
+        setLocked( true );
     }
 
     public boolean isLocked() {
-        return isLocked.get();
+        stateLock.lock();
+        try {
+            return isLocked;
+        } finally {
+            stateLock.unlock();
+        }
     }
 
     public void unlock() {
-        isLocked.set( false );
+        setLocked( false );
+    }
+
+    /**
+     * Waits until the cluster transition hands this lock over.
+     */
+    void awaitLocked() {
+        awaitState( true );
+    }
+
+    /**
+     * Waits until the cluster transition takes this lock back.
+     */
+    void awaitUnlocked() {
+        awaitState( false );
+    }
+
+    private void setLocked( final boolean locked ) {
+        stateLock.lock();
+        try {
+            isLocked = locked;
+            stateChanged.signalAll();
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private void awaitState( final boolean locked ) {
+        stateLock.lock();
+        try {
+            while ( isLocked != locked ) {
+                stateChanged.awaitUninterruptibly();
+            }
+        } finally {
+            stateLock.unlock();
+        }
     }
 
 }
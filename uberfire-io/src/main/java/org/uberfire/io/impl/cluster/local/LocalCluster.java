@@ -0,0 +1,267 @@
+package org.uberfire.io.impl.cluster.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.uberfire.commons.validation.PortablePreconditions.*;
+
+/**
+ * In process stand in for a cluster: every {@link LocalClusterService} started over the same instance is a node of
+ * it. Messages and replies are delivered on a pool after the configured latency, and each one is dropped with the
+ * configured probability, so the clustered code paths can be exercised and measured on a single JVM.
+ * <p>
+ * Cluster locks are fair locks shared by all nodes: a lock is held by one thread of the whole cluster at a time,
+ * which is what the distributed locks guarantee across nodes and threads.
+ */
+public class LocalCluster {
+
+    private static final Logger logger = LoggerFactory.getLogger( LocalCluster.class );
+
+    private final long latency;
+    private final double lossRate;
+    private final Random random = new Random();
+
+    private final Map<String, LocalClusterService> nodes = new ConcurrentHashMap<String, LocalClusterService>();
+    private final ReentrantLock globalLock = new ReentrantLock( true );
+    private final ConcurrentMap<String, ReentrantLock> resourceLocks = new ConcurrentHashMap<String, ReentrantLock>();
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService deliveryPool;
+
+    private final ReentrantLock inFlightLock = new ReentrantLock();
+    private final Condition idle = inFlightLock.newCondition();
+    private int inFlight = 0;
+
+    private final AtomicLong sent = new AtomicLong( 0 );
+    private final AtomicLong delivered = new AtomicLong( 0 );
+    private final AtomicLong dropped = new AtomicLong( 0 );
+
+    public LocalCluster() {
+        this( 0, 0 );
+    }
+
+    /**
+     * @param latency delay, in milliseconds, of every message, reply and first lock acquisition
+     * @param lossRate probability, from 0 to 1, that a message or reply never arrives
+     */
+    public LocalCluster( final long latency,
+                         final double lossRate ) {
+        checkCondition( "latency can't be negative", latency >= 0 );
+        checkCondition( "lossRate must be between 0 and 1", lossRate >= 0 && lossRate <= 1 );
+        this.latency = latency;
+        this.lossRate = lossRate;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor( new LocalClusterThreadFactory( "scheduler" ) );
+        this.deliveryPool = Executors.newCachedThreadPool( new LocalClusterThreadFactory( "delivery" ) );
+    }
+
+    public long getLatency() {
+        return latency;
+    }
+
+    public double getLossRate() {
+        return lossRate;
+    }
+
+    public long getSentMessages() {
+        return sent.get();
+    }
+
+    public long getDeliveredMessages() {
+        return delivered.get();
+    }
+
+    public long getDroppedMessages() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until every message and reply sent so far was handled or dropped.
+     * @return false if the timeout elapsed first
+     */
+    public boolean awaitIdle( final long timeout,
+                              final TimeUnit unit ) throws InterruptedException {
+        long nanos = unit.toNanos( timeout );
+        inFlightLock.lock();
+        try {
+            while ( inFlight > 0 ) {
+                if ( nanos <= 0 ) {
+                    return false;
+                }
+                nanos = idle.awaitNanos( nanos );
+            }
+            return true;
+        } finally {
+            inFlightLock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        deliveryPool.shutdownNow();
+    }
+
+    void join( final LocalClusterService node ) {
+        checkCondition( "node name must be unique", !nodes.containsKey( node.getNodeName() ) );
+        nodes.put( node.getNodeName(), node );
+    }
+
+    void leave( final LocalClusterService node ) {
+        nodes.remove( node.getNodeName() );
+    }
+
+    /**
+     * Returns the started nodes other than the given one, or just the named one if a name is given.
+     */
+    Collection<LocalClusterService> targetsOf( final LocalClusterService from,
+                                               final String nodeName ) {
+        final List<LocalClusterService> result = new ArrayList<LocalClusterService>();
+        for ( final LocalClusterService node : nodes.values() ) {
+            if ( node != from && ( nodeName == null || node.getNodeName().equals( nodeName ) ) ) {
+                result.add( node );
+            }
+        }
+        return result;
+    }
+
+    ReentrantLock getGlobalLock() {
+        return globalLock;
+    }
+
+    ReentrantLock getResourceLock( final String resourceId ) {
+        ReentrantLock lock = resourceLocks.get( resourceId );
+        if ( lock == null ) {
+            final ReentrantLock newLock = new ReentrantLock( true );
+            lock = resourceLocks.putIfAbsent( resourceId, newLock );
+            if ( lock == null ) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Simulates the round trip a distributed lock needs before it's granted.
+     */
+    void awaitRoundTrip() {
+        if ( latency == 0 ) {
+            return;
+        }
+        try {
+            Thread.sleep( latency );
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the given delivery on the pool once the latency elapsed, unless it gets lost on the way.
+     */
+    void transmit( final Runnable delivery ) {
+        sent.incrementAndGet();
+        if ( lossRate > 0 && nextDouble() < lossRate ) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        enterFlight();
+        try {
+            scheduler.schedule( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        deliveryPool.execute( new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    delivery.run();
+                                    delivered.incrementAndGet();
+                                } catch ( final Throwable t ) {
+                                    logger.error( "Error while delivering local cluster message", t );
+                                } finally {
+                                    leaveFlight();
+                                }
+                            }
+                        } );
+                    } catch ( final RejectedExecutionException ex ) {
+                        leaveFlight();
+                    }
+                }
+            }, latency, TimeUnit.MILLISECONDS );
+        } catch ( final RejectedExecutionException ex ) {
+            leaveFlight();
+        }
+    }
+
+    /**
+     * Schedules a task on the cluster clock, e.g. the timeout of an asynchronous broadcast.
+     */
+    void schedule( final Runnable task,
+                   final long delay ) {
+        try {
+            scheduler.schedule( task, delay, TimeUnit.MILLISECONDS );
+        } catch ( final RejectedExecutionException ignored ) {
+        }
+    }
+
+    private double nextDouble() {
+        synchronized ( random ) {
+            return random.nextDouble();
+        }
+    }
+
+    private void enterFlight() {
+        inFlightLock.lock();
+        try {
+            inFlight++;
+        } finally {
+            inFlightLock.unlock();
+        }
+    }
+
+    private void leaveFlight() {
+        inFlightLock.lock();
+        try {
+            inFlight--;
+            if ( inFlight == 0 ) {
+                idle.signalAll();
+            }
+        } finally {
+            inFlightLock.unlock();
+        }
+    }
+
+    private static class LocalClusterThreadFactory implements ThreadFactory {
+
+        private final String kind;
+        private final AtomicInteger count = new AtomicInteger( 0 );
+
+        LocalClusterThreadFactory( final String kind ) {
+            this.kind = kind;
+        }
+
+        @Override
+        public Thread newThread( final Runnable r ) {
+            final Thread thread = new Thread( r, "uberfire-local-cluster-" + kind + "-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
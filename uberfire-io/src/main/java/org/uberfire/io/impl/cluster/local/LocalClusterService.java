@@ -0,0 +1,307 @@
+package org.uberfire.io.impl.cluster.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.uberfire.commons.cluster.ClusterService;
+import org.uberfire.commons.data.Pair;
+import org.uberfire.commons.message.AsyncCallback;
+import org.uberfire.commons.message.MessageHandler;
+import org.uberfire.commons.message.MessageHandlerResolver;
+import org.uberfire.commons.message.MessageType;
+
+import static org.uberfire.commons.validation.PortablePreconditions.*;
+
+/**
+ * A node of a {@link LocalCluster}. It behaves like the Helix based service: nothing is locked or sent until it's
+ * started, broadcasts skip the sender, and every reply reaches the callback, with a null type if the peer had
+ * nothing to answer.
+ */
+public class LocalClusterService implements ClusterService {
+
+    private final LocalCluster cluster;
+    private final String nodeName;
+    private final Map<String, MessageHandlerResolver> messageHandlerResolver = new ConcurrentHashMap<String, MessageHandlerResolver>();
+    private final AtomicBoolean started = new AtomicBoolean( false );
+    private final Collection<Runnable> onStart = new ArrayList<Runnable>();
+
+    public LocalClusterService( final LocalCluster cluster,
+                                final String nodeName,
+                                final MessageHandlerResolver messageHandlerResolver ) {
+        this.cluster = checkNotNull( "cluster", cluster );
+        this.nodeName = checkNotEmpty( "nodeName", nodeName );
+        this.messageHandlerResolver.put( messageHandlerResolver.getServiceId(), messageHandlerResolver );
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    @Override
+    public void addMessageHandlerResolver( final MessageHandlerResolver resolver ) {
+        this.messageHandlerResolver.put( resolver.getServiceId(), resolver );
+    }
+
+    @Override
+    public void start() {
+        if ( isStarted() ) {
+            return;
+        }
+        cluster.join( this );
+        started.set( true );
+        for ( final Runnable runnable : onStart ) {
+            runnable.run();
+        }
+    }
+
+    public boolean isStarted() {
+        return started.get();
+    }
+
+    @Override
+    public void dispose() {
+        if ( started.compareAndSet( true, false ) ) {
+            cluster.leave( this );
+        }
+    }
+
+    @Override
+    public void onStart( final Runnable runnable ) {
+        this.onStart.add( runnable );
+    }
+
+    @Override
+    public void lock() {
+        if ( !isStarted() ) {
+            return;
+        }
+        acquire( cluster.getGlobalLock() );
+    }
+
+    @Override
+    public void unlock() {
+        if ( !isStarted() ) {
+            return;
+        }
+        release( cluster.getGlobalLock() );
+    }
+
+    @Override
+    public void lock( final String... resourceIds ) {
+        if ( !isStarted() ) {
+            return;
+        }
+        for ( final String resourceId : new TreeSet<String>( asList( resourceIds ) ) ) {
+            acquire( cluster.getResourceLock( resourceId ) );
+        }
+    }
+
+    @Override
+    public void unlock( final String... resourceIds ) {
+        if ( !isStarted() ) {
+            return;
+        }
+        for ( final String resourceId : new TreeSet<String>( asList( resourceIds ) ).descendingSet() ) {
+            release( cluster.getResourceLock( resourceId ) );
+        }
+    }
+
+    @Override
+    public boolean isLocked() {
+        if ( !isStarted() ) {
+            return true;
+        }
+        return cluster.getGlobalLock().isHeldByCurrentThread();
+    }
+
+    @Override
+    public boolean isInnerLocked() {
+        return cluster.getGlobalLock().getHoldCount() > 1;
+    }
+
+    private void acquire( final ReentrantLock lock ) {
+        if ( !lock.isHeldByCurrentThread() ) {
+            cluster.awaitRoundTrip();
+        }
+        lock.lock();
+    }
+
+    private void release( final ReentrantLock lock ) {
+        if ( lock.isHeldByCurrentThread() ) {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void broadcastAndWait( final String serviceId,
+                                  final MessageType type,
+                                  final Map<String, String> content,
+                                  final int timeOut ) {
+        if ( !isStarted() ) {
+            return;
+        }
+        final CountDownLatch replies = send( null, serviceId, type, content, null );
+        await( replies, timeOut );
+    }
+
+    @Override
+    public void broadcastAndWait( final String serviceId,
+                                  final MessageType type,
+                                  final Map<String, String> content,
+                                  final int timeOut,
+                                  final AsyncCallback callback ) {
+        if ( !isStarted() ) {
+            return;
+        }
+        final CountDownLatch replies = send( null, serviceId, type, content, callback );
+        if ( replies.getCount() == 0 || !await( replies, timeOut ) ) {
+            callback.onTimeOut();
+        }
+    }
+
+    @Override
+    public void broadcast( final String serviceId,
+                           final MessageType type,
+                           final Map<String, String> content ) {
+        if ( !isStarted() ) {
+            return;
+        }
+        send( null, serviceId, type, content, null );
+    }
+
+    @Override
+    public void broadcast( final String serviceId,
+                           final MessageType type,
+                           final List<Map<String, String>> contents ) {
+        if ( !isStarted() ) {
+            return;
+        }
+        final List<Map<String, String>> messages = new ArrayList<Map<String, String>>( contents.size() );
+        for ( final Map<String, String> content : contents ) {
+            messages.add( Collections.unmodifiableMap( new HashMap<String, String>( content ) ) );
+        }
+        for ( final LocalClusterService target : cluster.targetsOf( this, null ) ) {
+            cluster.transmit( new Runnable() {
+                @Override
+                public void run() {
+                    for ( final Map<String, String> message : messages ) {
+                        target.handleMessage( serviceId, type, message );
+                    }
+                }
+            } );
+        }
+    }
+
+    @Override
+    public void broadcast( final String serviceId,
+                           final MessageType type,
+                           final Map<String, String> content,
+                           final int timeOut,
+                           final AsyncCallback callback ) {
+        if ( !isStarted() ) {
+            return;
+        }
+        final CountDownLatch replies = send( null, serviceId, type, content, callback );
+        cluster.schedule( new Runnable() {
+            @Override
+            public void run() {
+                if ( replies.getCount() > 0 ) {
+                    callback.onTimeOut();
+                }
+            }
+        }, timeOut );
+    }
+
+    @Override
+    public void sendTo( final String resourceId,
+                        final String serviceId,
+                        final MessageType type,
+                        final Map<String, String> content ) {
+        if ( !isStarted() ) {
+            return;
+        }
+        send( resourceId, serviceId, type, content, null );
+    }
+
+    /**
+     * Sends the message to the target nodes and returns a latch counting their replies down.
+     */
+    private CountDownLatch send( final String nodeName,
+                                 final String serviceId,
+                                 final MessageType type,
+                                 final Map<String, String> content,
+                                 final AsyncCallback callback ) {
+        final Collection<LocalClusterService> targets = cluster.targetsOf( this, nodeName );
+        final CountDownLatch replies = new CountDownLatch( targets.size() );
+        final Map<String, String> message = Collections.unmodifiableMap( new HashMap<String, String>( content ) );
+
+        for ( final LocalClusterService target : targets ) {
+            cluster.transmit( new Runnable() {
+                @Override
+                public void run() {
+                    final Pair<MessageType, Map<String, String>> result = target.handleMessage( serviceId, type, message );
+                    cluster.transmit( new Runnable() {
+                        @Override
+                        public void run() {
+                            if ( callback != null ) {
+                                if ( result == null ) {
+                                    callback.onReply( null, Collections.<String, String>emptyMap() );
+                                } else {
+                                    callback.onReply( result.getK1(), result.getK2() );
+                                }
+                            }
+                            replies.countDown();
+                        }
+                    } );
+                }
+            } );
+        }
+
+        return replies;
+    }
+
+    Pair<MessageType, Map<String, String>> handleMessage( final String serviceId,
+                                                          final MessageType type,
+                                                          final Map<String, String> content ) {
+        final MessageHandlerResolver resolver = messageHandlerResolver.get( serviceId );
+        if ( resolver == null ) {
+            return null;
+        }
+        final MessageHandler handler = resolver.resolveHandler( serviceId, type );
+        if ( handler == null ) {
+            return null;
+        }
+        return handler.handleMessage( type, new HashMap<String, String>( content ) );
+    }
+
+    private boolean await( final CountDownLatch replies,
+                           final int timeOut ) {
+        try {
+            return replies.await( timeOut, TimeUnit.MILLISECONDS );
+        } catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static List<String> asList( final String... values ) {
+        final List<String> result = new ArrayList<String>( values.length );
+        Collections.addAll( result, values );
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "LocalClusterService{" + nodeName + "}";
+    }
+}
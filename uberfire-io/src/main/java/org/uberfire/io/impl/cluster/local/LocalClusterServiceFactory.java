@@ -0,0 +1,51 @@
+package org.uberfire.io.impl.cluster.local;
+
+import org.uberfire.commons.cluster.ClusterService;
+import org.uberfire.commons.cluster.ClusterServiceFactory;
+import org.uberfire.commons.message.MessageHandlerResolver;
+
+import static org.uberfire.commons.validation.PortablePreconditions.*;
+
+/**
+ * Builds the {@link LocalClusterService} of one node of a {@link LocalCluster}; like the Helix factory, every service
+ * built by the same factory shares the node and just adds its resolver.
+ */
+public class LocalClusterServiceFactory implements ClusterServiceFactory {
+
+    private final LocalCluster cluster;
+    private final String nodeName;
+    private final boolean autostart;
+    private LocalClusterService clusterService;
+
+    public LocalClusterServiceFactory( final LocalCluster cluster,
+                                       final String nodeName,
+                                       final boolean autostart ) {
+        this.cluster = checkNotNull( "cluster", cluster );
+        this.nodeName = checkNotEmpty( "nodeName", nodeName );
+        this.autostart = autostart;
+    }
+
+    @Override
+    public synchronized ClusterService build( final MessageHandlerResolver resolver ) {
+        if ( clusterService == null ) {
+            clusterService = new LocalClusterService( cluster, nodeName, resolver );
+            if ( autostart ) {
+                clusterService.start();
+            }
+        } else {
+            clusterService.addMessageHandlerResolver( resolver );
+        }
+        return clusterService;
+    }
+
+    @Override
+    public boolean isAutoStart() {
+        return autostart;
+    }
+
+    public synchronized void startClusterService() {
+        if ( clusterService != null ) {
+            clusterService.start();
+        }
+    }
+}
@@ -1,26 +1,152 @@
 package org.uberfire.io.lock;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.uberfire.java.nio.file.FileSystem;
 
+/**
+ * Batch locks are taken per file system: a batch on one file system doesn't block batches on other ones.
+ * <p>
+ * Every file system gets its own fair lock, numbered in creation order, and the locks needed by a batch are always
+ * acquired in ascending order, so batches over several file systems can't deadlock each other. Locks are held by the
+ * thread that started the outermost batch until that batch ends, including the ones taken by its inner batches; as
+ * those are taken after the outer ones, two threads must not nest batches over the same file systems in opposite
+ * orders.
+ */
 public class BatchLockControl {
 
-    private ReentrantLock lock = new ReentrantLock( true );
+    private static final Comparator<OrderedLock> LOCK_ORDER = new Comparator<OrderedLock>() {
+        @Override
+        public int compare( final OrderedLock o1,
+                            final OrderedLock o2 ) {
+            return o1.order < o2.order ? -1 : ( o1.order == o2.order ? 0 : 1 );
+        }
+    };
+
+    private final ConcurrentMap<FileSystem, OrderedLock> locks = new ConcurrentHashMap<FileSystem, OrderedLock>();
+    private final AtomicLong lockSequence = new AtomicLong( 0 );
+
+    private final ThreadLocal<BatchState> batchState = new ThreadLocal<BatchState>();
 
     public void lock( final FileSystem... fileSystems ) {
-        lock.lock();
+        BatchState state = batchState.get();
+        if ( state == null ) {
+            state = new BatchState();
+        }
+
+        for ( final OrderedLock lock : locksOf( fileSystems ) ) {
+            lock.lock();
+            state.locks.add( lock );
+        }
+
+        if ( fileSystems != null ) {
+            Collections.addAll( state.fileSystems, fileSystems );
+        }
+        state.holdCount++;
+        batchState.set( state );
     }
 
     public void unlock() {
-        lock.unlock();
+        final BatchState state = batchState.get();
+        if ( state == null ) {
+            throw new IllegalMonitorStateException();
+        }
+
+        state.holdCount--;
+        if ( state.holdCount > 0 ) {
+            return;
+        }
+
+        batchState.remove();
+        for ( int i = state.locks.size() - 1; i >= 0; i-- ) {
+            state.locks.get( i ).unlock();
+        }
     }
 
+    /**
+     * Returns true if the current thread is running a batch.
+     */
     public boolean isLocked() {
-        return lock.isLocked();
+        return batchState.get() != null;
+    }
+
+    /**
+     * Returns how many nested batches the current thread is running.
+     */
+    public int getHoldCount() {
+        final BatchState state = batchState.get();
+        if ( state == null ) {
+            return 0;
+        }
+        return state.holdCount;
+    }
+
+    /**
+     * Returns the file systems locked by the batch of the current thread, including those of its inner batches.
+     */
+    public Collection<FileSystem> getLockedFileSystems() {
+        final BatchState state = batchState.get();
+        if ( state == null ) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableCollection( state.fileSystems );
     }
 
-    public int getHoldCount(){
-        return lock.getHoldCount();
+    /**
+     * Forgets the lock of a file system that is gone; it must not be part of a running batch.
+     */
+    public void remove( final FileSystem fileSystem ) {
+        locks.remove( fileSystem );
+    }
+
+    private List<OrderedLock> locksOf( final FileSystem... fileSystems ) {
+        final List<OrderedLock> result = new ArrayList<OrderedLock>();
+        if ( fileSystems != null ) {
+            for ( final FileSystem fs : fileSystems ) {
+                if ( fs == null ) {
+                    continue;
+                }
+                OrderedLock lock = locks.get( fs );
+                if ( lock == null ) {
+                    final OrderedLock newLock = new OrderedLock( lockSequence.incrementAndGet() );
+                    lock = locks.putIfAbsent( fs, newLock );
+                    if ( lock == null ) {
+                        lock = newLock;
+                    }
+                }
+                if ( !result.contains( lock ) ) {
+                    result.add( lock );
+                }
+            }
+        }
+        Collections.sort( result, LOCK_ORDER );
+        return result;
+    }
+
+    private static class OrderedLock extends ReentrantLock {
+
+        private final long order;
+
+        OrderedLock( final long order ) {
+            super( true );
+            this.order = order;
+        }
+    }
+
+    private static class BatchState {
+
+        private final List<ReentrantLock> locks = new ArrayList<ReentrantLock>();
+        private final Set<FileSystem> fileSystems = new LinkedHashSet<FileSystem>();
+        private int holdCount = 0;
     }
 }
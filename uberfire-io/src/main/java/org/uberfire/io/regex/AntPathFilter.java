@@ -0,0 +1,40 @@
+package org.uberfire.io.regex;
+
+import java.net.URI;
+import java.util.Collection;
+
+import org.uberfire.commons.regex.util.AntPathPatternSet;
+import org.uberfire.java.nio.file.DirectoryStream;
+import org.uberfire.java.nio.file.Path;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Include and exclude patterns compiled once, accepting the same URIs and paths as
+ * {@link AntPathMatcher#filter(Collection, Collection, URI)}. Build it when the patterns are known (e.g. at servlet
+ * init) and share it; being a {@link DirectoryStream.Filter} it can also be handed to
+ * {@code Files.newDirectoryStream( dir, filter )}.
+ */
+public final class AntPathFilter implements DirectoryStream.Filter<Path> {
+
+    private final AntPathPatternSet includes;
+    private final AntPathPatternSet excludes;
+
+    public AntPathFilter( final Collection<String> includes,
+                          final Collection<String> excludes ) {
+        this.includes = new AntPathPatternSet( checkNotNull( "includes", includes ) );
+        this.excludes = new AntPathPatternSet( checkNotNull( "excludes", excludes ) );
+    }
+
+    @Override
+    public boolean accept( final Path path ) {
+        checkNotNull( "path", path );
+        return accept( path.toUri() );
+    }
+
+    public boolean accept( final URI uri ) {
+        checkNotNull( "uri", uri );
+        final String value = uri.toString();
+        return ( includes.isEmpty() || includes.matches( value ) ) && ( excludes.isEmpty() || !excludes.matches( value ) );
+    }
+}
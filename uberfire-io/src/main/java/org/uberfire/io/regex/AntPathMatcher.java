@@ -7,6 +7,10 @@ import org.uberfire.java.nio.file.Path;
 
 import static org.uberfire.commons.validation.Preconditions.*;
 
+/**
+ * Matches URIs and paths against Ant-style patterns parsed on every call. When the same patterns are evaluated over and
+ * over, compile them once into an {@link AntPathFilter} instead.
+ */
 public final class AntPathMatcher {
 
     private static org.uberfire.commons.regex.util.AntPathMatcher matcher = new org.uberfire.commons.regex.util.AntPathMatcher();
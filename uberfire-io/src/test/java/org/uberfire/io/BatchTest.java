@@ -7,6 +7,8 @@ import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.AfterClass;
@@ -343,6 +345,37 @@ public class BatchTest {
         assertFalse( fs2Batch.isOnBatch() );
     }
 
+    @Test
+    public void testBatchesOnDifferentFsDontBlockEachOther() throws IOException, InterruptedException {
+        final Path init = ioService.get( URI.create( "git://check-amend-repo-test-2/readme.txt" ) );
+        ioService.write( init, "init!" );
+
+        ioService.startBatch( new FileSystem[]{ fs1 } );
+        try {
+            final CountDownLatch done = new CountDownLatch( 1 );
+            new Thread( "other-fs" ) {
+                @Override
+                public void run() {
+                    ioService.startBatch( new FileSystem[]{ fs3 } );
+                    try {
+                        ioService.write( init, "in batch!" );
+                    } finally {
+                        ioService.endBatch();
+                    }
+                    done.countDown();
+                }
+            }.start();
+
+            assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+            assertTrue( fs1Batch.isOnBatch() );
+            assertFalse( fs3Batch.isOnBatch() );
+        } finally {
+            ioService.endBatch();
+        }
+        assertFalse( fs1Batch.isOnBatch() );
+        assertEquals( "in batch!", ioService.readAllString( init ) );
+    }
+
     @Test
     public void testDifferentThreads() throws IOException, InterruptedException {
 
@@ -0,0 +1,228 @@
+package org.uberfire.io.impl.cluster;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.uberfire.commons.cluster.ClusterService;
+import org.uberfire.commons.cluster.ClusterServiceFactory;
+import org.uberfire.commons.message.AsyncCallback;
+import org.uberfire.commons.message.MessageHandlerResolver;
+import org.uberfire.io.impl.IOServiceIdentifiable;
+import org.uberfire.java.nio.base.FileSystemId;
+import org.uberfire.java.nio.file.FileSystem;
+import org.uberfire.java.nio.file.Path;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class IOServiceClusterImplTest {
+
+    private IOServiceIdentifiable service;
+    private ClusterService clusterService;
+    private IOServiceClusterImpl ioService;
+    private MessageHandlerResolver resolver;
+
+    @Before
+    public void setup() {
+        service = mock( IOServiceIdentifiable.class );
+        when( service.getId() ).thenReturn( "ioService" );
+
+        clusterService = mock( ClusterService.class );
+        final ClusterServiceFactory factory = mock( ClusterServiceFactory.class );
+        when( factory.build( any( MessageHandlerResolver.class ) ) ).thenReturn( clusterService );
+
+        ioService = new IOServiceClusterImpl( service, factory, false );
+
+        final ArgumentCaptor<MessageHandlerResolver> captor = ArgumentCaptor.forClass( MessageHandlerResolver.class );
+        verify( factory ).build( captor.capture() );
+        resolver = captor.getValue();
+    }
+
+    @Test
+    public void testWriteLocksOnlyItsFileSystem() {
+        final Path path = path( fileSystem( "repo1" ) );
+
+        ioService.write( path, "content".getBytes() );
+
+        final InOrder inOrder = inOrder( clusterService, service );
+        inOrder.verify( clusterService ).lock( "repo1" );
+        inOrder.verify( service ).write( path, "content".getBytes() );
+        inOrder.verify( clusterService ).broadcast( eq( "ioService" ), eq( ClusterMessageType.SYNC_FS ), anyContent() );
+        inOrder.verify( clusterService ).unlock( "repo1" );
+
+        verify( clusterService, never() ).lock();
+    }
+
+    @Test
+    public void testNestedBatchesSyncWhenOutermostEnds() {
+        final FileSystem fs1 = fileSystem( "repo1" );
+        final FileSystem fs2 = fileSystem( "repo2" );
+
+        ioService.startBatch( fs1 );
+        ioService.startBatch( fs2 );
+        ioService.endBatch();
+
+        verify( clusterService, never() ).broadcast( anyString(), eq( ClusterMessageType.SYNC_FS ), anyContent() );
+        verify( clusterService, never() ).broadcast( anyString(), eq( ClusterMessageType.SYNC_FS ), anyContents() );
+        verify( clusterService, never() ).unlock( anyString() );
+
+        ioService.endBatch();
+
+        verify( clusterService ).broadcast( eq( "ioService" ), eq( ClusterMessageType.SYNC_FS ), argThat( new ArgumentMatcher<List<Map<String, String>>>() {
+            @Override
+            public boolean matches( final Object argument ) {
+                final List<?> contents = (List<?>) argument;
+                return contents.size() == 2
+                        && "repo1".equals( ( (Map<?, ?>) contents.get( 0 ) ).get( "fs_id" ) )
+                        && "repo2".equals( ( (Map<?, ?>) contents.get( 1 ) ).get( "fs_id" ) );
+            }
+        } ) );
+        verify( clusterService, never() ).broadcast( anyString(), eq( ClusterMessageType.SYNC_FS ), anyContent() );
+
+        final InOrder inOrder = inOrder( clusterService );
+        inOrder.verify( clusterService ).unlock( "repo2" );
+        inOrder.verify( clusterService ).unlock( "repo1" );
+        verify( clusterService, never() ).lock();
+    }
+
+    @Test
+    public void testMoveLocksBothFileSystemsUpFront() {
+        final Path source = path( fileSystem( "repo1" ) );
+        final Path target = path( fileSystem( "repo2" ) );
+
+        ioService.move( source, target );
+
+        final InOrder inOrder = inOrder( clusterService, service );
+        inOrder.verify( clusterService ).lock( "repo1", "repo2" );
+        inOrder.verify( service ).move( source, target );
+        inOrder.verify( clusterService ).unlock( "repo1", "repo2" );
+    }
+
+    @Test
+    public void testStartSyncsAdvertisedFileSystemsWithoutLocking() throws Exception {
+        advertise();
+
+        assertFalse( ioService.isReady() );
+
+        ioService.start();
+
+        assertTrue( ioService.awaitBootstrap( 10, TimeUnit.SECONDS ) );
+        assertTrue( ioService.isReady() );
+        verify( service ).newFileSystem( eq( URI.create( "git://repo1" ) ), anyEnv() );
+        verify( service ).newFileSystem( eq( URI.create( "git://repo2" ) ), anyEnv() );
+        verify( service, times( 2 ) ).getFileSystem( any( URI.class ) );
+        verify( clusterService, never() ).lock();
+        verify( clusterService, never() ).lock( anyString() );
+    }
+
+    @Test
+    public void testStartDoesNotWaitForBootstrapSyncs() throws Exception {
+        advertise();
+        final CountDownLatch release = new CountDownLatch( 1 );
+        when( service.getFileSystem( any( URI.class ) ) ).thenAnswer( new Answer<FileSystem>() {
+            @Override
+            public FileSystem answer( final InvocationOnMock invocation ) throws Throwable {
+                release.await();
+                return null;
+            }
+        } );
+
+        ioService.start();
+
+        assertFalse( ioService.isReady() );
+
+        release.countDown();
+        assertTrue( ioService.awaitBootstrap( 10, TimeUnit.SECONDS ) );
+        assertTrue( ioService.isReady() );
+    }
+
+    @Test
+    public void testNotReadyUntilFailedBootstrapSyncs() throws Exception {
+        advertise();
+        when( service.getFileSystem( any( URI.class ) ) ).thenThrow( new RuntimeException( "unreachable" ) );
+
+        ioService.start();
+
+        assertTrue( ioService.awaitBootstrap( 10, TimeUnit.SECONDS ) );
+        assertFalse( ioService.isReady() );
+
+        reset( service );
+        when( service.getId() ).thenReturn( "ioService" );
+        final Map<String, String> content = new HashMap<String, String>();
+        content.put( "fs_id", "repo1" );
+        content.put( "fs_scheme", "git" );
+        content.put( "fs_uri", "git://localhost:9418/repo1" );
+        resolver.resolveHandler( "ioService", ClusterMessageType.SYNC_FS ).handleMessage( ClusterMessageType.SYNC_FS, content );
+
+        assertFalse( ioService.isReady() );
+
+        // repo1 caught up, so writes to it no longer wait
+        final Path path = path( fileSystem( "repo1" ) );
+        ioService.write( path, "content".getBytes() );
+        verify( service ).write( path, "content".getBytes() );
+
+        content.put( "fs_id", "repo2" );
+        content.put( "fs_uri", "git://localhost:9418/repo2" );
+        resolver.resolveHandler( "ioService", ClusterMessageType.SYNC_FS ).handleMessage( ClusterMessageType.SYNC_FS, content );
+
+        assertTrue( ioService.isReady() );
+    }
+
+    private void advertise() {
+        doAnswer( new Answer<Void>() {
+            @Override
+            public Void answer( final InvocationOnMock invocation ) {
+                final Map<String, String> content = new HashMap<String, String>();
+                content.put( "fs_id_0", "repo1" );
+                content.put( "fs_scheme_0", "git" );
+                content.put( "fs_uri_0", "git://localhost:9418/repo1" );
+                content.put( "fs_id_1", "repo2" );
+                content.put( "fs_scheme_1", "git" );
+                content.put( "fs_uri_1", "git://localhost:9418/repo2" );
+                ( (AsyncCallback) invocation.getArguments()[ 4 ] ).onReply( ClusterMessageType.QUERY_FOR_FS_RESULT, content );
+                return null;
+            }
+        } ).when( clusterService ).broadcastAndWait( eq( "ioService" ), eq( ClusterMessageType.QUERY_FOR_FS ), anyContent(), anyInt(), any( AsyncCallback.class ) );
+    }
+
+    private FileSystem fileSystem( final String id ) {
+        final Path root = mock( Path.class );
+        when( root.toUri() ).thenReturn( URI.create( "git://" + id + "/" ) );
+
+        final FileSystem fs = mock( FileSystem.class, withSettings().extraInterfaces( FileSystemId.class ) );
+        when( ( (FileSystemId) fs ).id() ).thenReturn( id );
+        when( fs.getRootDirectories() ).thenReturn( Arrays.asList( root ) );
+        when( fs.toString() ).thenReturn( "git://" + id );
+        return fs;
+    }
+
+    private Path path( final FileSystem fs ) {
+        final Path path = mock( Path.class );
+        when( path.getFileSystem() ).thenReturn( fs );
+        return path;
+    }
+
+    private static Map<String, String> anyContent() {
+        return any();
+    }
+
+    private static Map<String, Object> anyEnv() {
+        return any();
+    }
+
+    private static List<Map<String, String>> anyContents() {
+        return any();
+    }
+}
@@ -0,0 +1,162 @@
+package org.uberfire.io.impl.cluster.local;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+import org.uberfire.commons.data.Pair;
+import org.uberfire.commons.message.AsyncCallback;
+import org.uberfire.commons.message.MessageHandler;
+import org.uberfire.commons.message.MessageHandlerResolver;
+import org.uberfire.commons.message.MessageType;
+
+import static org.fest.assertions.api.Assertions.*;
+
+public class LocalClusterServiceTest {
+
+    private static final MessageType PING = new MessageType() {
+    };
+
+    private static final MessageType PONG = new MessageType() {
+    };
+
+    private LocalCluster cluster;
+
+    @After
+    public void tearDown() {
+        if ( cluster != null ) {
+            cluster.shutdown();
+        }
+    }
+
+    @Test
+    public void testBroadcastReachesPeersOnly() throws Exception {
+        cluster = new LocalCluster();
+        final List<String> received = new CopyOnWriteArrayList<String>();
+
+        final LocalClusterService node1 = node( "node1", received );
+        node( "node2", received );
+        node( "node3", received );
+
+        node1.broadcast( "service", PING, Collections.singletonMap( "key", "value" ) );
+
+        assertThat( cluster.awaitIdle( 5, TimeUnit.SECONDS ) ).isTrue();
+        assertThat( received ).hasSize( 2 ).contains( "node2", "node3" );
+    }
+
+    @Test
+    public void testBroadcastAndWaitGetsEveryReply() throws Exception {
+        cluster = new LocalCluster( 5, 0 );
+        final List<String> received = new CopyOnWriteArrayList<String>();
+        final List<String> replies = new CopyOnWriteArrayList<String>();
+        final AtomicBoolean timedOut = new AtomicBoolean( false );
+
+        final LocalClusterService node1 = node( "node1", received );
+        node( "node2", received );
+        node( "node3", received );
+
+        node1.broadcastAndWait( "service", PING, Collections.<String, String>emptyMap(), 5000, new AsyncCallback() {
+            @Override
+            public void onTimeOut() {
+                timedOut.set( true );
+            }
+
+            @Override
+            public void onReply( final MessageType type,
+                                 final Map<String, String> content ) {
+                assertThat( type ).isEqualTo( PONG );
+                replies.add( content.get( "from" ) );
+            }
+        } );
+
+        assertThat( timedOut.get() ).isFalse();
+        assertThat( replies ).hasSize( 2 ).contains( "node2", "node3" );
+    }
+
+    @Test
+    public void testLostMessagesTimeOut() throws Exception {
+        cluster = new LocalCluster( 0, 1 );
+        final List<String> received = new CopyOnWriteArrayList<String>();
+        final AtomicBoolean timedOut = new AtomicBoolean( false );
+
+        final LocalClusterService node1 = node( "node1", received );
+        node( "node2", received );
+
+        node1.broadcastAndWait( "service", PING, Collections.<String, String>emptyMap(), 100, new AsyncCallback() {
+            @Override
+            public void onTimeOut() {
+                timedOut.set( true );
+            }
+
+            @Override
+            public void onReply( final MessageType type,
+                                 final Map<String, String> content ) {
+            }
+        } );
+
+        assertThat( timedOut.get() ).isTrue();
+        assertThat( received ).isEmpty();
+        assertThat( cluster.getDroppedMessages() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void testLockIsExclusiveAcrossNodes() throws Exception {
+        cluster = new LocalCluster();
+        final List<String> received = new CopyOnWriteArrayList<String>();
+
+        final LocalClusterService node1 = node( "node1", received );
+        final LocalClusterService node2 = node( "node2", received );
+
+        final CountDownLatch locked = new CountDownLatch( 1 );
+        final AtomicBoolean acquiredWhileHeld = new AtomicBoolean( false );
+
+        node1.lock( "repo" );
+        final Thread other = new Thread() {
+            @Override
+            public void run() {
+                node2.lock( "repo" );
+                acquiredWhileHeld.set( locked.getCount() > 0 );
+                node2.unlock( "repo" );
+            }
+        };
+        other.start();
+
+        Thread.sleep( 100 );
+        locked.countDown();
+        node1.unlock( "repo" );
+        other.join( 5000 );
+
+        assertThat( acquiredWhileHeld.get() ).isFalse();
+    }
+
+    private LocalClusterService node( final String name,
+                                      final List<String> received ) {
+        final LocalClusterService node = new LocalClusterService( cluster, name, new MessageHandlerResolver() {
+            @Override
+            public String getServiceId() {
+                return "service";
+            }
+
+            @Override
+            public MessageHandler resolveHandler( final String serviceId,
+                                                  final MessageType type ) {
+                return new MessageHandler() {
+                    @Override
+                    public Pair<MessageType, Map<String, String>> handleMessage( final MessageType type,
+                                                                                 final Map<String, String> content ) {
+                        received.add( name );
+                        return Pair.newPair( PONG, Collections.singletonMap( "from", name ) );
+                    }
+                };
+            }
+        } );
+        node.start();
+        return node;
+    }
+}
@@ -21,42 +21,43 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Queue;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.java.nio.IOException;
 import org.uberfire.java.nio.base.FileSystemId;
+import org.uberfire.java.nio.base.FileSystemRefsAware;
 import org.uberfire.java.nio.base.FileSystemState;
 import org.uberfire.java.nio.base.FileSystemStateAware;
 import org.uberfire.java.nio.base.options.CommentedOption;
-import org.uberfire.java.nio.file.ClosedWatchServiceException;
 import org.uberfire.java.nio.file.FileStore;
 import org.uberfire.java.nio.file.FileSystem;
-import org.uberfire.java.nio.file.InterruptedException;
 import org.uberfire.java.nio.file.InvalidPathException;
 import org.uberfire.java.nio.file.Path;
 import org.uberfire.java.nio.file.PathMatcher;
 import org.uberfire.java.nio.file.PatternSyntaxException;
 import org.uberfire.java.nio.file.WatchEvent;
-import org.uberfire.java.nio.file.WatchKey;
 import org.uberfire.java.nio.file.WatchService;
-import org.uberfire.java.nio.file.Watchable;
 import org.uberfire.java.nio.file.attribute.UserPrincipalLookupService;
 import org.uberfire.java.nio.file.spi.FileSystemProvider;
+import org.uberfire.java.nio.fs.jgit.util.PathChangeIndex;
 
 import static java.util.Arrays.*;
 import static java.util.Collections.*;
@@ -66,7 +67,8 @@ import static org.uberfire.java.nio.fs.jgit.util.JGitUtil.*;
 
 public class JGitFileSystem implements FileSystem,
                                        FileSystemId,
-                                       FileSystemStateAware {
+                                       FileSystemStateAware,
+                                       FileSystemRefsAware {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( JGitFileSystem.class );
 
@@ -80,9 +82,10 @@ public class JGitFileSystem implements FileSystem,
     private final FileStore fileStore;
     private final String name;
     private final CredentialsProvider credential;
-    private final Map<WatchService, Queue<WatchKey>> events = new ConcurrentHashMap<WatchService, Queue<WatchKey>>();
-    private final Collection<WatchService> watchServices = new ArrayList<WatchService>();
+    private final Collection<JGitWatchService> watchServices = new CopyOnWriteArrayList<JGitWatchService>();
     private final AtomicInteger numberOfCommitsSinceLastGC = new AtomicInteger( 0 );
+    private final ConcurrentMap<String, ReentrantLock> branchLocks = new ConcurrentHashMap<String, ReentrantLock>();
+    private final PathChangeIndex pathChangeIndex;
 
     private FileSystemState state = FileSystemState.NORMAL;
     private CommitInfo batchCommitInfo = null;
@@ -108,6 +111,7 @@ public class JGitFileSystem implements FileSystem,
         this.credential = checkNotNull( "credential", credential );
         this.listMode = listMode;
         this.fileStore = new JGitFileStore( gitRepo.getRepository() );
+        this.pathChangeIndex = new PathChangeIndex( gitRepo.getRepository() );
         if ( fullHostNames != null && !fullHostNames.isEmpty() ) {
             final StringBuilder sb = new StringBuilder();
             final Iterator<Map.Entry<String, String>> iterator = fullHostNames.entrySet().iterator();
@@ -137,6 +141,10 @@ public class JGitFileSystem implements FileSystem,
         return gitRepo;
     }
 
+    public PathChangeIndex getPathChangeIndex() {
+        return pathChangeIndex;
+    }
+
     public CredentialsProvider getCredential() {
         return credential;
     }
@@ -284,60 +292,15 @@ public class JGitFileSystem implements FileSystem,
     public WatchService newWatchService()
             throws UnsupportedOperationException, IOException {
         checkClosed();
-        final WatchService ws = new WatchService() {
-            private boolean wsClose = false;
-
-            @Override
-            public WatchKey poll() throws ClosedWatchServiceException {
-                return events.get( this ).poll();
-            }
-
-            @Override
-            public WatchKey poll( long timeout,
-                                  TimeUnit unit ) throws ClosedWatchServiceException, org.uberfire.java.nio.file.InterruptedException {
-                return events.get( this ).poll();
-            }
-
-            @Override
-            public synchronized WatchKey take() throws ClosedWatchServiceException, InterruptedException {
-                while ( true ) {
-                    if ( wsClose || isClosed ) {
-                        throw new ClosedWatchServiceException();
-                    } else if ( events.get( this ).size() > 0 ) {
-                        return events.get( this ).poll();
-                    } else {
-                        try {
-                            this.wait();
-                        } catch ( final java.lang.InterruptedException e ) {
-                        }
-                    }
-                }
-            }
-
-            @Override
-            public boolean isClose() {
-                return isClosed;
-            }
-
-            @Override
-            public synchronized void close() throws IOException {
-                wsClose = true;
-                notifyAll();
-                watchServices.remove( this );
-            }
-
-            @Override
-            public String toString() {
-                return "WatchService{" +
-                        "FileSystem=" + JGitFileSystem.this.toString() +
-                        '}';
-            }
-        };
-        events.put( ws, new ConcurrentLinkedQueue<WatchKey>() );
+        final JGitWatchService ws = new JGitWatchService( this, provider.getWatchQueueCapacity() );
         watchServices.add( ws );
         return ws;
     }
 
+    void onCloseWatchService( final JGitWatchService ws ) {
+        watchServices.remove( ws );
+    }
+
     @Override
     public void close() throws IOException {
         if ( isClosed ) {
@@ -355,7 +318,6 @@ public class JGitFileSystem implements FileSystem,
                 }
             }
             watchServices.clear();
-            events.clear();
         } catch ( final Exception ex ) {
             LOGGER.error( "Error during close of WatchServices [" + toString() + "]", ex );
         } finally {
@@ -416,43 +378,8 @@ public class JGitFileSystem implements FileSystem,
 
     public void publishEvents( final Path watchable,
                                final List<WatchEvent<?>> elist ) {
-        if ( this.events.isEmpty() ) {
-            return;
-        }
-
-        final WatchKey wk = new WatchKey() {
-
-            @Override
-            public boolean isValid() {
-                return true;
-            }
-
-            @Override
-            public List<WatchEvent<?>> pollEvents() {
-                return new ArrayList<WatchEvent<?>>( elist );
-            }
-
-            @Override
-            public boolean reset() {
-                return isOpen();
-            }
-
-            @Override
-            public void cancel() {
-            }
-
-            @Override
-            public Watchable watchable() {
-                return watchable;
-            }
-        };
-
-        for ( final Map.Entry<WatchService, Queue<WatchKey>> watchServiceQueueEntry : events.entrySet() ) {
-            watchServiceQueueEntry.getValue().add( wk );
-            final WatchService ws = watchServiceQueueEntry.getKey();
-            synchronized ( ws ) {
-                ws.notifyAll();
-            }
+        for ( final JGitWatchService ws : watchServices ) {
+            ws.publish( watchable, elist );
         }
     }
 
@@ -532,8 +459,56 @@ public class JGitFileSystem implements FileSystem,
         return numberOfCommitsSinceLastGC.get();
     }
 
+    /**
+     * Returns the lock that serializes commits on the given branch. Commits on different branches, or on different
+     * file systems, don't contend with each other.
+     */
+    Lock getBranchLock( final String branchName ) {
+        checkNotEmpty( "branchName", branchName );
+
+        final ReentrantLock lock = branchLocks.get( branchName );
+        if ( lock != null ) {
+            return lock;
+        }
+
+        final ReentrantLock newLock = new ReentrantLock( true );
+        final ReentrantLock existingLock = branchLocks.putIfAbsent( branchName, newLock );
+
+        return existingLock != null ? existingLock : newLock;
+    }
+
+    /**
+     * Returns true while this file system is on batch mode or has a commit in progress on any branch.
+     */
+    boolean isBusy() {
+        if ( isOnBatch() ) {
+            return true;
+        }
+        for ( final ReentrantLock lock : branchLocks.values() ) {
+            if ( lock.isLocked() ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public FileSystemState getState() {
         return state;
     }
+
+    @Override
+    public Map<String, String> getRefs() {
+        try {
+            final Map<String, String> result = new LinkedHashMap<String, String>();
+            for ( final Ref ref : gitRepo.getRepository().getRefDatabase().getRefs( Constants.R_HEADS ).values() ) {
+                if ( ref.getObjectId() != null ) {
+                    result.put( ref.getName().substring( Constants.R_HEADS.length() ), ref.getObjectId().name() );
+                }
+            }
+            return result;
+        } catch ( final java.io.IOException e ) {
+            throw new IOException( e );
+        }
+    }
 }
@@ -18,9 +18,7 @@ package org.uberfire.java.nio.fs.jgit;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FilenameFilter;
-import java.io.FilterOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
@@ -43,8 +41,10 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.Lock;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
@@ -55,6 +55,7 @@ import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.internal.storage.file.WindowCache;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.storage.file.WindowCacheConfig;
@@ -80,9 +81,11 @@ import org.uberfire.commons.data.Pair;
 import org.uberfire.commons.message.MessageType;
 import org.uberfire.java.nio.EncodingUtil;
 import org.uberfire.java.nio.IOException;
+import org.uberfire.java.nio.base.AbortableOutputStream;
 import org.uberfire.java.nio.base.AbstractPath;
 import org.uberfire.java.nio.base.BasicFileAttributesImpl;
 import org.uberfire.java.nio.base.ExtendedAttributeView;
+import org.uberfire.java.nio.base.FileSystemRefsUtil;
 import org.uberfire.java.nio.base.FileSystemState;
 import org.uberfire.java.nio.base.SeekableByteChannelFileBasedImpl;
 import org.uberfire.java.nio.base.WatchContext;
@@ -127,6 +130,8 @@ import org.uberfire.java.nio.fs.jgit.daemon.ssh.BaseGitCommand;
 import org.uberfire.java.nio.fs.jgit.daemon.ssh.GitSSHService;
 import org.uberfire.java.nio.fs.jgit.util.CommitContent;
 import org.uberfire.java.nio.fs.jgit.util.CopyCommitContent;
+import org.uberfire.java.nio.fs.jgit.util.BufferedCommitContent;
+import org.uberfire.java.nio.fs.jgit.util.ContentBuffer;
 import org.uberfire.java.nio.fs.jgit.util.DefaultCommitContent;
 import org.uberfire.java.nio.fs.jgit.util.JGitUtil;
 import org.uberfire.java.nio.fs.jgit.util.JGitUtil.*;
@@ -177,10 +182,22 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
     public static final String SSH_DEFAULT_ENABLED = "true";
     public static final String SSH_DEFAULT_PORT = "8001";
     public static final String DEFAULT_COMMIT_LIMIT_TO_GC = "20";
+    public static final String DEFAULT_GC_THREADS = "1";
+    public static final String DEFAULT_GC_LOOSE_OBJECTS_LIMIT = "500";
+    public static final String DEFAULT_GC_PACK_FILES_LIMIT = "50";
+    public static final String DEFAULT_GC_INTERVAL = "600";
+    public static final String DEFAULT_GC_MIN_INTERVAL = "60";
+    public static final String DEFAULT_WRITE_BUFFER_THRESHOLD = "1048576";
+    public static final String DEFAULT_STREAM_FILE_THRESHOLD = "1048576";
+    public static final String DEFAULT_WATCH_QUEUE_SIZE = "10000";
 
     private File gitReposParentDir;
 
     private int commitLimit;
+    private JGitMaintenanceScheduler maintenanceScheduler;
+    private int writeBufferThreshold;
+    private int watchQueueCapacity;
+    private WindowCacheConfig windowCacheConfig;
     private boolean daemonEnabled;
     private int daemonPort;
     private String daemonHostAddr;
@@ -203,7 +220,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
 
     private boolean isDefault;
 
-    private final Map<JGitFileSystem, Map<String, NotificationModel>> oldHeadsOfPendingDiffs = new HashMap<JGitFileSystem, Map<String, NotificationModel>>();
+    private final ConcurrentMap<JGitFileSystem, Map<String, NotificationModel>> oldHeadsOfPendingDiffs = new ConcurrentHashMap<JGitFileSystem, Map<String, NotificationModel>>();
 
     private Daemon daemonService = null;
     private GitSSHService gitSSHService = null;
@@ -228,6 +245,14 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         final ConfigProperty sshCertDirProp = config.get( "org.uberfire.nio.git.ssh.cert.dir", currentDirectory );
         final ConfigProperty sshHostPortProp = config.get( "org.uberfire.nio.git.ssh.hostport", SSH_DEFAULT_PORT );
         final ConfigProperty commitLimitProp = config.get( "org.uberfire.nio.git.gc.limit", DEFAULT_COMMIT_LIMIT_TO_GC );
+        final ConfigProperty gcThreadsProp = config.get( "org.uberfire.nio.git.gc.threads", DEFAULT_GC_THREADS );
+        final ConfigProperty gcLooseObjectsProp = config.get( "org.uberfire.nio.git.gc.loose.objects", DEFAULT_GC_LOOSE_OBJECTS_LIMIT );
+        final ConfigProperty gcPackFilesProp = config.get( "org.uberfire.nio.git.gc.pack.files", DEFAULT_GC_PACK_FILES_LIMIT );
+        final ConfigProperty gcIntervalProp = config.get( "org.uberfire.nio.git.gc.interval", DEFAULT_GC_INTERVAL );
+        final ConfigProperty gcMinIntervalProp = config.get( "org.uberfire.nio.git.gc.min.interval", DEFAULT_GC_MIN_INTERVAL );
+        final ConfigProperty writeBufferThresholdProp = config.get( "org.uberfire.nio.git.write.buffer.threshold", DEFAULT_WRITE_BUFFER_THRESHOLD );
+        final ConfigProperty streamFileThresholdProp = config.get( "org.uberfire.nio.git.stream.threshold", DEFAULT_STREAM_FILE_THRESHOLD );
+        final ConfigProperty watchQueueSizeProp = config.get( "org.uberfire.nio.git.watch.queue.size", DEFAULT_WATCH_QUEUE_SIZE );
 
         if ( LOG.isDebugEnabled() ) {
             LOG.debug( config.getConfigurationSummary( "Summary of JGit configuration:" ) );
@@ -235,6 +260,19 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
 
         gitReposParentDir = new File( bareReposDirProp.getValue(), REPOSITORIES_CONTAINER_DIR );
         commitLimit = commitLimitProp.getIntValue();
+        maintenanceScheduler = new JGitMaintenanceScheduler( this,
+                                                             gcThreadsProp.getIntValue(),
+                                                             gcLooseObjectsProp.getIntValue(),
+                                                             gcPackFilesProp.getIntValue(),
+                                                             gcIntervalProp.getIntValue(),
+                                                             gcMinIntervalProp.getIntValue() );
+        writeBufferThreshold = writeBufferThresholdProp.getIntValue();
+        watchQueueCapacity = watchQueueSizeProp.getIntValue();
+
+        // blobs bigger than this are streamed from the object database instead of being loaded on the heap
+        windowCacheConfig = new WindowCacheConfig();
+        windowCacheConfig.setStreamFileThreshold( streamFileThresholdProp.getIntValue() );
+        windowCacheConfig.install();
 
         daemonEnabled = enabledProp.getBooleanValue();
         if ( daemonEnabled ) {
@@ -254,6 +292,13 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         }
     }
 
+    /**
+     * Events each watch service keeps pending before it reports an overflow instead.
+     */
+    int getWatchQueueCapacity() {
+        return watchQueueCapacity;
+    }
+
     public void onCloseFileSystem( final JGitFileSystem fileSystem ) {
         closedFileSystems.add( fileSystem );
         oldHeadsOfPendingDiffs.remove( fileSystem );
@@ -270,6 +315,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
 
         repoIndex.remove( fileSystem.gitRepo().getRepository() );
         clusterMap.remove( fileSystem.gitRepo().getRepository() );
+        maintenanceScheduler.forget( fileSystem );
     }
 
     public Set<JGitFileSystem> getOpenFileSystems() {
@@ -386,11 +432,10 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
                     if ( repoDir.isDirectory() ) {
                         final String name = repoDir.getName().substring( 0, repoDir.getName().indexOf( DOT_GIT_EXT ) );
                         final JGitFileSystem fs = new JGitFileSystem( this, fullHostNames, newRepository( repoDir, true ), name, ALL, buildCredential( null ) );
-                        LOG.debug( "Running GIT GC on '" + name + "'" );
-                        JGitUtil.gc( fs.gitRepo() );
                         LOG.debug( "Registering existing GIT filesystem '" + name + "' at " + repoDir );
                         fileSystems.put( name, fs );
                         repoIndex.put( fs.gitRepo().getRepository(), fs );
+                        maintenanceScheduler.schedule( fs );
                     } else {
                         LOG.debug( "Not registering " + repoDir + " as a GIT filesystem because it is not a directory" );
                     }
@@ -417,7 +462,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
                         public void onPreReceive( final ReceivePack rp,
                                                   final Collection<ReceiveCommand> commands ) {
                             if ( clusterService != null ) {
-                                clusterService.lock();
+                                clusterService.lock( fs.id() );
                             }
 
                             for ( final ReceiveCommand command : commands ) {
@@ -458,10 +503,11 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
                                                               put( "fs_scheme", "git" );
                                                               put( "fs_id", fs.id() );
                                                               put( "fs_uri", fs.toString() );
+                                                              put( "fs_refs", FileSystemRefsUtil.toString( fs.getRefs() ) );
                                                           }}
                                                         );
 
-                                clusterService.unlock();
+                                clusterService.unlock( fs.id() );
                             }
                         }
                     } );
@@ -502,9 +548,9 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
     }
 
     /**
-     * Closes and disposes all open filesystems and stops the Git and SSH daemons if they are running. This filesystem
-     * provider can be reactivated by attempting to open a new filesystem, by creating a new filesystem, or by calling
-     * {@link #rescanForExistingRepositories()}.
+     * Closes and disposes all open filesystems, stops the Git and SSH daemons if they are running and stops the
+     * background repository maintenance. This filesystem provider can be reactivated by attempting to open a new
+     * filesystem, by creating a new filesystem, or by calling {@link #rescanForExistingRepositories()}.
      */
     public void shutdown() {
         for ( JGitFileSystem fs : getOpenFileSystems() ) {
@@ -512,6 +558,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         }
         shutdownSSH();
         forceStopDaemon();
+        maintenanceScheduler.shutdown();
     }
 
     /**
@@ -631,6 +678,60 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         return fs;
     }
 
+    /**
+     * Brings the given branches to the given heads: branches already there are left alone, commits already in the
+     * local object database are just pointed to, and only the branches still missing their commit are fetched from
+     * the origin.
+     */
+    private void syncRefs( final JGitFileSystem fs,
+                           final String origin,
+                           final Map<String, String> refs ) throws java.io.IOException, InvalidRemoteException {
+        final Repository repo = fs.gitRepo().getRepository();
+        final Map<String, ObjectId> changed = new HashMap<String, ObjectId>();
+        final List<String> missing = new ArrayList<String>();
+
+        for ( final Map.Entry<String, String> ref : refs.entrySet() ) {
+            final ObjectId newHead = ObjectId.fromString( ref.getValue() );
+            final Ref localRef = repo.getRef( R_HEADS + ref.getKey() );
+            if ( localRef != null && newHead.equals( localRef.getObjectId() ) ) {
+                continue;
+            }
+            changed.put( ref.getKey(), newHead );
+            if ( !repo.hasObject( newHead ) ) {
+                missing.add( ref.getKey() );
+            }
+        }
+
+        if ( changed.isEmpty() ) {
+            return;
+        }
+
+        if ( !missing.isEmpty() ) {
+            fetchBranches( fs.gitRepo(), fs.getCredential(), origin, missing );
+        }
+
+        for ( final Map.Entry<String, ObjectId> branch : changed.entrySet() ) {
+            if ( !repo.hasObject( branch.getValue() ) ) {
+                LOG.warn( "Commit " + branch.getValue().name() + " of branch " + branch.getKey() + " not found on " + origin + ", skipping it." );
+                continue;
+            }
+
+            final Lock branchLock = fs.getBranchLock( branch.getKey() );
+            branchLock.lock();
+            try {
+                final ObjectId oldHead = JGitUtil.getTreeRefObjectId( repo, branch.getKey() );
+                final RefUpdate update = repo.updateRef( R_HEADS + branch.getKey() );
+                update.setNewObjectId( branch.getValue() );
+                update.setForceUpdate( true );
+                update.update();
+                final ObjectId newHead = JGitUtil.getTreeRefObjectId( repo, branch.getKey() );
+                notifyDiffs( fs, branch.getKey(), "<system>", "<system>", "", oldHead, newHead );
+            } finally {
+                branchLock.unlock();
+            }
+        }
+    }
+
     private CommentedOption setupOp( final Map<String, ?> env ) {
         return null;
     }
@@ -650,12 +751,17 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
 
         if ( hasSyncFlag( uri ) ) {
             try {
-                final String treeRef = "master";
-                final ObjectId oldHead = JGitUtil.getTreeRefObjectId( fileSystem.gitRepo().getRepository(), treeRef );
                 final Map<String, String> params = getQueryParams( uri );
-                syncRepository( fileSystem.gitRepo(), fileSystem.getCredential(), params.get( "sync" ), hasForceFlag( uri ) );
-                final ObjectId newHead = JGitUtil.getTreeRefObjectId( fileSystem.gitRepo().getRepository(), treeRef );
-                notifyDiffs( fileSystem, treeRef, "<system>", "<system>", "", oldHead, newHead );
+                final Map<String, String> refs = FileSystemRefsUtil.fromString( params.get( "refs" ) );
+                if ( refs != null ) {
+                    syncRefs( fileSystem, params.get( "sync" ), refs );
+                } else {
+                    final String treeRef = "master";
+                    final ObjectId oldHead = JGitUtil.getTreeRefObjectId( fileSystem.gitRepo().getRepository(), treeRef );
+                    syncRepository( fileSystem.gitRepo(), fileSystem.getCredential(), params.get( "sync" ), hasForceFlag( uri ) );
+                    final ObjectId newHead = JGitUtil.getTreeRefObjectId( fileSystem.gitRepo().getRepository(), treeRef );
+                    notifyDiffs( fileSystem, treeRef, "<system>", "<system>", "", oldHead, newHead );
+                }
             } catch ( final Exception ex ) {
                 throw new IOException( ex );
             }
@@ -713,21 +819,47 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
             throw new IOException();
         }
 
-        try {
-            final File file = File.createTempFile( "gitz", "woot" );
-            return new FilterOutputStream( new FileOutputStream( file ) ) {
-                @Override
-                public void close() throws java.io.IOException {
-                    super.close();
+        final ContentBuffer buffer = new ContentBuffer( writeBufferThreshold );
+        final OutputStream out = buffer.newOutputStream();
+        return new AbortableOutputStream() {
+            private boolean closed = false;
+
+            @Override
+            public void write( final int b ) throws java.io.IOException {
+                out.write( b );
+            }
+
+            @Override
+            public void write( final byte[] b,
+                               final int off,
+                               final int len ) throws java.io.IOException {
+                out.write( b, off, len );
+            }
 
-                    commit( gPath, buildCommitInfo( "{" + toPathImpl( path ).getPath() + "}", Arrays.asList( options ) ), new DefaultCommitContent( new HashMap<String, File>() {{
-                        put( gPath.getPath(), file );
+            @Override
+            public void close() throws java.io.IOException {
+                if ( closed ) {
+                    return;
+                }
+                closed = true;
+                try {
+                    commit( gPath, buildCommitInfo( "{" + toPathImpl( path ).getPath() + "}", Arrays.asList( options ) ), new BufferedCommitContent( new HashMap<String, ContentBuffer>() {{
+                        put( gPath.getPath(), buffer );
                     }} ) );
+                } finally {
+                    buffer.dispose();
                 }
-            };
-        } catch ( java.io.IOException e ) {
-            throw new IOException( e );
-        }
+            }
+
+            @Override
+            public void abort() {
+                if ( closed ) {
+                    return;
+                }
+                closed = true;
+                buffer.dispose();
+            }
+        };
     }
 
     private CommitInfo buildCommitInfo( final String defaultMessage,
@@ -817,34 +949,77 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
     private SeekableByteChannel createANewByteChannel( final Path path,
                                                        final Set<? extends OpenOption> options,
                                                        final JGitPathImpl gPath,
-                                                       final FileAttribute<?>[] attrs ) throws java.io.IOException {
-        final File file = File.createTempFile( "gitz", "woot" );
+                                                       final FileAttribute<?>[] attrs ) {
+        final ContentBuffer buffer = new ContentBuffer( writeBufferThreshold );
+        final SeekableByteChannel channel = buffer.newByteChannel();
+
+        return new SeekableByteChannel() {
+            @Override
+            public long position() throws IOException {
+                return channel.position();
+            }
+
+            @Override
+            public SeekableByteChannel position( final long newPosition ) throws IOException {
+                channel.position( newPosition );
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+
+            @Override
+            public SeekableByteChannel truncate( final long size ) throws IOException {
+                channel.truncate( size );
+                return this;
+            }
+
+            @Override
+            public int read( final ByteBuffer dst ) throws java.io.IOException {
+                return channel.read( dst );
+            }
+
+            @Override
+            public int write( final ByteBuffer src ) throws java.io.IOException {
+                return channel.write( src );
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
 
-        return new SeekableByteChannelFileBasedImpl( new RandomAccessFile( file, "rw" ).getChannel() ) {
             @Override
             public void close() throws java.io.IOException {
-                super.close();
+                if ( !channel.isOpen() ) {
+                    return;
+                }
+                channel.close();
 
-                File tempDot = null;
-                final boolean hasDotContent;
+                final ContentBuffer dotBuffer;
                 if ( options != null && options.contains( new DotFileOption() ) ) {
-                    deleteIfExists( dot( path ), extractCommentedOption( options ) );
-                    tempDot = File.createTempFile( "meta", "dot" );
-                    hasDotContent = buildDotFile( path, new FileOutputStream( tempDot ), attrs );
+                    dotBuffer = new ContentBuffer( writeBufferThreshold );
                 } else {
-                    hasDotContent = false;
+                    dotBuffer = null;
                 }
-
-                final File dotfile = tempDot;
-
-                commit( gPath, buildCommitInfo( "{" + toPathImpl( path ).getPath() + "}", options ), new DefaultCommitContent( new HashMap<String, File>() {{
-                    put( gPath.getPath(), file );
-                    if ( hasDotContent ) {
-                        put( toPathImpl( dot( gPath ) ).getPath(), dotfile );
+                try {
+                    final boolean hasDotContent = dotBuffer != null && buildDotFile( path, dotBuffer.newOutputStream(), attrs );
+                    commit( gPath, buildCommitInfo( "{" + toPathImpl( path ).getPath() + "}", options ), new BufferedCommitContent( new HashMap<String, ContentBuffer>() {{
+                        put( gPath.getPath(), buffer );
+                        if ( dotBuffer != null ) {
+                            // the former dot file is replaced, or deleted, by the same commit
+                            put( toPathImpl( dot( gPath ) ).getPath(), hasDotContent ? dotBuffer : null );
+                        }
+                    }} ) );
+                } finally {
+                    buffer.dispose();
+                    if ( dotBuffer != null ) {
+                        dotBuffer.dispose();
                     }
-                }} ) );
+                }
             }
-
         };
     }
 
@@ -1036,7 +1211,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         try {
             if ( System.getProperty( "os.name" ).toLowerCase().contains( "windows" ) ) {
                 //this operation forces a cache clean freeing any lock -> windows only issue!
-                WindowCache.reconfigure( new WindowCacheConfig() );
+                WindowCache.reconfigure( windowCacheConfig );
             }
             FileUtils.delete( gitDir, FileUtils.RECURSIVE | FileUtils.RETRY );
             return true;
@@ -1094,6 +1269,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         }
 
         JGitUtil.deleteBranch( path.getFileSystem().gitRepo(), branch );
+        path.getFileSystem().getPathChangeIndex().forget( path.getRefTree() );
     }
 
     @Override
@@ -1123,6 +1299,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         }
 
         JGitUtil.deleteBranch( path.getFileSystem().gitRepo(), branch );
+        path.getFileSystem().getPathChangeIndex().forget( path.getRefTree() );
         return true;
     }
 
@@ -1682,7 +1859,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
 
             if ( isOriginalStateBatch && !fileSystem.isOnBatch() ) {
                 fileSystem.setBatchCommitInfo( null );
-                notifyAllDiffs();
+                notifyPendingDiffs( fileSystem );
             }
             fileSystem.setHadCommitOnBatchState( false );
             return;
@@ -1839,9 +2016,21 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         }} ) );
     }
 
-    private synchronized void commit( final JGitPathImpl path,
-                                      final CommitInfo commitInfo,
-                                      final CommitContent commitContent ) {
+    private void commit( final JGitPathImpl path,
+                         final CommitInfo commitInfo,
+                         final CommitContent commitContent ) {
+        final Lock branchLock = path.getFileSystem().getBranchLock( path.getRefTree() );
+        branchLock.lock();
+        try {
+            doCommit( path, commitInfo, commitContent );
+        } finally {
+            branchLock.unlock();
+        }
+    }
+
+    private void doCommit( final JGitPathImpl path,
+                           final CommitInfo commitInfo,
+                           final CommitContent commitContent ) {
         final Git git = path.getFileSystem().gitRepo();
         final String branchName = path.getRefTree();
         JGitFileSystem fileSystem = path.getFileSystem();
@@ -1860,8 +2049,8 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         if ( hasCommit ) {
             int value = fileSystem.incrementAndGetCommitCount();
             if ( value >= commitLimit ) {
-                JGitUtil.gc( git );
                 fileSystem.resetCommitCount();
+                maintenanceScheduler.schedule( fileSystem );
             }
         }
 
@@ -1872,14 +2061,14 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         } else if ( !oldHeadsOfPendingDiffs.containsKey( path.getFileSystem() ) ||
                 !oldHeadsOfPendingDiffs.get( path.getFileSystem() ).containsKey( branchName ) ) {
 
-            if ( !oldHeadsOfPendingDiffs.containsKey( path.getFileSystem() ) ) {
-                oldHeadsOfPendingDiffs.put( path.getFileSystem(), new HashMap<String, NotificationModel>() );
-            }
+            final Map<String, NotificationModel> newPendingDiffs = new ConcurrentHashMap<String, NotificationModel>();
+            final Map<String, NotificationModel> existingPendingDiffs = oldHeadsOfPendingDiffs.putIfAbsent( path.getFileSystem(), newPendingDiffs );
+            final Map<String, NotificationModel> pendingDiffs = existingPendingDiffs != null ? existingPendingDiffs : newPendingDiffs;
 
             if ( fileSystem.getBatchCommitInfo() != null ) {
-                oldHeadsOfPendingDiffs.get( path.getFileSystem() ).put( branchName, new NotificationModel( oldHead, fileSystem.getBatchCommitInfo().getSessionId(), fileSystem.getBatchCommitInfo().getName(), fileSystem.getBatchCommitInfo().getMessage() ) );
+                pendingDiffs.put( branchName, new NotificationModel( oldHead, fileSystem.getBatchCommitInfo().getSessionId(), fileSystem.getBatchCommitInfo().getName(), fileSystem.getBatchCommitInfo().getMessage() ) );
             } else {
-                oldHeadsOfPendingDiffs.get( path.getFileSystem() ).put( branchName, new NotificationModel( oldHead, commitInfo.getSessionId(), commitInfo.getName(), commitInfo.getMessage() ) );
+                pendingDiffs.put( branchName, new NotificationModel( oldHead, commitInfo.getSessionId(), commitInfo.getName(), commitInfo.getMessage() ) );
             }
         }
 
@@ -1888,20 +2077,21 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider {
         }
     }
 
-    private void notifyAllDiffs() {
-        for ( Map.Entry<JGitFileSystem, Map<String, NotificationModel>> jGitFileSystemMapEntry : oldHeadsOfPendingDiffs.entrySet() ) {
-            for ( Map.Entry<String, NotificationModel> branchNameNotificationModelEntry : jGitFileSystemMapEntry.getValue().entrySet() ) {
-                final ObjectId newHead = JGitUtil.getTreeRefObjectId( jGitFileSystemMapEntry.getKey().gitRepo().getRepository(), branchNameNotificationModelEntry.getKey() );
-                notifyDiffs( jGitFileSystemMapEntry.getKey(),
-                             branchNameNotificationModelEntry.getKey(),
-                             branchNameNotificationModelEntry.getValue().getSessionId(),
-                             branchNameNotificationModelEntry.getValue().getUserName(),
-                             branchNameNotificationModelEntry.getValue().getMessage(),
-                             branchNameNotificationModelEntry.getValue().getOriginalHead(),
-                             newHead );
-            }
+    private void notifyPendingDiffs( final JGitFileSystem fileSystem ) {
+        final Map<String, NotificationModel> pendingDiffs = oldHeadsOfPendingDiffs.remove( fileSystem );
+        if ( pendingDiffs == null ) {
+            return;
+        }
+        for ( Map.Entry<String, NotificationModel> branchNameNotificationModelEntry : pendingDiffs.entrySet() ) {
+            final ObjectId newHead = JGitUtil.getTreeRefObjectId( fileSystem.gitRepo().getRepository(), branchNameNotificationModelEntry.getKey() );
+            notifyDiffs( fileSystem,
+                         branchNameNotificationModelEntry.getKey(),
+                         branchNameNotificationModelEntry.getValue().getSessionId(),
+                         branchNameNotificationModelEntry.getValue().getUserName(),
+                         branchNameNotificationModelEntry.getValue().getMessage(),
+                         branchNameNotificationModelEntry.getValue().getOriginalHead(),
+                         newHead );
         }
-        oldHeadsOfPendingDiffs.clear();
     }
 
     private void notifyDiffs( final JGitFileSystem fs,
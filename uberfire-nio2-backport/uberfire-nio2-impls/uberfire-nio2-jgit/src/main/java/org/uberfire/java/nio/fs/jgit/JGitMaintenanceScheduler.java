@@ -0,0 +1,190 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.uberfire.commons.validation.PortablePreconditions.*;
+
+/**
+ * Runs repository maintenance (repack and prune of loose objects) for {@link JGitFileSystem} instances on a small
+ * background pool, so it never runs on the thread of the request that triggered it.
+ * <p>
+ * A repository is only repacked when it got at least {@code looseObjectsLimit} new loose objects since the last run
+ * (or a tenth of its packed objects, whichever is bigger, so large repositories are repacked less often) or when it
+ * has more than {@code packFilesLimit} pack files. A repository that is in batch mode or has a commit in progress is
+ * retried later, and a repository is never repacked twice within {@code minIntervalMillis}.
+ */
+final class JGitMaintenanceScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger( JGitMaintenanceScheduler.class );
+
+    private static final long BUSY_RETRY_DELAY_SECONDS = 30;
+
+    private final JGitFileSystemProvider provider;
+    private final int threads;
+    private final int looseObjectsLimit;
+    private final int packFilesLimit;
+    private final long intervalSeconds;
+    private final long minIntervalMillis;
+
+    private final Set<JGitFileSystem> pending = Collections.newSetFromMap( new ConcurrentHashMap<JGitFileSystem, Boolean>() );
+    private final Map<JGitFileSystem, Long> lastRun = new ConcurrentHashMap<JGitFileSystem, Long>();
+    private final Map<JGitFileSystem, Long> looseObjectsAfterLastRun = new ConcurrentHashMap<JGitFileSystem, Long>();
+
+    private ScheduledExecutorService executor = null;
+
+    JGitMaintenanceScheduler( final JGitFileSystemProvider provider,
+                              final int threads,
+                              final int looseObjectsLimit,
+                              final int packFilesLimit,
+                              final long intervalSeconds,
+                              final long minIntervalSeconds ) {
+        this.provider = checkNotNull( "provider", provider );
+        this.threads = Math.max( 1, threads );
+        this.looseObjectsLimit = looseObjectsLimit;
+        this.packFilesLimit = packFilesLimit;
+        this.intervalSeconds = intervalSeconds;
+        this.minIntervalMillis = TimeUnit.SECONDS.toMillis( minIntervalSeconds );
+    }
+
+    /**
+     * Requests a maintenance check for the given file system. Does nothing if a check is already pending.
+     */
+    void schedule( final JGitFileSystem fs ) {
+        schedule( fs, 0 );
+    }
+
+    void forget( final JGitFileSystem fs ) {
+        pending.remove( fs );
+        lastRun.remove( fs );
+        looseObjectsAfterLastRun.remove( fs );
+    }
+
+    synchronized void shutdown() {
+        if ( executor != null ) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.clear();
+    }
+
+    private void schedule( final JGitFileSystem fs,
+                           final long delaySeconds ) {
+        if ( !pending.add( fs ) ) {
+            return;
+        }
+        try {
+            executor().schedule( new Runnable() {
+                @Override
+                public void run() {
+                    pending.remove( fs );
+                    maintain( fs );
+                }
+            }, delaySeconds, TimeUnit.SECONDS );
+        } catch ( final RejectedExecutionException ex ) {
+            pending.remove( fs );
+        }
+    }
+
+    private synchronized ScheduledExecutorService executor() {
+        if ( executor == null ) {
+            executor = new ScheduledThreadPoolExecutor( threads, new MaintenanceThreadFactory() );
+            if ( intervalSeconds > 0 ) {
+                executor.scheduleWithFixedDelay( new Runnable() {
+                    @Override
+                    public void run() {
+                        for ( final JGitFileSystem fs : provider.getOpenFileSystems() ) {
+                            schedule( fs );
+                        }
+                    }
+                }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS );
+            }
+        }
+        return executor;
+    }
+
+    void maintain( final JGitFileSystem fs ) {
+        if ( !fs.isOpen() ) {
+            return;
+        }
+        if ( fs.isBusy() ) {
+            schedule( fs, BUSY_RETRY_DELAY_SECONDS );
+            return;
+        }
+
+        final Long lastRunAt = lastRun.get( fs );
+        if ( lastRunAt != null && System.currentTimeMillis() - lastRunAt < minIntervalMillis ) {
+            return;
+        }
+
+        final Repository repository = fs.gitRepo().getRepository();
+        if ( !( repository instanceof FileRepository ) ) {
+            return;
+        }
+
+        try {
+            final GC gc = new GC( (FileRepository) repository );
+            final GC.RepoStatistics stats = gc.getStatistics();
+            final long looseObjectsThreshold = Math.max( looseObjectsLimit, stats.numberOfPackedObjects / 10 );
+            final Long _looseObjectsAfterLastRun = looseObjectsAfterLastRun.get( fs );
+            final long newLooseObjects = stats.numberOfLooseObjects - ( _looseObjectsAfterLastRun == null ? 0 : _looseObjectsAfterLastRun );
+
+            if ( newLooseObjects < looseObjectsThreshold && stats.numberOfPackFiles <= packFilesLimit ) {
+                return;
+            }
+
+            LOG.debug( "Running GIT GC on '" + fs.getName() + "' (" + stats.numberOfLooseObjects + " loose objects, " + stats.numberOfPackFiles + " pack files)" );
+            gc.repack();
+            gc.prune( Collections.<ObjectId>emptySet() );
+            lastRun.put( fs, System.currentTimeMillis() );
+            // recently written loose objects survive prune until they expire, don't count them again
+            looseObjectsAfterLastRun.put( fs, gc.getStatistics().numberOfLooseObjects );
+        } catch ( final Exception ex ) {
+            LOG.error( "GIT GC on '" + fs.getName() + "' failed", ex );
+        }
+    }
+
+    private static class MaintenanceThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger( 0 );
+
+        @Override
+        public Thread newThread( final Runnable r ) {
+            final Thread thread = new Thread( r, "jgit-maintenance-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            thread.setPriority( Thread.MIN_PRIORITY );
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.java.nio.IOException;
+import org.uberfire.java.nio.file.ClosedWatchServiceException;
+import org.uberfire.java.nio.file.InterruptedException;
+import org.uberfire.java.nio.file.StandardWatchEventKind;
+import org.uberfire.java.nio.file.WatchEvent;
+import org.uberfire.java.nio.file.WatchKey;
+import org.uberfire.java.nio.file.WatchService;
+import org.uberfire.java.nio.file.Watchable;
+
+/**
+ * Watch service of a {@link JGitFileSystem} that holds at most a given number of pending events.
+ * <p>
+ * Once a consumer falls that far behind, the events of a new key are dropped and counted instead in a single
+ * {@link StandardWatchEventKind#OVERFLOW} key per watchable, queued where the first loss happened; losses that follow
+ * before it's taken are added to that same key. Consumers getting an overflow should rescan what they watch, as with
+ * the JDK watch services. Each overflow is logged with the queue counters, which are also exposed for monitoring.
+ */
+public class JGitWatchService implements WatchService {
+
+    private static final Logger LOG = LoggerFactory.getLogger( JGitWatchService.class );
+
+    private final JGitFileSystem fileSystem;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final LinkedList<WatchKey> queue = new LinkedList<WatchKey>();
+    private final Map<Watchable, OverflowKey> pendingOverflows = new HashMap<Watchable, OverflowKey>();
+    private int queuedEvents = 0;
+    private boolean closed = false;
+
+    private int maxQueuedEvents = 0;
+    private long publishedEvents = 0;
+    private long overflowedEvents = 0;
+
+    JGitWatchService( final JGitFileSystem fileSystem,
+                      final int capacity ) {
+        this.fileSystem = fileSystem;
+        this.capacity = capacity;
+    }
+
+    void publish( final Watchable watchable,
+                  final List<WatchEvent<?>> events ) {
+        lock.lock();
+        try {
+            if ( closed ) {
+                return;
+            }
+            publishedEvents += events.size();
+
+            final OverflowKey pending = pendingOverflows.get( watchable );
+            if ( pending != null ) {
+                pending.count += events.size();
+                overflowedEvents += events.size();
+            } else if ( queuedEvents + events.size() > capacity ) {
+                final OverflowKey overflow = new OverflowKey( watchable, events.size() );
+                pendingOverflows.put( watchable, overflow );
+                queue.add( overflow );
+                overflowedEvents += events.size();
+                LOG.warn( "Watch queue of {} full ({} of {} events pending), dropping events of {}; {} of {} published events dropped so far.",
+                          new Object[]{ fileSystem.getName(), queuedEvents, capacity, watchable, overflowedEvents, publishedEvents } );
+            } else {
+                queue.add( new EventsKey( watchable, events ) );
+                queuedEvents += events.size();
+                maxQueuedEvents = Math.max( maxQueuedEvents, queuedEvents );
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public WatchKey poll() throws ClosedWatchServiceException {
+        lock.lock();
+        try {
+            checkOpen();
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public WatchKey poll( final long timeout,
+                          final TimeUnit unit ) throws ClosedWatchServiceException, InterruptedException {
+        long nanos = unit.toNanos( timeout );
+        lock.lock();
+        try {
+            while ( true ) {
+                checkOpen();
+                if ( !queue.isEmpty() ) {
+                    return next();
+                }
+                if ( nanos <= 0 ) {
+                    return null;
+                }
+                try {
+                    nanos = notEmpty.awaitNanos( nanos );
+                } catch ( final java.lang.InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public WatchKey take() throws ClosedWatchServiceException, InterruptedException {
+        lock.lock();
+        try {
+            while ( true ) {
+                checkOpen();
+                if ( !queue.isEmpty() ) {
+                    return next();
+                }
+                try {
+                    notEmpty.await();
+                } catch ( final java.lang.InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private WatchKey next() {
+        final WatchKey key = queue.poll();
+        if ( key instanceof OverflowKey ) {
+            pendingOverflows.remove( key.watchable() );
+        } else if ( key != null ) {
+            queuedEvents -= ( (EventsKey) key ).events.size();
+        }
+        return key;
+    }
+
+    private void checkOpen() {
+        if ( closed || !fileSystem.isOpen() ) {
+            throw new ClosedWatchServiceException();
+        }
+    }
+
+    @Override
+    public boolean isClose() {
+        return !fileSystem.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            queue.clear();
+            pendingOverflows.clear();
+            queuedEvents = 0;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        fileSystem.onCloseWatchService( this );
+    }
+
+    /**
+     * Events waiting to be taken, overflows excluded.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queuedEvents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        lock.lock();
+        try {
+            return maxQueuedEvents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getPublishedEvents() {
+        lock.lock();
+        try {
+            return publishedEvents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Events dropped and reported through overflow keys.
+     */
+    public long getOverflowedEvents() {
+        lock.lock();
+        try {
+            return overflowedEvents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WatchService{" +
+                "FileSystem=" + fileSystem.toString() +
+                '}';
+    }
+
+    private abstract class BaseKey implements WatchKey {
+
+        private final Watchable watchable;
+
+        BaseKey( final Watchable watchable ) {
+            this.watchable = watchable;
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+
+        @Override
+        public boolean reset() {
+            return fileSystem.isOpen();
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public Watchable watchable() {
+            return watchable;
+        }
+    }
+
+    private class EventsKey extends BaseKey {
+
+        private final List<WatchEvent<?>> events;
+
+        EventsKey( final Watchable watchable,
+                   final List<WatchEvent<?>> events ) {
+            super( watchable );
+            this.events = events;
+        }
+
+        @Override
+        public List<WatchEvent<?>> pollEvents() {
+            return new ArrayList<WatchEvent<?>>( events );
+        }
+    }
+
+    private class OverflowKey extends BaseKey {
+
+        // updated under the service lock until the key is taken
+        private volatile int count;
+
+        OverflowKey( final Watchable watchable,
+                     final int count ) {
+            super( watchable );
+            this.count = count;
+        }
+
+        @Override
+        public List<WatchEvent<?>> pollEvents() {
+            final int lost = count;
+            final List<WatchEvent<?>> result = new ArrayList<WatchEvent<?>>( 1 );
+            result.add( new WatchEvent<Object>() {
+                @Override
+                public Kind<Object> kind() {
+                    return StandardWatchEventKind.OVERFLOW;
+                }
+
+                @Override
+                public int count() {
+                    return lost;
+                }
+
+                @Override
+                public Object context() {
+                    return null;
+                }
+
+                @Override
+                public String toString() {
+                    return "WatchEvent{OVERFLOW, count=" + lost + '}';
+                }
+            } );
+            return result;
+        }
+    }
+}
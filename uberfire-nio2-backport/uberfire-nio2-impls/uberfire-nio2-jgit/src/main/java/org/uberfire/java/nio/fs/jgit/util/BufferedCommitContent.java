@@ -0,0 +1,20 @@
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.util.Map;
+
+/**
+ * Content of a commit held in {@link ContentBuffer}s; a null buffer deletes its path. The buffers stay owned by whoever
+ * created them, who disposes them once the commit is done.
+ */
+public class BufferedCommitContent implements CommitContent {
+
+    private final Map<String, ContentBuffer> content;
+
+    public BufferedCommitContent( final Map<String, ContentBuffer> content ) {
+        this.content = content;
+    }
+
+    public Map<String, ContentBuffer> getContent() {
+        return content;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.uberfire.java.nio.IOException;
+import org.uberfire.java.nio.channels.SeekableByteChannel;
+
+/**
+ * Holds the content of a file being written until it gets committed. Content is kept on the heap while it's smaller
+ * than the given threshold and is only spilled to a temporary file once it grows past it.
+ * <p>
+ * The buffer must be {@link #dispose() disposed} once its content was committed (or discarded), which also removes
+ * the temporary file if one was created.
+ */
+public final class ContentBuffer {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private final int threshold;
+
+    private byte[] buffer;
+    private int count = 0;
+
+    private File file = null;
+    private RandomAccessFile randomAccessFile = null;
+    private FileChannel fileChannel = null;
+
+    private boolean disposed = false;
+
+    /**
+     * @param threshold max number of bytes kept in memory, content bigger than that is moved to a temporary file
+     */
+    public ContentBuffer( final int threshold ) {
+        this.threshold = Math.max( 0, threshold );
+        this.buffer = new byte[ Math.min( INITIAL_CAPACITY, this.threshold ) ];
+    }
+
+    public synchronized boolean isInMemory() {
+        return fileChannel == null;
+    }
+
+    public synchronized long size() {
+        checkDisposed();
+        if ( isInMemory() ) {
+            return count;
+        }
+        try {
+            return fileChannel.size();
+        } catch ( java.io.IOException e ) {
+            throw new IOException( e );
+        }
+    }
+
+    public synchronized int write( final long position,
+                                   final ByteBuffer src ) {
+        checkDisposed();
+        final int length = src.remaining();
+        try {
+            if ( isInMemory() && position + length > threshold ) {
+                spill();
+            }
+            if ( !isInMemory() ) {
+                int written = 0;
+                while ( src.hasRemaining() ) {
+                    written += fileChannel.write( src, position + written );
+                }
+                return written;
+            }
+        } catch ( java.io.IOException e ) {
+            throw new IOException( e );
+        }
+
+        final int pos = (int) position;
+        ensureCapacity( pos + length );
+        if ( pos > count ) {
+            // fill the gap, as a file would do
+            Arrays.fill( buffer, count, pos, (byte) 0 );
+        }
+        src.get( buffer, pos, length );
+        count = Math.max( count, pos + length );
+        return length;
+    }
+
+    public synchronized int read( final long position,
+                                  final ByteBuffer dst ) {
+        checkDisposed();
+        if ( !isInMemory() ) {
+            try {
+                return fileChannel.read( dst, position );
+            } catch ( java.io.IOException e ) {
+                throw new IOException( e );
+            }
+        }
+        if ( position >= count ) {
+            return -1;
+        }
+        final int length = (int) Math.min( dst.remaining(), count - position );
+        dst.put( buffer, (int) position, length );
+        return length;
+    }
+
+    public synchronized void truncate( final long size ) {
+        checkDisposed();
+        if ( !isInMemory() ) {
+            try {
+                fileChannel.truncate( size );
+            } catch ( java.io.IOException e ) {
+                throw new IOException( e );
+            }
+        } else if ( size < count ) {
+            count = (int) size;
+        }
+    }
+
+    /**
+     * Inserts the content as a blob, straight from memory when it wasn't spilled to disk.
+     */
+    public synchronized ObjectId insert( final ObjectInserter inserter ) throws java.io.IOException {
+        checkDisposed();
+        if ( isInMemory() ) {
+            return inserter.insert( Constants.OBJ_BLOB, buffer, 0, count );
+        }
+        final InputStream in = new FileInputStream( file );
+        try {
+            return inserter.insert( Constants.OBJ_BLOB, fileChannel.size(), in );
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Releases the memory and deletes the temporary file, if any. Can safely be called more than once.
+     */
+    public synchronized void dispose() {
+        if ( disposed ) {
+            return;
+        }
+        disposed = true;
+        buffer = null;
+        if ( randomAccessFile != null ) {
+            try {
+                randomAccessFile.close();
+            } catch ( java.io.IOException ignored ) {
+            }
+            randomAccessFile = null;
+            fileChannel = null;
+        }
+        if ( file != null ) {
+            if ( !file.delete() ) {
+                file.deleteOnExit();
+            }
+            file = null;
+        }
+    }
+
+    /**
+     * Returns a stream that appends to this buffer; closing it doesn't dispose the buffer.
+     */
+    public OutputStream newOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write( final int b ) {
+                write( new byte[]{ (byte) b }, 0, 1 );
+            }
+
+            @Override
+            public void write( final byte[] b,
+                               final int off,
+                               final int len ) {
+                synchronized ( ContentBuffer.this ) {
+                    ContentBuffer.this.write( size(), ByteBuffer.wrap( b, off, len ) );
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a channel over this buffer, starting at position zero; closing it doesn't dispose the buffer.
+     */
+    public SeekableByteChannel newByteChannel() {
+        return new SeekableByteChannel() {
+            private long position = 0;
+            private boolean open = true;
+
+            @Override
+            public long position() throws IOException {
+                return position;
+            }
+
+            @Override
+            public SeekableByteChannel position( final long newPosition ) throws IOException {
+                position = newPosition;
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                return ContentBuffer.this.size();
+            }
+
+            @Override
+            public SeekableByteChannel truncate( final long size ) throws IOException {
+                ContentBuffer.this.truncate( size );
+                if ( position > size ) {
+                    position = size;
+                }
+                return this;
+            }
+
+            @Override
+            public int read( final ByteBuffer dst ) {
+                final int read = ContentBuffer.this.read( position, dst );
+                if ( read > 0 ) {
+                    position += read;
+                }
+                return read;
+            }
+
+            @Override
+            public int write( final ByteBuffer src ) {
+                final int written = ContentBuffer.this.write( position, src );
+                position += written;
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() throws java.io.IOException {
+                open = false;
+            }
+        };
+    }
+
+    private void spill() throws java.io.IOException {
+        file = File.createTempFile( "gitz", "woot" );
+        randomAccessFile = new RandomAccessFile( file, "rw" );
+        fileChannel = randomAccessFile.getChannel();
+        final ByteBuffer content = ByteBuffer.wrap( buffer, 0, count );
+        while ( content.hasRemaining() ) {
+            fileChannel.write( content );
+        }
+        buffer = null;
+    }
+
+    private void ensureCapacity( final int minCapacity ) {
+        if ( minCapacity > buffer.length ) {
+            final int newCapacity = Math.min( threshold, Math.max( buffer.length << 1, minCapacity ) );
+            final byte[] newBuffer = new byte[ newCapacity ];
+            System.arraycopy( buffer, 0, newBuffer, 0, count );
+            buffer = newBuffer;
+        }
+    }
+
+    private void checkDisposed() {
+        if ( disposed ) {
+            throw new IllegalStateException( "Content buffer already disposed." );
+        }
+    }
+}
@@ -16,7 +16,6 @@
 
 package org.uberfire.java.nio.fs.jgit.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
@@ -45,9 +44,6 @@ import org.eclipse.jgit.api.errors.InvalidRemoteException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.api.errors.MultipleParentsNotAllowedException;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.dircache.DirCache;
-import org.eclipse.jgit.dircache.DirCacheEditor;
-import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.internal.JGitText;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.CommitBuilder;
@@ -62,6 +58,7 @@ import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.lib.TreeFormatter;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.CredentialsProvider;
@@ -69,7 +66,6 @@ import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.uberfire.commons.data.Pair;
 import org.uberfire.java.nio.IOException;
 import org.uberfire.java.nio.base.FileTimeImpl;
@@ -86,13 +82,15 @@ import static java.util.Collections.*;
 import static org.apache.commons.io.FileUtils.*;
 import static org.eclipse.jgit.lib.Constants.*;
 import static org.eclipse.jgit.lib.FileMode.*;
-import static org.eclipse.jgit.treewalk.filter.PathFilterGroup.*;
 import static org.eclipse.jgit.util.FS.*;
 import static org.uberfire.commons.data.Pair.*;
 import static org.uberfire.commons.validation.Preconditions.*;
 
 public final class JGitUtil {
 
+    private static final TreePathCache<TreePathCache.Entry> PATH_ENTRY_CACHE = new TreePathCache<TreePathCache.Entry>( 16 * 1024 );
+    private static final TreePathCache<List<JGitPathInfo>> PATH_CONTENT_CACHE = new TreePathCache<List<JGitPathInfo>>( 1024 );
+
     private JGitUtil() {
     }
 
@@ -122,6 +120,10 @@ public final class JGitUtil {
         }
     }
 
+    /**
+     * Opens the blob at the given path. Small blobs are served from memory, blobs bigger than JGit's stream file
+     * threshold are streamed straight from the object database, so they're never fully loaded on the heap.
+     */
     public static InputStream resolveInputStream( final Git git,
                                                   final String treeRef,
                                                   final String path ) {
@@ -131,32 +133,22 @@ public final class JGitUtil {
 
         final String gitPath = fixPath( path );
 
-        RevWalk rw = null;
-        TreeWalk tw = null;
+        final TreePathCache.Entry entry;
         try {
-            final ObjectId tree = git.getRepository().resolve( treeRef + "^{tree}" );
-            rw = new RevWalk( git.getRepository() );
-            tw = new TreeWalk( git.getRepository() );
-            tw.setFilter( createFromStrings( singleton( gitPath ) ) );
-            tw.reset( tree );
-            while ( tw.next() ) {
-                if ( tw.isSubtree() && !gitPath.equals( tw.getPathString() ) ) {
-                    tw.enterSubtree();
-                    continue;
-                }
-                return new ByteArrayInputStream( git.getRepository().open( tw.getObjectId( 0 ), Constants.OBJ_BLOB ).getBytes() );
-            }
+            entry = resolveEntry( git, treeRef, gitPath );
+        } catch ( final Throwable t ) {
+            throw new NoSuchFileException( "Can't find '" + gitPath + "' in tree '" + treeRef + "'" );
+        }
+
+        if ( entry.getMode() == null || entry.getMode().equals( FileMode.TYPE_TREE ) ) {
+            throw new NoSuchFileException( "Can't find '" + gitPath + "' in tree '" + treeRef + "'" );
+        }
+
+        try {
+            return git.getRepository().open( entry.getObjectId(), Constants.OBJ_BLOB ).openStream();
         } catch ( final Throwable t ) {
             throw new NoSuchFileException( "Can't find '" + gitPath + "' in tree '" + treeRef + "'" );
-        } finally {
-            if ( rw != null ) {
-                rw.dispose();
-            }
-            if ( tw != null ) {
-                tw.release();
-            }
         }
-        throw new NoSuchFileException( "" );
     }
 
     public static String fixPath( final String path ) {
@@ -320,6 +312,43 @@ public final class JGitUtil {
         }
     }
 
+    /**
+     * Fetches just the given branches from the origin into the upstream remote branches; the git protocol only
+     * transfers the objects the local repository is missing. Local branches are left untouched.
+     */
+    public static void fetchBranches( final Git git,
+                                      final CredentialsProvider credentialsProvider,
+                                      final String origin,
+                                      final Collection<String> branches )
+            throws InvalidRemoteException {
+        checkNotEmpty( "origin", origin );
+
+        try {
+            final StoredConfig config = git.getRepository().getConfig();
+            config.setString( "remote", "upstream", "url", origin );
+            config.save();
+        } catch ( final Exception ex ) {
+            throw new RuntimeException( ex );
+        }
+
+        final List<RefSpec> specs = new ArrayList<RefSpec>( branches.size() );
+        for ( final String branch : branches ) {
+            specs.add( new RefSpec( "+" + R_HEADS + branch + ":" + R_REMOTES + "upstream/" + branch ) );
+        }
+
+        try {
+            git.fetch()
+                    .setCredentialsProvider( credentialsProvider )
+                    .setRefSpecs( specs )
+                    .setRemote( origin )
+                    .call();
+        } catch ( final InvalidRemoteException e ) {
+            throw e;
+        } catch ( final Exception ex ) {
+            throw new RuntimeException( ex );
+        }
+    }
+
     public static void pushRepository( final Git git,
                                        final CredentialsProvider credentialsProvider,
                                        final String origin,
@@ -519,7 +548,6 @@ public final class JGitUtil {
         try {
             final ObjectInserter odi = git.getRepository().newObjectInserter();
             try {
-                // Create the in-memory index of the new/updated issue.
                 final ObjectId headId = git.getRepository().resolve( branchName + "^{commit}" );
 
                 final ObjectId originId;
@@ -529,22 +557,9 @@ public final class JGitUtil {
                     originId = _originId;
                 }
 
-                final DirCache index;
-                if ( content instanceof DefaultCommitContent ) {
-                    index = createTemporaryIndex( git, originId, (DefaultCommitContent) content );
-                } else if ( content instanceof MoveCommitContent ) {
-                    index = createTemporaryIndex( git, originId, (MoveCommitContent) content );
-                } else if ( content instanceof CopyCommitContent ) {
-                    index = createTemporaryIndex( git, originId, (CopyCommitContent) content );
-                } else if ( content instanceof RevertCommitContent ) {
-                    index = createTemporaryIndex( git, originId );
-                } else {
-                    index = null;
-                }
-
-                if ( index != null ) {
-                    final ObjectId indexTreeId = index.writeTree( odi );
+                final ObjectId indexTreeId = buildTree( git, odi, originId, content );
 
+                if ( indexTreeId != null ) {
                     // Create a commit object
                     final CommitBuilder commit = new CommitBuilder();
                     commit.setAuthor( author );
@@ -629,263 +644,118 @@ public final class JGitUtil {
     }
 
     /**
-     * Creates an in-memory index of the issue change.
+     * Builds the tree of the new commit by editing only the paths touched by the given content on top of the origin
+     * tree. Returns null if the content doesn't change anything.
      */
-    private static DirCache createTemporaryIndex( final Git git,
-                                                  final ObjectId headId,
-                                                  final DefaultCommitContent commitContent ) {
-
-        final Map<String, File> content = commitContent.getContent();
-
-        final Map<String, Pair<File, ObjectId>> paths = new HashMap<String, Pair<File, ObjectId>>( content.size() );
-        final Set<String> path2delete = new HashSet<String>();
+    private static ObjectId buildTree( final Git git,
+                                       final ObjectInserter inserter,
+                                       final ObjectId originId,
+                                       final CommitContent content ) throws java.io.IOException {
+        final ObjectId originTreeId = resolveTreeId( git, originId );
 
-        final DirCache inCoreIndex = DirCache.newInCore();
-        final ObjectInserter inserter = git.getRepository().newObjectInserter();
-        final DirCacheEditor editor = inCoreIndex.editor();
-
-        try {
-            for ( final Map.Entry<String, File> pathAndContent : content.entrySet() ) {
-                final String gPath = fixPath( pathAndContent.getKey() );
-                if ( pathAndContent.getValue() == null ) {
-                    final TreeWalk treeWalk = new TreeWalk( git.getRepository() );
-                    treeWalk.addTree( new RevWalk( git.getRepository() ).parseTree( headId ) );
-                    treeWalk.setRecursive( true );
-                    treeWalk.setFilter( PathFilter.create( gPath ) );
-
-                    while ( treeWalk.next() ) {
-                        path2delete.add( treeWalk.getPathString() );
-                    }
-                    treeWalk.release();
-                } else {
-                    try {
-                        final InputStream inputStream = new FileInputStream( pathAndContent.getValue() );
-                        try {
-                            final ObjectId objectId = inserter.insert( Constants.OBJ_BLOB, pathAndContent.getValue().length(), inputStream );
-                            paths.put( gPath, Pair.newPair( pathAndContent.getValue(), objectId ) );
-                        } finally {
-                            inputStream.close();
-                        }
-                    } catch ( final Exception ex ) {
-                        throw new RuntimeException( ex );
-                    }
-                }
+        if ( content instanceof RevertCommitContent ) {
+            if ( originTreeId == null ) {
+                return new TreeFormatter().insertTo( inserter );
             }
+            return originTreeId;
+        }
 
-            if ( headId != null ) {
-                final TreeWalk treeWalk = new TreeWalk( git.getRepository() );
-                final int hIdx = treeWalk.addTree( new RevWalk( git.getRepository() ).parseTree( headId ) );
-                treeWalk.setRecursive( true );
-
-                while ( treeWalk.next() ) {
-                    final String walkPath = treeWalk.getPathString();
-                    final CanonicalTreeParser hTree = treeWalk.getTree( hIdx, CanonicalTreeParser.class );
-
-                    if ( paths.containsKey( walkPath ) && paths.get( walkPath ).getK2().equals( hTree.getEntryObjectId() ) ) {
-                        paths.remove( walkPath );
-                    }
-
-                    if ( paths.get( walkPath ) == null && !path2delete.contains( walkPath ) ) {
-                        final DirCacheEntry dcEntry = new DirCacheEntry( walkPath );
-                        final ObjectId _objectId = hTree.getEntryObjectId();
-                        final FileMode _fileMode = hTree.getEntryFileMode();
-
-                        // add to temporary in-core index
-                        editor.add( new DirCacheEditor.PathEdit( dcEntry ) {
-                            @Override
-                            public void apply( final DirCacheEntry ent ) {
-                                ent.setObjectId( _objectId );
-                                ent.setFileMode( _fileMode );
-                            }
-                        } );
-                    }
-                }
-                treeWalk.release();
+        final ObjectReader reader = git.getRepository().newObjectReader();
+        try {
+            final TreeEditor editor = new TreeEditor( reader, originTreeId );
+
+            if ( content instanceof DefaultCommitContent ) {
+                applyContent( inserter, editor, (DefaultCommitContent) content );
+            } else if ( content instanceof BufferedCommitContent ) {
+                applyContent( inserter, editor, (BufferedCommitContent) content );
+            } else if ( content instanceof MoveCommitContent ) {
+                applyContent( editor, ( (MoveCommitContent) content ).getContent(), true );
+            } else if ( content instanceof CopyCommitContent ) {
+                applyContent( editor, ( (CopyCommitContent) content ).getContent(), false );
+            } else {
+                return null;
             }
 
-            for ( final Map.Entry<String, Pair<File, ObjectId>> pathAndContent : paths.entrySet() ) {
-                if ( pathAndContent.getValue().getK1() != null ) {
-                    editor.add( new DirCacheEditor.PathEdit( new DirCacheEntry( pathAndContent.getKey() ) ) {
-                        @Override
-                        public void apply( final DirCacheEntry ent ) {
-                            ent.setLength( pathAndContent.getValue().getK1().length() );
-                            ent.setLastModified( pathAndContent.getValue().getK1().lastModified() );
-                            ent.setFileMode( REGULAR_FILE );
-                            ent.setObjectId( pathAndContent.getValue().getK2() );
-                        }
-                    } );
-                }
+            final ObjectId newTreeId = editor.writeTree( inserter );
+            // without an origin tree, only deleting paths leaves the tree empty: nothing to commit either
+            final ObjectId unchangedTreeId = originTreeId == null ? inserter.idFor( Constants.OBJ_TREE, new byte[ 0 ] ) : originTreeId;
+            if ( ( content instanceof DefaultCommitContent || content instanceof BufferedCommitContent ) && newTreeId.equals( unchangedTreeId ) ) {
+                //no changes!
+                return null;
             }
 
-            editor.finish();
-        } catch ( Exception e ) {
-            throw new RuntimeException( e );
+            return newTreeId;
         } finally {
-            inserter.release();
-        }
-
-        if ( path2delete.isEmpty() && paths.isEmpty() ) {
-            //no changes!
-            return null;
+            reader.release();
         }
-
-        return inCoreIndex;
     }
 
-    private static DirCache createTemporaryIndex( final Git git,
-                                                  final ObjectId headId,
-                                                  final MoveCommitContent commitContent ) {
-        final Map<String, String> content = commitContent.getContent();
-
-        final DirCache inCoreIndex = DirCache.newInCore();
-        final DirCacheEditor editor = inCoreIndex.editor();
-
-        try {
-            if ( headId != null ) {
-                final TreeWalk treeWalk = new TreeWalk( git.getRepository() );
-                final int hIdx = treeWalk.addTree( new RevWalk( git.getRepository() ).parseTree( headId ) );
-                treeWalk.setRecursive( true );
-
-                while ( treeWalk.next() ) {
-                    final String walkPath = treeWalk.getPathString();
-                    final CanonicalTreeParser hTree = treeWalk.getTree( hIdx, CanonicalTreeParser.class );
-
-                    final String toPath = content.get( walkPath );
-
-                    if ( toPath == null ) {
-                        final DirCacheEntry dcEntry = new DirCacheEntry( walkPath );
-                        final ObjectId _objectId = hTree.getEntryObjectId();
-                        final FileMode _fileMode = hTree.getEntryFileMode();
-
-                        // add to temporary in-core index
-                        editor.add( new DirCacheEditor.PathEdit( dcEntry ) {
-                            @Override
-                            public void apply( final DirCacheEntry ent ) {
-                                ent.setObjectId( _objectId );
-                                ent.setFileMode( _fileMode );
-                            }
-                        } );
-                    } else {
-                        final DirCacheEntry dcEntry = new DirCacheEntry( toPath );
-                        final ObjectId _objectId = hTree.getEntryObjectId();
-                        final FileMode _fileMode = hTree.getEntryFileMode();
-
-                        editor.add( new DirCacheEditor.PathEdit( dcEntry ) {
-                            @Override
-                            public void apply( final DirCacheEntry ent ) {
-                                ent.setFileMode( _fileMode );
-                                ent.setObjectId( _objectId );
-                            }
-                        } );
-                    }
+    private static void applyContent( final ObjectInserter inserter,
+                                      final TreeEditor editor,
+                                      final DefaultCommitContent commitContent ) throws java.io.IOException {
+        for ( final Map.Entry<String, File> pathAndContent : commitContent.getContent().entrySet() ) {
+            final String gPath = fixPath( pathAndContent.getKey() );
+            if ( pathAndContent.getValue() == null ) {
+                editor.delete( gPath );
+            } else {
+                final InputStream inputStream = new FileInputStream( pathAndContent.getValue() );
+                try {
+                    final ObjectId objectId = inserter.insert( Constants.OBJ_BLOB, pathAndContent.getValue().length(), inputStream );
+                    editor.add( gPath, REGULAR_FILE, objectId );
+                } finally {
+                    inputStream.close();
                 }
-                treeWalk.release();
             }
-
-            editor.finish();
-        } catch ( final Exception e ) {
-            throw new RuntimeException( e );
         }
-
-        return inCoreIndex;
     }
 
-    private static DirCache createTemporaryIndex( final Git git,
-                                                  final ObjectId headId,
-                                                  final CopyCommitContent commitContent ) {
-        final Map<String, String> content = commitContent.getContent();
-
-        final DirCache inCoreIndex = DirCache.newInCore();
-        final DirCacheEditor editor = inCoreIndex.editor();
-
-        try {
-            if ( headId != null ) {
-                final TreeWalk treeWalk = new TreeWalk( git.getRepository() );
-                final int hIdx = treeWalk.addTree( new RevWalk( git.getRepository() ).parseTree( headId ) );
-                treeWalk.setRecursive( true );
-
-                while ( treeWalk.next() ) {
-                    final String walkPath = treeWalk.getPathString();
-                    final CanonicalTreeParser hTree = treeWalk.getTree( hIdx, CanonicalTreeParser.class );
-
-                    final String toPath = content.get( walkPath );
-
-                    final DirCacheEntry dcEntry = new DirCacheEntry( walkPath );
-                    final ObjectId _objectId = hTree.getEntryObjectId();
-                    final FileMode _fileMode = hTree.getEntryFileMode();
-
-                    // add to temporary in-core index
-                    editor.add( new DirCacheEditor.PathEdit( dcEntry ) {
-                        @Override
-                        public void apply( final DirCacheEntry ent ) {
-                            ent.setObjectId( _objectId );
-                            ent.setFileMode( _fileMode );
-                        }
-                    } );
-
-                    if ( toPath != null ) {
-                        final DirCacheEntry newdcEntry = new DirCacheEntry( toPath );
-                        final ObjectId newObjectId = hTree.getEntryObjectId();
-                        final FileMode newFileMode = hTree.getEntryFileMode();
-
-                        editor.add( new DirCacheEditor.PathEdit( newdcEntry ) {
-                            @Override
-                            public void apply( final DirCacheEntry ent ) {
-                                ent.setFileMode( newFileMode );
-                                ent.setObjectId( newObjectId );
-                            }
-                        } );
-                    }
-                }
-                treeWalk.release();
+    private static void applyContent( final ObjectInserter inserter,
+                                      final TreeEditor editor,
+                                      final BufferedCommitContent commitContent ) throws java.io.IOException {
+        for ( final Map.Entry<String, ContentBuffer> pathAndContent : commitContent.getContent().entrySet() ) {
+            final String gPath = fixPath( pathAndContent.getKey() );
+            if ( pathAndContent.getValue() == null ) {
+                editor.delete( gPath );
+            } else {
+                editor.add( gPath, REGULAR_FILE, pathAndContent.getValue().insert( inserter ) );
             }
-
-            editor.finish();
-        } catch ( final Exception e ) {
-            throw new RuntimeException( e );
         }
-
-        return inCoreIndex;
     }
 
-    private static DirCache createTemporaryIndex( final Git git,
-                                                  final ObjectId headId ) {
-
-        final DirCache inCoreIndex = DirCache.newInCore();
-        final DirCacheEditor editor = inCoreIndex.editor();
-
-        try {
-            if ( headId != null ) {
-                final TreeWalk treeWalk = new TreeWalk( git.getRepository() );
-                final int hIdx = treeWalk.addTree( new RevWalk( git.getRepository() ).parseTree( headId ) );
-                treeWalk.setRecursive( true );
-
-                while ( treeWalk.next() ) {
-                    final String walkPath = treeWalk.getPathString();
-                    final CanonicalTreeParser hTree = treeWalk.getTree( hIdx, CanonicalTreeParser.class );
-
-                    final DirCacheEntry dcEntry = new DirCacheEntry( walkPath );
-                    final ObjectId _objectId = hTree.getEntryObjectId();
-                    final FileMode _fileMode = hTree.getEntryFileMode();
+    private static void applyContent( final TreeEditor editor,
+                                      final Map<String, String> fromTo,
+                                      final boolean removeSource ) throws java.io.IOException {
+        // sources are resolved against the origin tree before any edit, so entries can swap places
+        final Map<String, Pair<FileMode, ObjectId>> sources = new HashMap<String, Pair<FileMode, ObjectId>>( fromTo.size() );
+        for ( final String from : fromTo.keySet() ) {
+            final Pair<FileMode, ObjectId> source = editor.getFile( from );
+            if ( source != null ) {
+                sources.put( from, source );
+            }
+        }
 
-                    // add to temporary in-core index
-                    editor.add( new DirCacheEditor.PathEdit( dcEntry ) {
-                        @Override
-                        public void apply( final DirCacheEntry ent ) {
-                            ent.setObjectId( _objectId );
-                            ent.setFileMode( _fileMode );
-                        }
-                    } );
-                }
-                treeWalk.release();
+        if ( removeSource ) {
+            for ( final String from : sources.keySet() ) {
+                editor.delete( from );
             }
+        }
 
-            editor.finish();
-        } catch ( final Exception e ) {
-            throw new RuntimeException( e );
+        for ( final Map.Entry<String, Pair<FileMode, ObjectId>> source : sources.entrySet() ) {
+            editor.add( fromTo.get( source.getKey() ), source.getValue().getK1(), source.getValue().getK2() );
         }
+    }
 
-        return inCoreIndex;
+    private static ObjectId resolveTreeId( final Git git,
+                                           final ObjectId commitId ) throws java.io.IOException {
+        if ( commitId == null ) {
+            return null;
+        }
+        final RevWalk revWalk = new RevWalk( git.getRepository() );
+        try {
+            return revWalk.parseTree( commitId ).getId();
+        } finally {
+            revWalk.release();
+        }
     }
 
     public static ObjectId resolveObjectId( final Git git,
@@ -957,81 +827,64 @@ public final class JGitUtil {
 
         final ObjectId id = resolveObjectId( fs.gitRepo(), branchName );
 
-        final List<VersionRecord> records = new ArrayList<VersionRecord>();
-
-        if ( id != null ) {
-            try {
-                final LogCommand logCommand = fs.gitRepo().log().add( id );
-                if ( !gPath.isEmpty() ) {
-                    logCommand.addPath( gPath );
-                }
-
-                for ( final RevCommit commit : logCommand.call() ) {
+        final VersionHistory history = new VersionHistory() {
 
-                    records.add( new VersionRecord() {
-                        @Override
-                        public String id() {
-                            return commit.name();
-                        }
+            private List<VersionRecord> records = null;
 
-                        @Override
-                        public String author() {
-                            return commit.getAuthorIdent().getName();
-                        }
-
-                        @Override
-                        public String email() {
-                            return commit.getAuthorIdent().getEmailAddress();
-                        }
-
-                        @Override
-                        public String comment() {
-                            return commit.getFullMessage();
-                        }
+            @Override
+            public synchronized List<VersionRecord> records() {
+                if ( records == null ) {
+                    final List<VersionRecord> result = readVersionRecords( fs, id, gPath, path, 0, -1 );
 
-                        @Override
-                        public Date date() {
-                            return commit.getAuthorIdent().getWhen();
-                        }
+                    Collections.reverse( result );
 
+                    Collections.sort( result, new Comparator<VersionRecord>() {
                         @Override
-                        public String uri() {
-                            return fs.getPath( commit.name(), path ).toUri().toString();
+                        public int compare( final VersionRecord o1,
+                                            final VersionRecord o2 ) {
+                            return o1.date().compareTo( o2.date() );
                         }
                     } );
+
+                    records = result;
                 }
-            } catch ( Exception e ) {
-                throw new RuntimeException( e );
+                return records;
             }
-        }
 
-        Collections.reverse( records );
-
-        Collections.sort( records, new Comparator<VersionRecord>() {
             @Override
-            public int compare( final VersionRecord o1,
-                                final VersionRecord o2 ) {
-                return o1.date().compareTo( o2.date() );
+            public List<VersionRecord> records( final int offset,
+                                                final int limit ) {
+                checkCondition( "offset can't be negative", offset >= 0 );
+                checkCondition( "limit must be positive", limit > 0 );
+                return readVersionRecords( fs, id, gPath, path, offset, limit );
             }
-        } );
+        };
 
         return new VersionAttributes() {
+
+            private PathChangeIndex.PathTimes times = null;
+            private boolean timesResolved = false;
+
+            private PathChangeIndex.PathTimes times() {
+                if ( !timesResolved ) {
+                    times = resolvePathTimes( fs, branchName, id, gPath );
+                    timesResolved = true;
+                }
+                return times;
+            }
+
             @Override
             public VersionHistory history() {
-                return new VersionHistory() {
-                    @Override
-                    public List<VersionRecord> records() {
-                        return records;
-                    }
-                };
+                return history;
             }
 
             @Override
             public FileTime lastModifiedTime() {
-                if ( records.size() > 0 ) {
-                    return new FileTimeImpl( records.get( records.size() - 1 ).date().getTime() );
+                final PathChangeIndex.PathTimes times = times();
+                if ( times == null ) {
+                    return null;
                 }
-                return null;
+                return new FileTimeImpl( times.getLastModifiedTime() );
             }
 
             @Override
@@ -1041,10 +894,11 @@ public final class JGitUtil {
 
             @Override
             public FileTime creationTime() {
-                if ( records.size() > 0 ) {
-                    return new FileTimeImpl( records.get( 0 ).date().getTime() );
+                final PathChangeIndex.PathTimes times = times();
+                if ( times == null ) {
+                    return null;
                 }
-                return null;
+                return new FileTimeImpl( times.getCreationTime() );
             }
 
             @Override
@@ -1074,7 +928,86 @@ public final class JGitUtil {
 
             @Override
             public Object fileKey() {
-                return pathInfo.getObjectId() == null ? null : pathInfo.getObjectId().toString();
+                return pathInfo.getObjectId() == null ? null : pathInfo.getObjectId().name();
+            }
+        };
+    }
+
+    /**
+     * Walks the history of the given path from the given commit, newest first, skipping {@code offset} commits and
+     * stopping after {@code limit} of them (a negative limit reads everything).
+     */
+    private static List<VersionRecord> readVersionRecords( final JGitFileSystem fs,
+                                                           final ObjectId id,
+                                                           final String gPath,
+                                                           final String path,
+                                                           final int offset,
+                                                           final int limit ) {
+        final List<VersionRecord> records = new ArrayList<VersionRecord>( limit > 0 ? limit : 10 );
+        if ( id == null ) {
+            return records;
+        }
+
+        RevWalk revWalk = null;
+        try {
+            final LogCommand logCommand = fs.gitRepo().log().add( id );
+            if ( !gPath.isEmpty() ) {
+                logCommand.addPath( gPath );
+            }
+            if ( offset > 0 ) {
+                logCommand.setSkip( offset );
+            }
+            if ( limit > 0 ) {
+                logCommand.setMaxCount( limit );
+            }
+
+            revWalk = (RevWalk) logCommand.call();
+            for ( final RevCommit commit : revWalk ) {
+                records.add( toVersionRecord( fs, path, commit ) );
+            }
+        } catch ( Exception e ) {
+            throw new RuntimeException( e );
+        } finally {
+            if ( revWalk != null ) {
+                revWalk.dispose();
+            }
+        }
+
+        return records;
+    }
+
+    private static VersionRecord toVersionRecord( final JGitFileSystem fs,
+                                                  final String path,
+                                                  final RevCommit commit ) {
+        return new VersionRecord() {
+            @Override
+            public String id() {
+                return commit.name();
+            }
+
+            @Override
+            public String author() {
+                return commit.getAuthorIdent().getName();
+            }
+
+            @Override
+            public String email() {
+                return commit.getAuthorIdent().getEmailAddress();
+            }
+
+            @Override
+            public String comment() {
+                return commit.getFullMessage();
+            }
+
+            @Override
+            public Date date() {
+                return commit.getAuthorIdent().getWhen();
+            }
+
+            @Override
+            public String uri() {
+                return fs.getPath( commit.name(), path ).toUri().toString();
             }
         };
     }
@@ -1093,29 +1026,21 @@ public final class JGitUtil {
 
         return new BasicFileAttributes() {
 
-            private long lastModifiedDate = -1;
-            private long creationDate = -1;
+            private PathChangeIndex.PathTimes times = null;
+            private boolean timesResolved = false;
+
+            private PathChangeIndex.PathTimes times() {
+                if ( !timesResolved ) {
+                    times = resolvePathTimes( fs, branchName, id, gPath );
+                    timesResolved = true;
+                }
+                return times;
+            }
 
             @Override
             public FileTime lastModifiedTime() {
-                if ( lastModifiedDate == -1L ) {
-                    RevWalk revWalk = null;
-                    try {
-                        final LogCommand logCommand = fs.gitRepo().log().add( id ).setMaxCount( 1 );
-                        if ( !gPath.isEmpty() ) {
-                            logCommand.addPath( gPath );
-                        }
-                        revWalk = (RevWalk) logCommand.call();
-                        lastModifiedDate = revWalk.iterator().next().getCommitterIdent().getWhen().getTime();
-                    } catch ( Exception ex ) {
-                        lastModifiedDate = 0;
-                    } finally {
-                        if ( revWalk != null ) {
-                            revWalk.dispose();
-                        }
-                    }
-                }
-                return new FileTimeImpl( lastModifiedDate );
+                final PathChangeIndex.PathTimes times = times();
+                return new FileTimeImpl( times == null ? 0 : times.getLastModifiedTime() );
             }
 
             @Override
@@ -1125,24 +1050,8 @@ public final class JGitUtil {
 
             @Override
             public FileTime creationTime() {
-                if ( creationDate == -1L ) {
-                    RevWalk revWalk = null;
-                    try {
-                        final LogCommand logCommand = fs.gitRepo().log().add( id ).setMaxCount( 1 );
-                        if ( !gPath.isEmpty() ) {
-                            logCommand.addPath( gPath );
-                        }
-                        revWalk = (RevWalk) logCommand.call();
-                        creationDate = revWalk.iterator().next().getCommitterIdent().getWhen().getTime();
-                    } catch ( Exception ex ) {
-                        creationDate = 0;
-                    } finally {
-                        if ( revWalk != null ) {
-                            revWalk.dispose();
-                        }
-                    }
-                }
-                return new FileTimeImpl( creationDate );
+                final PathChangeIndex.PathTimes times = times();
+                return new FileTimeImpl( times == null ? 0 : times.getCreationTime() );
             }
 
             @Override
@@ -1172,11 +1081,46 @@ public final class JGitUtil {
 
             @Override
             public Object fileKey() {
-                return pathInfo.getObjectId() == null ? null : pathInfo.getObjectId().toString();
+                return pathInfo.getObjectId() == null ? null : pathInfo.getObjectId().name();
             }
         };
     }
 
+    private static PathChangeIndex.PathTimes resolvePathTimes( final JGitFileSystem fs,
+                                                               final String branchName,
+                                                               final ObjectId headId,
+                                                               final String gPath ) {
+        if ( headId == null ) {
+            return null;
+        }
+        try {
+            // only branches get an index, a commit id used as tree ref would otherwise end up with its own index
+            if ( fs.gitRepo().getRepository().getRef( branchName ) != null ) {
+                return fs.getPathChangeIndex().getTimes( branchName, headId, gPath );
+            }
+
+            final LogCommand logCommand = fs.gitRepo().log().add( headId );
+            if ( !gPath.isEmpty() ) {
+                logCommand.addPath( gPath );
+            }
+            RevCommit last = null;
+            RevCommit first = null;
+            for ( final RevCommit commit : logCommand.call() ) {
+                if ( last == null ) {
+                    last = commit;
+                }
+                first = commit;
+            }
+            if ( last == null ) {
+                return null;
+            }
+            return new PathChangeIndex.PathTimes( first.getCommitterIdent().getWhen().getTime(),
+                                                  last.getCommitterIdent().getWhen().getTime() );
+        } catch ( final Exception ex ) {
+            return null;
+        }
+    }
+
     public static void createBranch( final Git git,
                                      final String source,
                                      final String target ) {
@@ -1239,31 +1183,18 @@ public final class JGitUtil {
             return newPair( PathType.DIRECTORY, null );
         }
 
-        TreeWalk tw = null;
         try {
-            final ObjectId tree = git.getRepository().resolve( branchName + "^{tree}" );
-            tw = new TreeWalk( git.getRepository() );
-            tw.setFilter( PathFilter.create( gitPath ) );
-            tw.reset( tree );
-            while ( tw.next() ) {
-                if ( tw.getPathString().equals( gitPath ) ) {
-                    if ( tw.getFileMode( 0 ).equals( FileMode.TYPE_TREE ) ) {
-                        return newPair( PathType.DIRECTORY, tw.getObjectId( 0 ) );
-                    } else if ( tw.getFileMode( 0 ).equals( FileMode.TYPE_FILE ) ||
-                            tw.getFileMode( 0 ).equals( FileMode.EXECUTABLE_FILE ) ||
-                            tw.getFileMode( 0 ).equals( FileMode.REGULAR_FILE ) ) {
-                        return newPair( PathType.FILE, tw.getObjectId( 0 ) );
-                    }
-                }
-                if ( tw.isSubtree() ) {
-                    tw.enterSubtree();
+            final TreePathCache.Entry entry = resolveEntry( git, branchName, gitPath );
+            if ( entry.getMode() != null ) {
+                if ( entry.getMode().equals( FileMode.TYPE_TREE ) ) {
+                    return newPair( PathType.DIRECTORY, entry.getObjectId() );
+                } else if ( entry.getMode().equals( FileMode.TYPE_FILE ) ||
+                        entry.getMode().equals( FileMode.EXECUTABLE_FILE ) ||
+                        entry.getMode().equals( FileMode.REGULAR_FILE ) ) {
+                    return newPair( PathType.FILE, entry.getObjectId() );
                 }
             }
         } catch ( final Throwable ignored ) {
-        } finally {
-            if ( tw != null ) {
-                tw.release();
-            }
         }
         return newPair( PathType.NOT_FOUND, null );
     }
@@ -1281,30 +1212,26 @@ public final class JGitUtil {
             return new JGitPathInfo( null, "/", TREE );
         }
 
-        TreeWalk tw = null;
         try {
-            final ObjectId tree = git.getRepository().resolve( branchName + "^{tree}" );
-            tw = new TreeWalk( git.getRepository() );
-            tw.setFilter( PathFilter.create( gitPath ) );
-            tw.reset( tree );
-            while ( tw.next() ) {
-                if ( tw.getPathString().equals( gitPath ) ) {
-                    if ( tw.getFileMode( 0 ).equals( TREE ) ) {
-                        return new JGitPathInfo( tw.getObjectId( 0 ), tw.getPathString(), TREE );
-                    } else if ( tw.getFileMode( 0 ).equals( REGULAR_FILE ) || tw.getFileMode( 0 ).equals( EXECUTABLE_FILE ) ) {
-                        final long size = tw.getObjectReader().getObjectSize( tw.getObjectId( 0 ), OBJ_BLOB );
-                        return new JGitPathInfo( tw.getObjectId( 0 ), tw.getPathString(), REGULAR_FILE, size );
+            final TreePathCache.Entry entry = resolveEntry( git, branchName, gitPath );
+            if ( entry.getMode() != null ) {
+                if ( entry.getMode().equals( TREE ) ) {
+                    return new JGitPathInfo( entry.getObjectId(), gitPath, TREE );
+                } else if ( entry.getMode().equals( REGULAR_FILE ) || entry.getMode().equals( EXECUTABLE_FILE ) ) {
+                    long size = entry.getSize();
+                    if ( size < 0 ) {
+                        final ObjectReader reader = git.getRepository().newObjectReader();
+                        try {
+                            size = reader.getObjectSize( entry.getObjectId(), OBJ_BLOB );
+                        } finally {
+                            reader.release();
+                        }
+                        entry.setSize( size );
                     }
-                }
-                if ( tw.isSubtree() ) {
-                    tw.enterSubtree();
+                    return new JGitPathInfo( entry.getObjectId(), gitPath, REGULAR_FILE, size );
                 }
             }
         } catch ( final Throwable ignored ) {
-        } finally {
-            if ( tw != null ) {
-                tw.release();
-            }
         }
 
         return null;
@@ -1319,38 +1246,86 @@ public final class JGitUtil {
 
         final String gitPath = fixPath( path );
 
-        TreeWalk tw = null;
-        final List<JGitPathInfo> result = new ArrayList<JGitPathInfo>();
         try {
             final ObjectId tree = git.getRepository().resolve( branchName + "^{tree}" );
-            tw = new TreeWalk( git.getRepository() );
-            boolean found = false;
-            if ( gitPath.isEmpty() ) {
-                found = true;
-            } else {
-                tw.setFilter( PathFilter.create( gitPath ) );
+            if ( tree == null ) {
+                return new ArrayList<JGitPathInfo>();
             }
-            tw.reset( tree );
-            while ( tw.next() ) {
-                if ( !found && tw.isSubtree() ) {
-                    tw.enterSubtree();
-                }
-                if ( tw.getPathString().equals( gitPath ) ) {
-                    found = true;
-                    continue;
-                }
-                if ( found ) {
-                    result.add( new JGitPathInfo( tw.getObjectId( 0 ), tw.getPathString(), tw.getFileMode( 0 ) ) );
-                }
+
+            List<JGitPathInfo> content = PATH_CONTENT_CACHE.get( tree, gitPath );
+            if ( content == null ) {
+                content = readPathContent( git, tree, gitPath );
+                PATH_CONTENT_CACHE.put( tree, gitPath, content );
             }
+            return new ArrayList<JGitPathInfo>( content );
         } catch ( final Throwable ignored ) {
-        } finally {
-            if ( tw != null ) {
-                tw.release();
+        }
+
+        return new ArrayList<JGitPathInfo>();
+    }
+
+    /**
+     * Resolves the entry found at the given path on the current tree of the branch; both found and missing entries
+     * are cached by tree id, so repeated lookups on an unchanged branch don't touch the object database.
+     */
+    private static TreePathCache.Entry resolveEntry( final Git git,
+                                                     final String branchName,
+                                                     final String gitPath ) throws java.io.IOException {
+        final ObjectId tree = git.getRepository().resolve( branchName + "^{tree}" );
+        if ( tree == null ) {
+            return TreePathCache.Entry.NOT_FOUND;
+        }
+        return resolveEntry( git, tree, gitPath );
+    }
+
+    private static TreePathCache.Entry resolveEntry( final Git git,
+                                                     final ObjectId tree,
+                                                     final String gitPath ) throws java.io.IOException {
+        TreePathCache.Entry entry = PATH_ENTRY_CACHE.get( tree, gitPath );
+        if ( entry == null ) {
+            final ObjectReader reader = git.getRepository().newObjectReader();
+            try {
+                final TreeWalk tw = TreeWalk.forPath( reader, gitPath, tree );
+                if ( tw == null ) {
+                    entry = TreePathCache.Entry.NOT_FOUND;
+                } else {
+                    entry = new TreePathCache.Entry( tw.getFileMode( 0 ), tw.getObjectId( 0 ) );
+                    tw.release();
+                }
+            } finally {
+                reader.release();
             }
+            PATH_ENTRY_CACHE.put( tree, gitPath, entry );
         }
+        return entry;
+    }
 
-        return result;
+    private static List<JGitPathInfo> readPathContent( final Git git,
+                                                       final ObjectId tree,
+                                                       final String gitPath ) throws java.io.IOException {
+        final ObjectId dirTree;
+        if ( gitPath.isEmpty() ) {
+            dirTree = tree;
+        } else {
+            final TreePathCache.Entry entry = resolveEntry( git, tree, gitPath );
+            if ( entry.getMode() == null || !entry.getMode().equals( FileMode.TYPE_TREE ) ) {
+                return emptyList();
+            }
+            dirTree = entry.getObjectId();
+        }
+
+        final List<JGitPathInfo> result = new ArrayList<JGitPathInfo>();
+        final TreeWalk tw = new TreeWalk( git.getRepository() );
+        try {
+            tw.reset( dirTree );
+            while ( tw.next() ) {
+                final String childPath = gitPath.isEmpty() ? tw.getPathString() : gitPath + "/" + tw.getPathString();
+                result.add( new JGitPathInfo( tw.getObjectId( 0 ), childPath, tw.getFileMode( 0 ) ) );
+            }
+        } finally {
+            tw.release();
+        }
+        return unmodifiableList( result );
     }
 
     public static class JGitPathInfo {
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Keeps, for every branch of a repository, the time of the first and of the last commit that touched each path
+ * (files, their parent directories and the root, stored as ""), so file times are a map lookup instead of a path
+ * filtered history walk.
+ * <p>
+ * A branch index is built once from the whole history and then moved forward one commit at a time: when the branch
+ * head changed, only the commits added since the indexed head are diffed against their first parent. If the branch
+ * was rewritten (the indexed head is not an ancestor of the new one) the index is rebuilt. Moving forward updates
+ * only the paths the new commits touched, in place; a rebuild fills a new map and publishes it once done. Heads older
+ * than the indexed one are served from the current index.
+ */
+public final class PathChangeIndex {
+
+    private final Repository repository;
+    private final ConcurrentMap<String, BranchIndex> branches = new ConcurrentHashMap<String, BranchIndex>();
+
+    public PathChangeIndex( final Repository repository ) {
+        this.repository = checkNotNull( "repository", repository );
+    }
+
+    /**
+     * Returns the times of the given path as of the given branch head, or null if no commit ever touched it.
+     * @param branchName branch the head belongs to
+     * @param headId current head commit of the branch
+     * @param gitPath path already fixed by {@link JGitUtil#fixPath(String)}, "" for the root
+     */
+    public PathTimes getTimes( final String branchName,
+                               final ObjectId headId,
+                               final String gitPath ) throws java.io.IOException {
+        checkNotEmpty( "branchName", branchName );
+        checkNotNull( "headId", headId );
+        checkNotNull( "gitPath", gitPath );
+
+        BranchIndex index = branches.get( branchName );
+        if ( index == null ) {
+            final BranchIndex newIndex = new BranchIndex();
+            index = branches.putIfAbsent( branchName, newIndex );
+            if ( index == null ) {
+                index = newIndex;
+            }
+        }
+        return index.getTimes( headId, gitPath );
+    }
+
+    public void forget( final String branchName ) {
+        branches.remove( branchName );
+    }
+
+    public static final class PathTimes {
+
+        private final long creationTime;
+        private final long lastModifiedTime;
+
+        PathTimes( final long creationTime,
+                   final long lastModifiedTime ) {
+            this.creationTime = creationTime;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        public long getLastModifiedTime() {
+            return lastModifiedTime;
+        }
+    }
+
+    private final class BranchIndex {
+
+        private volatile ObjectId head = null;
+        private volatile ConcurrentMap<String, PathTimes> times = null;
+
+        PathTimes getTimes( final ObjectId headId,
+                            final String gitPath ) throws java.io.IOException {
+            if ( !headId.equals( head ) ) {
+                update( headId );
+            }
+            return times.get( gitPath );
+        }
+
+        /**
+         * Moves the index to the given head; the head is published only once its times are all in. A head older than
+         * the indexed one (a reader that loaded the branch before a commit) is answered from the current index instead
+         * of moving it back.
+         */
+        private synchronized void update( final ObjectId newHeadId ) throws java.io.IOException {
+            final ObjectId currentHead = head;
+            if ( newHeadId.equals( currentHead ) ) {
+                return;
+            }
+
+            final RevWalk rw = new RevWalk( repository );
+            try {
+                final RevCommit newHead = rw.parseCommit( newHeadId );
+                RevCommit oldHead = null;
+                if ( currentHead != null ) {
+                    try {
+                        oldHead = rw.parseCommit( currentHead );
+                        if ( rw.isMergedInto( newHead, oldHead ) ) {
+                            return;
+                        }
+                        rw.reset();
+                        if ( !rw.isMergedInto( oldHead, newHead ) ) {
+                            oldHead = null;
+                        }
+                    } catch ( final MissingObjectException ex ) {
+                        oldHead = null;
+                    }
+                    rw.reset();
+                }
+
+                final ConcurrentMap<String, PathTimes> target;
+                if ( oldHead == null ) {
+                    target = new ConcurrentHashMap<String, PathTimes>();
+                } else {
+                    target = times;
+                }
+
+                rw.sort( RevSort.TOPO, true );
+                rw.sort( RevSort.REVERSE, true );
+                rw.markStart( newHead );
+                if ( oldHead != null ) {
+                    rw.markUninteresting( oldHead );
+                }
+
+                for ( final RevCommit commit : rw ) {
+                    apply( rw, commit, target );
+                }
+
+                times = target;
+                head = newHead.copy();
+            } finally {
+                rw.dispose();
+            }
+        }
+
+        private void apply( final RevWalk rw,
+                            final RevCommit commit,
+                            final Map<String, PathTimes> times ) throws java.io.IOException {
+            final long when = commit.getCommitterIdent().getWhen().getTime();
+
+            final TreeWalk tw = new TreeWalk( rw.getObjectReader() );
+            try {
+                tw.setRecursive( true );
+                if ( commit.getParentCount() > 0 ) {
+                    final RevCommit parent = commit.getParent( 0 );
+                    rw.parseHeaders( parent );
+                    tw.addTree( parent.getTree() );
+                } else {
+                    tw.addTree( new EmptyTreeIterator() );
+                }
+                tw.addTree( commit.getTree() );
+                tw.setFilter( TreeFilter.ANY_DIFF );
+
+                final Set<String> touchedDirs = new HashSet<String>();
+                while ( tw.next() ) {
+                    final String path = tw.getPathString();
+                    if ( tw.getRawMode( 1 ) == FileMode.MISSING.getBits() ) {
+                        times.remove( path );
+                    } else {
+                        touch( times, path, when );
+                    }
+
+                    int index = path.lastIndexOf( '/' );
+                    while ( index > 0 ) {
+                        final String dir = path.substring( 0, index );
+                        if ( !touchedDirs.add( dir ) ) {
+                            break;
+                        }
+                        touch( times, dir, when );
+                        index = dir.lastIndexOf( '/' );
+                    }
+                }
+            } finally {
+                tw.release();
+            }
+
+            touch( times, "", when );
+        }
+
+        private void touch( final Map<String, PathTimes> times,
+                            final String path,
+                            final long when ) {
+            final PathTimes current = times.get( path );
+            if ( current == null ) {
+                times.put( path, new PathTimes( when, when ) );
+            } else {
+                times.put( path, new PathTimes( current.getCreationTime(), when ) );
+            }
+        }
+    }
+}
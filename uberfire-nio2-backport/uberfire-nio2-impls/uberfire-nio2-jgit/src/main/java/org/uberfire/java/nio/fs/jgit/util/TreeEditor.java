@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.uberfire.commons.data.Pair;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Applies path based edits on top of an existing tree without walking it completely. Only the trees on the path from
+ * an edited entry up to the root are read and rewritten, every other subtree keeps its original object id.
+ */
+public final class TreeEditor {
+
+    private static final Comparator<Map.Entry<String, Entry>> GIT_TREE_ORDER = new Comparator<Map.Entry<String, Entry>>() {
+        @Override
+        public int compare( final Map.Entry<String, Entry> o1,
+                            final Map.Entry<String, Entry> o2 ) {
+            return compareNames( o1.getKey(), o1.getValue().isTree(), o2.getKey(), o2.getValue().isTree() );
+        }
+    };
+
+    private final ObjectReader reader;
+    private final Node root;
+
+    /**
+     * @param reader reader used to load the trees that are edited
+     * @param baseTreeId tree to start from, or null to start from an empty tree
+     */
+    public TreeEditor( final ObjectReader reader,
+                       final ObjectId baseTreeId ) {
+        this.reader = checkNotNull( "reader", reader );
+        this.root = new Node( baseTreeId );
+    }
+
+    /**
+     * Returns the mode and object id of the file at the given path, or null if there is no such file.
+     */
+    public Pair<FileMode, ObjectId> getFile( final String path ) throws java.io.IOException {
+        final String[] segments = split( path );
+        if ( segments.length == 0 ) {
+            return null;
+        }
+        final List<Node> parents = resolveParents( segments, false );
+        if ( parents == null ) {
+            return null;
+        }
+        final Entry entry = parents.get( parents.size() - 1 ).entries().get( segments[ segments.length - 1 ] );
+        if ( entry == null || entry.isTree() ) {
+            return null;
+        }
+        return Pair.newPair( entry.mode, entry.id );
+    }
+
+    /**
+     * Adds or replaces the entry at the given path, creating any missing parent tree.
+     */
+    public void add( final String path,
+                     final FileMode mode,
+                     final ObjectId id ) throws java.io.IOException {
+        checkNotNull( "mode", mode );
+        checkNotNull( "id", id );
+
+        final String[] segments = split( path );
+        checkCondition( "path can't be empty", segments.length > 0 );
+
+        final List<Node> parents = resolveParents( segments, true );
+        parents.get( parents.size() - 1 ).entries().put( segments[ segments.length - 1 ], new Entry( mode, id ) );
+        markDirty( parents );
+    }
+
+    /**
+     * Removes the entry at the given path; if it is a tree its whole content is removed.
+     * @return true if an entry was removed
+     */
+    public boolean delete( final String path ) throws java.io.IOException {
+        final String[] segments = split( path );
+        if ( segments.length == 0 ) {
+            return false;
+        }
+        final List<Node> parents = resolveParents( segments, false );
+        if ( parents == null ) {
+            return false;
+        }
+        if ( parents.get( parents.size() - 1 ).entries().remove( segments[ segments.length - 1 ] ) == null ) {
+            return false;
+        }
+        markDirty( parents );
+        return true;
+    }
+
+    /**
+     * Writes every modified tree and returns the id of the resulting root tree. Trees left empty by the edits are
+     * dropped, as git doesn't store empty directories.
+     */
+    public ObjectId writeTree( final ObjectInserter inserter ) throws java.io.IOException {
+        final ObjectId id = write( root, inserter );
+        if ( id == null ) {
+            return new TreeFormatter().insertTo( inserter );
+        }
+        return id;
+    }
+
+    private ObjectId write( final Node node,
+                            final ObjectInserter inserter ) throws java.io.IOException {
+        if ( !node.dirty ) {
+            return node.treeId;
+        }
+
+        final List<Map.Entry<String, Entry>> sorted = new ArrayList<Map.Entry<String, Entry>>( node.entries().entrySet() );
+        Collections.sort( sorted, GIT_TREE_ORDER );
+
+        final TreeFormatter formatter = new TreeFormatter();
+        int size = 0;
+        for ( final Map.Entry<String, Entry> mapEntry : sorted ) {
+            final Entry entry = mapEntry.getValue();
+            final ObjectId id;
+            if ( entry.dir != null ) {
+                id = write( entry.dir, inserter );
+            } else {
+                id = entry.id;
+            }
+            if ( id != null ) {
+                formatter.append( mapEntry.getKey(), entry.mode, id );
+                size++;
+            }
+        }
+
+        if ( size == 0 ) {
+            return null;
+        }
+
+        return formatter.insertTo( inserter );
+    }
+
+    private List<Node> resolveParents( final String[] segments,
+                                       final boolean create ) throws java.io.IOException {
+        final List<Node> parents = new ArrayList<Node>( segments.length );
+        Node current = root;
+        parents.add( current );
+        for ( int i = 0; i < segments.length - 1; i++ ) {
+            Entry entry = current.entries().get( segments[ i ] );
+            if ( entry == null || !entry.isTree() ) {
+                if ( !create ) {
+                    return null;
+                }
+                entry = new Entry( FileMode.TREE, null );
+                entry.dir = new Node( null );
+                current.entries().put( segments[ i ], entry );
+            } else if ( entry.dir == null ) {
+                entry.dir = new Node( entry.id );
+            }
+            current = entry.dir;
+            parents.add( current );
+        }
+        return parents;
+    }
+
+    private void markDirty( final List<Node> nodes ) {
+        for ( final Node node : nodes ) {
+            node.dirty = true;
+        }
+    }
+
+    private static String[] split( final String path ) {
+        final String gitPath = JGitUtil.fixPath( checkNotNull( "path", path ) );
+        if ( gitPath.isEmpty() ) {
+            return new String[ 0 ];
+        }
+        return gitPath.split( "/" );
+    }
+
+    private static int compareNames( final String name1,
+                                     final boolean isTree1,
+                                     final String name2,
+                                     final boolean isTree2 ) {
+        final byte[] a = Constants.encode( name1 );
+        final byte[] b = Constants.encode( name2 );
+        final int length = Math.min( a.length, b.length );
+        for ( int i = 0; i < length; i++ ) {
+            final int cmp = ( a[ i ] & 0xff ) - ( b[ i ] & 0xff );
+            if ( cmp != 0 ) {
+                return cmp;
+            }
+        }
+        // git sorts trees as if their name had a trailing '/'
+        final int lastA = a.length > length ? a[ length ] & 0xff : ( isTree1 ? '/' : 0 );
+        final int lastB = b.length > length ? b[ length ] & 0xff : ( isTree2 ? '/' : 0 );
+        return lastA - lastB;
+    }
+
+    private final class Node {
+
+        private final ObjectId treeId;
+        private Map<String, Entry> entries = null;
+        private boolean dirty = false;
+
+        Node( final ObjectId treeId ) {
+            this.treeId = treeId;
+        }
+
+        Map<String, Entry> entries() throws java.io.IOException {
+            if ( entries == null ) {
+                entries = new HashMap<String, Entry>();
+                if ( treeId != null ) {
+                    final CanonicalTreeParser parser = new CanonicalTreeParser();
+                    parser.reset( reader, treeId );
+                    while ( !parser.eof() ) {
+                        entries.put( parser.getEntryPathString(), new Entry( parser.getEntryFileMode(), parser.getEntryObjectId() ) );
+                        parser.next( 1 );
+                    }
+                }
+            }
+            return entries;
+        }
+    }
+
+    private static final class Entry {
+
+        private final FileMode mode;
+        private final ObjectId id;
+        private Node dir = null;
+
+        Entry( final FileMode mode,
+               final ObjectId id ) {
+            this.mode = mode;
+            this.id = id;
+        }
+
+        boolean isTree() {
+            return FileMode.TREE.equals( mode.getBits() );
+        }
+    }
+}
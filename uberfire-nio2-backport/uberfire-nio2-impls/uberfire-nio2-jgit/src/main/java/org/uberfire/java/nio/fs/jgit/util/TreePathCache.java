@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+import static org.uberfire.commons.validation.Preconditions.*;
+
+/**
+ * Bounded cache of values resolved for a path inside a git tree. Trees are immutable, so an entry never gets stale:
+ * a commit that changes a path produces a new tree id and thus a new key, old keys just age out.
+ * <p>
+ * Keys are spread over a fixed number of segments, each one a small access ordered map that evicts its least
+ * recently used entry when full, so concurrent lookups on different keys rarely contend on the same lock.
+ */
+final class TreePathCache<V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment<V>[] segments;
+
+    @SuppressWarnings("unchecked")
+    TreePathCache( final int maxEntries ) {
+        checkCondition( "maxEntries must be positive", maxEntries > 0 );
+        final int segmentSize = Math.max( 1, maxEntries / SEGMENTS );
+        this.segments = new Segment[ SEGMENTS ];
+        for ( int i = 0; i < SEGMENTS; i++ ) {
+            segments[ i ] = new Segment<V>( segmentSize );
+        }
+    }
+
+    V get( final AnyObjectId treeId,
+           final String path ) {
+        final Key key = new Key( treeId, path );
+        final Segment<V> segment = segmentFor( key );
+        synchronized ( segment ) {
+            return segment.get( key );
+        }
+    }
+
+    void put( final AnyObjectId treeId,
+              final String path,
+              final V value ) {
+        final Key key = new Key( treeId.copy(), path );
+        final Segment<V> segment = segmentFor( key );
+        synchronized ( segment ) {
+            segment.put( key, value );
+        }
+    }
+
+    private Segment<V> segmentFor( final Key key ) {
+        return segments[ ( key.hashCode() & 0x7fffffff ) % SEGMENTS ];
+    }
+
+    private static final class Segment<V> extends LinkedHashMap<Key, V> {
+
+        private final int maxEntries;
+
+        Segment( final int maxEntries ) {
+            super( 16, 0.75f, true );
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<Key, V> eldest ) {
+            return size() > maxEntries;
+        }
+    }
+
+    private static final class Key {
+
+        private final AnyObjectId treeId;
+        private final String path;
+
+        Key( final AnyObjectId treeId,
+             final String path ) {
+            this.treeId = treeId;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof Key ) ) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return AnyObjectId.equals( treeId, key.treeId ) && path.equals( key.path );
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * treeId.hashCode() + path.hashCode();
+        }
+    }
+
+    /**
+     * Identity of the entry found at a path (its mode and object id), or {@link #NOT_FOUND}.
+     */
+    static final class Entry {
+
+        static final Entry NOT_FOUND = new Entry( null, null );
+
+        private final FileMode mode;
+        private final ObjectId objectId;
+        private volatile long size = -1;
+
+        Entry( final FileMode mode,
+               final ObjectId objectId ) {
+            this.mode = mode;
+            this.objectId = objectId;
+        }
+
+        FileMode getMode() {
+            return mode;
+        }
+
+        ObjectId getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * Blob size, -1 until {@link #setSize(long)} is called; sizes are only computed when someone asks for them.
+         */
+        long getSize() {
+            return size;
+        }
+
+        void setSize( final long size ) {
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.uberfire.java.nio.file.Path;
+
+import static org.fest.assertions.api.Assertions.*;
+
+public class JGitFileSystemProviderConcurrentCommitTest extends AbstractTestInfra {
+
+    private static final int WRITES_PER_TARGET = 10;
+
+    @Test
+    public void testConcurrentCommitsOnDifferentFileSystemsAndBranches() throws Exception {
+        provider.newFileSystem( URI.create( "git://concurrent-repo1" ), EMPTY_ENV );
+        provider.newFileSystem( URI.create( "git://concurrent-repo2" ), EMPTY_ENV );
+
+        final String[] targets = new String[]{
+                "git://master@concurrent-repo1/",
+                "git://master@concurrent-repo2/",
+                "git://other@concurrent-repo2/"
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool( targets.length * 2 );
+        try {
+            final List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for ( final String target : targets ) {
+                for ( int writer = 0; writer < 2; writer++ ) {
+                    final int _writer = writer;
+                    results.add( executor.submit( new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for ( int i = 0; i < WRITES_PER_TARGET; i++ ) {
+                                final Path path = provider.getPath( URI.create( target + "writer" + _writer + "/file" + i + ".txt" ) );
+                                final OutputStream out = provider.newOutputStream( path );
+                                out.write( ( "content " + i ).getBytes() );
+                                out.close();
+                            }
+                            return null;
+                        }
+                    } ) );
+                }
+            }
+            for ( final Future<Void> result : results ) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for ( final String target : targets ) {
+            for ( int writer = 0; writer < 2; writer++ ) {
+                for ( int i = 0; i < WRITES_PER_TARGET; i++ ) {
+                    final Path path = provider.getPath( URI.create( target + "writer" + writer + "/file" + i + ".txt" ) );
+                    assertThat( provider.exists( path ) ).isTrue();
+                }
+            }
+        }
+    }
+
+}
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
 import org.junit.Test;
 import org.uberfire.java.nio.file.DirectoryStream;
 import org.uberfire.java.nio.file.FileSystemAlreadyExistsException;
@@ -72,4 +74,34 @@ public class JGitFileSystemProviderGCTest extends AbstractTestInfra {
         assertThat( fs.getNumberOfCommitsSinceLastGC() ).isEqualTo( 1 );
     }
 
+    @Test
+    public void testMaintenanceRepacksLooseObjects() throws IOException {
+        final URI newRepo = URI.create( "git://maintenance-repo-name" );
+
+        final JGitFileSystem fs = (JGitFileSystem) provider.newFileSystem( newRepo, EMPTY_ENV );
+
+        for ( int i = 0; i < 5; i++ ) {
+            final Path path = provider.getPath( URI.create( "git://maintenance-repo-name/path/to/myfile" + i + ".txt" ) );
+
+            final OutputStream outStream = provider.newOutputStream( path );
+            outStream.write( ( "my cool" + i + " content" ).getBytes() );
+            outStream.close();
+        }
+
+        final GC gc = new GC( (FileRepository) fs.gitRepo().getRepository() );
+        assertThat( gc.getStatistics().numberOfLooseObjects ).isGreaterThan( 0 );
+
+        final JGitMaintenanceScheduler scheduler = new JGitMaintenanceScheduler( provider, 1, 1, 50, 0, 0 );
+        scheduler.maintain( fs );
+
+        assertThat( gc.getStatistics().numberOfPackFiles ).isEqualTo( 1 );
+
+        // nothing new since last run
+        scheduler.maintain( fs );
+
+        assertThat( gc.getStatistics().numberOfPackFiles ).isEqualTo( 1 );
+
+        scheduler.shutdown();
+    }
+
 }
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -37,6 +38,7 @@ import org.junit.Test;
 import org.uberfire.commons.data.Pair;
 import org.uberfire.java.nio.base.NotImplementedException;
 import org.uberfire.java.nio.base.options.CommentedOption;
+import org.uberfire.java.nio.channels.SeekableByteChannel;
 import org.uberfire.java.nio.file.DirectoryNotEmptyException;
 import org.uberfire.java.nio.file.DirectoryStream;
 import org.uberfire.java.nio.file.FileAlreadyExistsException;
@@ -46,6 +48,7 @@ import org.uberfire.java.nio.file.FileSystemAlreadyExistsException;
 import org.uberfire.java.nio.file.FileSystemNotFoundException;
 import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.java.nio.file.NotDirectoryException;
+import org.uberfire.java.nio.file.OpenOption;
 import org.uberfire.java.nio.file.Path;
 import org.uberfire.java.nio.file.StandardWatchEventKind;
 import org.uberfire.java.nio.file.WatchEvent;
@@ -213,6 +216,42 @@ public class JGitFileSystemProviderTest extends AbstractTestInfra {
         }
     }
 
+    @Test
+    public void testSyncOnlyChangedRefs() throws IOException {
+
+        final URI originRepo = URI.create( "git://my-refs-origin" );
+
+        final JGitFileSystem origin = (JGitFileSystem) provider.newFileSystem( originRepo, new HashMap<String, Object>() {{
+            put( "listMode", "ALL" );
+        }} );
+
+        commit( origin.gitRepo(), "master", "user1", "user1@example.com", "commitx", null, null, false, new HashMap<String, File>() {{
+            put( "file.txt", tempFile( "temp" ) );
+        }} );
+
+        final JGitFileSystem fs = (JGitFileSystem) provider.newFileSystem( URI.create( "git://my-refs-repo" ), new HashMap<String, Object>() {{
+            put( JGitFileSystemProvider.GIT_ENV_KEY_DEFAULT_REMOTE_NAME, "git://localhost:9418/my-refs-origin" );
+            put( "listMode", "ALL" );
+        }} );
+
+        commit( origin.gitRepo(), "master", "user1", "user1@example.com", "commitx", null, null, false, new HashMap<String, File>() {{
+            put( "fileXXXXX.txt", tempFile( "temp" ) );
+        }} );
+
+        final String head = origin.getRefs().get( "master" );
+        assertThat( fs.getRefs().get( "master" ) ).isNotEqualTo( head );
+
+        provider.getFileSystem( URI.create( "git://my-refs-repo?sync=git://localhost:9418/my-refs-origin&force&refs=master:" + head ) );
+
+        assertThat( fs.getRefs().get( "master" ) ).isEqualTo( head );
+        assertThat( fs.getPath( "fileXXXXX.txt" ).toFile() ).isNotNull().exists();
+
+        // already there: no fetch, so the bogus origin is never contacted
+        provider.getFileSystem( URI.create( "git://my-refs-repo?sync=git://localhost:9418/not-a-repo&force&refs=master:" + head ) );
+
+        assertThat( fs.getRefs().get( "master" ) ).isEqualTo( head );
+    }
+
     @Test
     public void testNewFileSystemCloneAndPush() throws IOException {
 
@@ -595,6 +634,74 @@ public class JGitFileSystemProviderTest extends AbstractTestInfra {
         assertThat( content ).isNotNull().isEqualTo( "my cool content" );
     }
 
+    @Test
+    public void testWriteBiggerThanWriteBuffer() throws Exception {
+        provider.shutdown();
+        provider = new JGitFileSystemProvider( new HashMap<String, String>() {{
+            put( "org.uberfire.nio.git.write.buffer.threshold", "16" );
+        }} );
+
+        provider.newFileSystem( URI.create( "git://write-buffer-repo" ), EMPTY_ENV );
+
+        final String small = "small";
+        final String big = "this content doesn't fit in the write buffer";
+
+        final Path smallPath = provider.getPath( URI.create( "git://write-buffer-repo/small.txt" ) );
+        final OutputStream smallOut = provider.newOutputStream( smallPath );
+        smallOut.write( small.getBytes() );
+        smallOut.close();
+
+        final Path bigPath = provider.getPath( URI.create( "git://write-buffer-repo/big.txt" ) );
+        final OutputStream bigOut = provider.newOutputStream( bigPath );
+        bigOut.write( big.getBytes() );
+        bigOut.close();
+        // second close must not commit again
+        bigOut.close();
+
+        final Path channelPath = provider.getPath( URI.create( "git://write-buffer-repo/channel.txt" ) );
+        final SeekableByteChannel channel = provider.newByteChannel( channelPath, new HashSet<OpenOption>() );
+        channel.write( ByteBuffer.wrap( big.getBytes() ) );
+        channel.position( 0 );
+        channel.write( ByteBuffer.wrap( "THIS".getBytes() ) );
+        channel.close();
+
+        assertThat( new Scanner( provider.newInputStream( smallPath ) ).useDelimiter( "\\A" ).next() ).isEqualTo( small );
+        assertThat( new Scanner( provider.newInputStream( bigPath ) ).useDelimiter( "\\A" ).next() ).isEqualTo( big );
+        assertThat( new Scanner( provider.newInputStream( channelPath ) ).useDelimiter( "\\A" ).next() ).isEqualTo( "THIS" + big.substring( 4 ) );
+    }
+
+    @Test
+    public void testReadBiggerThanStreamThreshold() throws Exception {
+        provider.shutdown();
+        provider = new JGitFileSystemProvider( new HashMap<String, String>() {{
+            put( "org.uberfire.nio.git.stream.threshold", "16" );
+        }} );
+
+        provider.newFileSystem( URI.create( "git://stream-threshold-repo" ), EMPTY_ENV );
+
+        final StringBuilder big = new StringBuilder();
+        for ( int i = 0; i < 1000; i++ ) {
+            big.append( "line " ).append( i ).append( '\n' );
+        }
+
+        final Path path = provider.getPath( URI.create( "git://stream-threshold-repo/big.txt" ) );
+        final OutputStream out = provider.newOutputStream( path );
+        out.write( big.toString().getBytes() );
+        out.close();
+
+        final InputStream in = provider.newInputStream( path );
+        final String content = new Scanner( in ).useDelimiter( "\\A" ).next();
+        in.close();
+
+        assertThat( content ).isEqualTo( big.toString() );
+
+        try {
+            provider.newInputStream( provider.getPath( URI.create( "git://stream-threshold-repo/not_there.txt" ) ) );
+            failBecauseExceptionWasNotThrown( NoSuchFileException.class );
+        } catch ( NoSuchFileException ignored ) {
+        }
+    }
+
     @Test(expected = FileSystemNotFoundException.class)
     public void testGetPathFileSystemNotExisting() {
         provider.getPath( URI.create( "git://master@not-exists-get-repo-name/home" ) );
@@ -18,15 +18,21 @@ package org.uberfire.java.nio.fs.jgit;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.junit.Test;
 import org.uberfire.java.nio.base.version.VersionAttributes;
+import org.uberfire.java.nio.base.version.VersionHistory;
 import org.uberfire.java.nio.base.version.VersionRecord;
+import org.uberfire.java.nio.file.attribute.BasicFileAttributes;
 import org.uberfire.java.nio.fs.jgit.util.JGitUtil;
+import org.uberfire.java.nio.fs.jgit.util.PathChangeIndex;
 
 import static org.eclipse.jgit.api.ListBranchCommand.ListMode.*;
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -56,6 +62,20 @@ public class JGitUtilTest extends AbstractTestInfra {
         assertThat( branchList( git ).size() ).isEqualTo( 1 );
     }
 
+    @Test
+    public void testDeleteOnNewBranchCommitsNothing() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File( parentFolder, "mytest.git" );
+
+        final Git git = JGitUtil.newRepository( gitFolder, true );
+
+        commit( git, "master", "name", "name@example.com", "commit", null, null, false, new HashMap<String, File>() {{
+            put( "file.txt", null );
+        }} );
+
+        assertThat( branchList( git ).size() ).isEqualTo( 0 );
+    }
+
     @Test
     public void testClone() throws IOException {
         final File parentFolder = createTempDirectory();
@@ -157,6 +177,7 @@ public class JGitUtilTest extends AbstractTestInfra {
 
         JGitFileSystem jGitFileSystem = mock(JGitFileSystem.class);
         when(jGitFileSystem.gitRepo()).thenReturn(git);
+        when(jGitFileSystem.getPathChangeIndex()).thenReturn(new PathChangeIndex(git.getRepository()));
 
         VersionAttributes versionAttributes = JGitUtil.buildVersionAttributes(jGitFileSystem, "master", "path/to/file2.txt");
 
@@ -167,4 +188,184 @@ public class JGitUtilTest extends AbstractTestInfra {
         assertEquals("commit 4", records.get(3).comment());
 
     }
+
+    @Test
+    public void testVersionHistoryPages() throws Exception {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File( parentFolder, "mytest.git" );
+
+        final Git git = JGitUtil.newRepository( gitFolder, true );
+
+        for ( int i = 1; i <= 5; i++ ) {
+            final String content = "content " + i;
+            commit( git, "master", "name", "name@example.com", "commit " + i, null, new Date( i * 1000000L ), false, new HashMap<String, File>() {{
+                put( "path/to/file.txt", tempFile( content ) );
+            }} );
+            commit( git, "master", "name", "name@example.com", "other " + i, null, new Date( i * 1000000L + 1000L ), false, new HashMap<String, File>() {{
+                put( "other.txt", tempFile( content ) );
+            }} );
+        }
+
+        final JGitFileSystem fs = mock( JGitFileSystem.class );
+        when( fs.gitRepo() ).thenReturn( git );
+        when( fs.getPathChangeIndex() ).thenReturn( new PathChangeIndex( git.getRepository() ) );
+
+        final VersionHistory history = buildVersionAttributes( fs, "master", "path/to/file.txt" ).history();
+
+        final List<VersionRecord> firstPage = history.records( 0, 2 );
+        assertThat( firstPage ).hasSize( 2 );
+        assertEquals( "commit 5", firstPage.get( 0 ).comment() );
+        assertEquals( "commit 4", firstPage.get( 1 ).comment() );
+
+        final List<VersionRecord> lastPage = history.records( 4, 2 );
+        assertThat( lastPage ).hasSize( 1 );
+        assertEquals( "commit 1", lastPage.get( 0 ).comment() );
+
+        assertThat( history.records( 5, 2 ) ).isEmpty();
+
+        final List<VersionRecord> all = history.records();
+        assertThat( all ).hasSize( 5 );
+        assertEquals( "commit 1", all.get( 0 ).comment() );
+        assertEquals( "commit 5", all.get( 4 ).comment() );
+    }
+
+    @Test
+    public void testCommitReusesUntouchedSubtrees() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File( parentFolder, "mytest.git" );
+
+        final Git git = JGitUtil.newRepository( gitFolder, true );
+
+        commit( git, "master", "name", "name@example.com", "commit 1", null, null, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "content1" ) );
+            put( "path/to/file2.txt", tempFile( "content2" ) );
+            put( "other/file3.txt", tempFile( "content3" ) );
+        }} );
+
+        final ObjectId otherTreeId = checkPath( git, "master", "other" ).getK2();
+
+        commit( git, "master", "name", "name@example.com", "commit 2", null, null, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "new content1" ) );
+        }} );
+
+        assertThat( checkPath( git, "master", "other" ).getK2() ).isEqualTo( otherTreeId );
+        assertThat( checkPath( git, "master", "path/to/file2.txt" ).getK1() ).isEqualTo( FILE );
+
+        final RevCommit lastCommit = getLastCommit( git, "master" );
+        commit( git, "master", "name", "name@example.com", "no changes", null, null, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "new content1" ) );
+        }} );
+        assertThat( getLastCommit( git, "master" ) ).isEqualTo( lastCommit );
+
+        commit( git, "master", "name", "name@example.com", "commit 3", null, null, false, new HashMap<String, File>() {{
+            put( "path", null );
+        }} );
+
+        assertThat( checkPath( git, "master", "path" ).getK1() ).isEqualTo( NOT_FOUND );
+        assertThat( checkPath( git, "master", "other" ).getK2() ).isEqualTo( otherTreeId );
+    }
+
+    @Test
+    public void testPathLookupsFollowBranchChanges() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File( parentFolder, "mytest.git" );
+
+        final Git git = JGitUtil.newRepository( gitFolder, true );
+
+        commit( git, "master", "name", "name@example.com", "commit 1", null, null, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "content1" ) );
+        }} );
+
+        assertThat( checkPath( git, "master", "path/to/file2.txt" ).getK1() ).isEqualTo( NOT_FOUND );
+        assertThat( resolvePath( git, "master", "path/to/file1.txt" ).getSize() ).isEqualTo( 8 );
+        assertThat( listPathContent( git, "master", "path/to" ) ).hasSize( 1 );
+
+        commit( git, "master", "name", "name@example.com", "commit 2", null, null, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "new content1" ) );
+            put( "path/to/file2.txt", tempFile( "content2" ) );
+        }} );
+
+        assertThat( checkPath( git, "master", "path/to/file2.txt" ).getK1() ).isEqualTo( FILE );
+        assertThat( resolvePath( git, "master", "path/to/file1.txt" ).getSize() ).isEqualTo( 12 );
+
+        final List<JGitPathInfo> content = listPathContent( git, "master", "path/to" );
+        assertThat( content ).hasSize( 2 );
+        assertThat( content.get( 0 ).getPath() ).isEqualTo( "path/to/file1.txt" );
+        assertThat( content.get( 1 ).getPath() ).isEqualTo( "path/to/file2.txt" );
+
+        assertThat( listPathContent( git, "master", "path/to/file1.txt" ) ).isEmpty();
+        assertThat( listPathContent( git, "master", "/" ) ).hasSize( 1 );
+        assertThat( checkPath( git, "not_a_branch", "path/to/file1.txt" ).getK1() ).isEqualTo( NOT_FOUND );
+    }
+
+    @Test
+    public void testBasicAttributesTimes() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File( parentFolder, "mytest.git" );
+
+        final Git git = JGitUtil.newRepository( gitFolder, true );
+
+        final JGitFileSystem fs = mock( JGitFileSystem.class );
+        when( fs.gitRepo() ).thenReturn( git );
+        when( fs.getPathChangeIndex() ).thenReturn( new PathChangeIndex( git.getRepository() ) );
+
+        final Date first = new Date( 1000000000000L );
+        final Date second = new Date( 1100000000000L );
+        final Date third = new Date( 1200000000000L );
+
+        commit( git, "master", "name", "name@example.com", "commit 1", null, first, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "content1" ) );
+        }} );
+        commit( git, "master", "name", "name@example.com", "commit 2", null, second, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "new content1" ) );
+            put( "other/file2.txt", tempFile( "content2" ) );
+        }} );
+
+        BasicFileAttributes attrs = buildBasicAttributes( fs, "master", "path/to/file1.txt" );
+        assertThat( attrs.creationTime().toMillis() ).isEqualTo( first.getTime() );
+        assertThat( attrs.lastModifiedTime().toMillis() ).isEqualTo( second.getTime() );
+
+        commit( git, "master", "name", "name@example.com", "commit 3", null, third, false, new HashMap<String, File>() {{
+            put( "other/file2.txt", tempFile( "new content2" ) );
+        }} );
+
+        attrs = buildBasicAttributes( fs, "master", "path/to/file1.txt" );
+        assertThat( attrs.creationTime().toMillis() ).isEqualTo( first.getTime() );
+        assertThat( attrs.lastModifiedTime().toMillis() ).isEqualTo( second.getTime() );
+
+        attrs = buildBasicAttributes( fs, "master", "other" );
+        assertThat( attrs.creationTime().toMillis() ).isEqualTo( second.getTime() );
+        assertThat( attrs.lastModifiedTime().toMillis() ).isEqualTo( third.getTime() );
+
+        attrs = buildBasicAttributes( fs, "master", "/" );
+        assertThat( attrs.creationTime().toMillis() ).isEqualTo( first.getTime() );
+        assertThat( attrs.lastModifiedTime().toMillis() ).isEqualTo( third.getTime() );
+    }
+
+    @Test
+    public void testPathChangeIndexKeepsNewerHead() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File( parentFolder, "mytest.git" );
+
+        final Git git = JGitUtil.newRepository( gitFolder, true );
+        final PathChangeIndex index = new PathChangeIndex( git.getRepository() );
+
+        final Date first = new Date( 1000000000000L );
+        final Date second = new Date( 1100000000000L );
+
+        commit( git, "master", "name", "name@example.com", "commit 1", null, first, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "content1" ) );
+        }} );
+        final ObjectId oldHead = git.getRepository().resolve( "refs/heads/master" );
+        commit( git, "master", "name", "name@example.com", "commit 2", null, second, false, new HashMap<String, File>() {{
+            put( "path/to/file1.txt", tempFile( "new content1" ) );
+        }} );
+        final ObjectId newHead = git.getRepository().resolve( "refs/heads/master" );
+
+        assertThat( index.getTimes( "master", newHead, "path/to/file1.txt" ).getLastModifiedTime() ).isEqualTo( second.getTime() );
+
+        // a reader still holding the previous head is served from the current index, which isn't moved back
+        assertThat( index.getTimes( "master", oldHead, "path/to/file1.txt" ).getLastModifiedTime() ).isEqualTo( second.getTime() );
+        assertThat( index.getTimes( "master", newHead, "path/to/file1.txt" ).getCreationTime() ).isEqualTo( first.getTime() );
+    }
 }
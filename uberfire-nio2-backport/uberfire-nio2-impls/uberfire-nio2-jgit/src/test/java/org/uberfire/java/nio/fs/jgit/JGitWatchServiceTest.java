@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.uberfire.java.nio.file.ClosedWatchServiceException;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.StandardWatchEventKind;
+import org.uberfire.java.nio.file.WatchEvent;
+import org.uberfire.java.nio.file.WatchKey;
+
+import static org.fest.assertions.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class JGitWatchServiceTest extends AbstractTestInfra {
+
+    @Test
+    public void testPollWaitsForTimeout() {
+        final JGitFileSystem fs = (JGitFileSystem) provider.newFileSystem( URI.create( "git://watch-poll" ), EMPTY_ENV );
+        final JGitWatchService ws = new JGitWatchService( fs, 10 );
+
+        final long start = System.currentTimeMillis();
+        assertThat( ws.poll( 200, TimeUnit.MILLISECONDS ) ).isNull();
+        assertThat( System.currentTimeMillis() - start ).isGreaterThanOrEqualTo( 150 );
+
+        ws.publish( fs.getPath( "/" ), events( 1 ) );
+        assertThat( ws.poll( 200, TimeUnit.MILLISECONDS ) ).isNotNull();
+    }
+
+    @Test
+    public void testOverflowWhenFull() {
+        final JGitFileSystem fs = (JGitFileSystem) provider.newFileSystem( URI.create( "git://watch-overflow" ), EMPTY_ENV );
+        final JGitWatchService ws = new JGitWatchService( fs, 3 );
+        final Path root = fs.getPath( "/" );
+
+        ws.publish( root, events( 2 ) );
+        ws.publish( root, events( 2 ) );
+        ws.publish( root, events( 5 ) );
+
+        assertThat( ws.getQueueDepth() ).isEqualTo( 2 );
+        assertThat( ws.getMaxQueueDepth() ).isEqualTo( 2 );
+        assertThat( ws.getPublishedEvents() ).isEqualTo( 9 );
+        assertThat( ws.getOverflowedEvents() ).isEqualTo( 7 );
+
+        assertThat( ws.poll().pollEvents() ).hasSize( 2 );
+        assertThat( ws.getQueueDepth() ).isEqualTo( 0 );
+
+        final List<WatchEvent<?>> overflow = ws.poll().pollEvents();
+        assertThat( overflow ).hasSize( 1 );
+        assertThat( overflow.get( 0 ).kind() ).isEqualTo( StandardWatchEventKind.OVERFLOW );
+        assertThat( overflow.get( 0 ).count() ).isEqualTo( 7 );
+
+        assertThat( ws.poll() ).isNull();
+
+        ws.publish( root, events( 1 ) );
+        assertThat( ws.poll().pollEvents().get( 0 ).kind() ).isEqualTo( StandardWatchEventKind.ENTRY_MODIFY );
+    }
+
+    @Test
+    public void testCloseWakesUpTake() throws Exception {
+        final JGitFileSystem fs = (JGitFileSystem) provider.newFileSystem( URI.create( "git://watch-close" ), EMPTY_ENV );
+        final JGitWatchService ws = (JGitWatchService) fs.newWatchService();
+
+        final List<Exception> errors = new ArrayList<Exception>();
+        final Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    ws.take();
+                } catch ( final Exception ex ) {
+                    errors.add( ex );
+                }
+            }
+        };
+        consumer.start();
+        Thread.sleep( 100 );
+
+        ws.close();
+        consumer.join( 5000 );
+
+        assertThat( consumer.isAlive() ).isFalse();
+        assertThat( errors ).hasSize( 1 );
+        assertThat( errors.get( 0 ) ).isInstanceOf( ClosedWatchServiceException.class );
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<WatchEvent<?>> events( final int count ) {
+        final List<WatchEvent<?>> result = new ArrayList<WatchEvent<?>>( count );
+        for ( int i = 0; i < count; i++ ) {
+            final WatchEvent<Path> event = mock( WatchEvent.class );
+            when( event.kind() ).thenReturn( StandardWatchEventKind.ENTRY_MODIFY );
+            result.add( event );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,15 @@
+package org.uberfire.java.nio.base;
+
+import java.io.OutputStream;
+
+/**
+ * An output stream that stores its content only when closed, e.g. as a commit. A write that can't be completed is
+ * dropped with {@link #abort()} instead, which releases what the stream holds without storing anything.
+ */
+public abstract class AbortableOutputStream extends OutputStream {
+
+    /**
+     * Discards the content written so far; closing the stream afterwards does nothing.
+     */
+    public abstract void abort();
+}
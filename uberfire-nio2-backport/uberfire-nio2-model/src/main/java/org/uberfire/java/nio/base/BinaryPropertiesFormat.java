@@ -0,0 +1,180 @@
+package org.uberfire.java.nio.base;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Compact binary form of {@link Properties}.
+ * <p>
+ * Layout: the {@link #MAGIC} bytes, a version byte, the number of entries and every entry as key, type tag and value.
+ * Strings are length prefixed UTF-8; strings, numbers, booleans, dates and lists or maps of those are written natively,
+ * any other value is embedded as its XStream XML, so whatever the XML format could hold still round trips. Readers
+ * reject versions newer than the one they know, so the version must be bumped on any layout change.
+ */
+final class BinaryPropertiesFormat {
+
+    static final byte[] MAGIC = new byte[]{ 'U', 'F', 'P' };
+    static final byte VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_DATE = 6;
+    private static final byte TYPE_LIST = 7;
+    private static final byte TYPE_MAP = 8;
+    private static final byte TYPE_XSTREAM = 9;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private BinaryPropertiesFormat() {
+    }
+
+    static void write( final Map<String, Object> properties,
+                       final OutputStream out,
+                       final XStream xstream ) throws IOException {
+        final DataOutputStream data = new DataOutputStream( out );
+        data.write( MAGIC );
+        data.writeByte( VERSION );
+        data.writeInt( properties.size() );
+        for ( final Map.Entry<String, Object> entry : properties.entrySet() ) {
+            writeString( data, entry.getKey() );
+            writeValue( data, entry.getValue(), xstream );
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads the content following the {@link #MAGIC} bytes.
+     */
+    static void read( final Map<String, Object> properties,
+                      final InputStream in,
+                      final XStream xstream ) throws IOException {
+        final DataInputStream data = new DataInputStream( in );
+        final byte version = data.readByte();
+        if ( version < 1 || version > VERSION ) {
+            throw new IOException( "Unsupported properties format version " + version );
+        }
+        final int size = data.readInt();
+        for ( int i = 0; i < size; i++ ) {
+            final String key = readString( data );
+            properties.put( key, readValue( data, xstream ) );
+        }
+    }
+
+    private static void writeValue( final DataOutputStream data,
+                                    final Object value,
+                                    final XStream xstream ) throws IOException {
+        if ( value == null ) {
+            data.writeByte( TYPE_NULL );
+        } else if ( value instanceof String ) {
+            data.writeByte( TYPE_STRING );
+            writeString( data, (String) value );
+        } else if ( value instanceof Integer ) {
+            data.writeByte( TYPE_INTEGER );
+            data.writeInt( (Integer) value );
+        } else if ( value instanceof Long ) {
+            data.writeByte( TYPE_LONG );
+            data.writeLong( (Long) value );
+        } else if ( value instanceof Boolean ) {
+            data.writeByte( TYPE_BOOLEAN );
+            data.writeBoolean( (Boolean) value );
+        } else if ( value instanceof Double ) {
+            data.writeByte( TYPE_DOUBLE );
+            data.writeDouble( (Double) value );
+        } else if ( value.getClass() == Date.class ) {
+            data.writeByte( TYPE_DATE );
+            data.writeLong( ( (Date) value ).getTime() );
+        } else if ( value.getClass() == ArrayList.class ) {
+            final List<?> list = (List<?>) value;
+            data.writeByte( TYPE_LIST );
+            data.writeInt( list.size() );
+            for ( final Object item : list ) {
+                writeValue( data, item, xstream );
+            }
+        } else if ( value.getClass() == HashMap.class ) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            data.writeByte( TYPE_MAP );
+            data.writeInt( map.size() );
+            for ( final Map.Entry<?, ?> entry : map.entrySet() ) {
+                writeValue( data, entry.getKey(), xstream );
+                writeValue( data, entry.getValue(), xstream );
+            }
+        } else {
+            data.writeByte( TYPE_XSTREAM );
+            writeString( data, xstream.toXML( value ) );
+        }
+    }
+
+    private static Object readValue( final DataInputStream data,
+                                     final XStream xstream ) throws IOException {
+        final byte type = data.readByte();
+        switch ( type ) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString( data );
+            case TYPE_INTEGER:
+                return data.readInt();
+            case TYPE_LONG:
+                return data.readLong();
+            case TYPE_BOOLEAN:
+                return data.readBoolean();
+            case TYPE_DOUBLE:
+                return data.readDouble();
+            case TYPE_DATE:
+                return new Date( data.readLong() );
+            case TYPE_LIST: {
+                final int size = data.readInt();
+                final List<Object> list = new ArrayList<Object>( Math.min( size, 1024 ) );
+                for ( int i = 0; i < size; i++ ) {
+                    list.add( readValue( data, xstream ) );
+                }
+                return list;
+            }
+            case TYPE_MAP: {
+                final int size = data.readInt();
+                final Map<Object, Object> map = new HashMap<Object, Object>();
+                for ( int i = 0; i < size; i++ ) {
+                    final Object key = readValue( data, xstream );
+                    map.put( key, readValue( data, xstream ) );
+                }
+                return map;
+            }
+            case TYPE_XSTREAM:
+                return xstream.fromXML( readString( data ) );
+            default:
+                throw new IOException( "Unknown properties value type " + type );
+        }
+    }
+
+    private static void writeString( final DataOutputStream data,
+                                     final String value ) throws IOException {
+        final byte[] bytes = value.getBytes( UTF_8 );
+        data.writeInt( bytes.length );
+        data.write( bytes );
+    }
+
+    private static String readString( final DataInputStream data ) throws IOException {
+        final int length = data.readInt();
+        if ( length < 0 ) {
+            throw new IOException( "Malformed properties string length " + length );
+        }
+        final byte[] bytes = new byte[ length ];
+        data.readFully( bytes );
+        return new String( bytes, UTF_8 );
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.base;
+
+import java.util.Map;
+
+/**
+ * File systems made of named heads (e.g. git branches) expose them, so a peer that gets told about a change can
+ * tell whether it already has it.
+ */
+public interface FileSystemRefsAware {
+
+    /**
+     * Returns the current head id of each ref, by ref name.
+     */
+    Map<String, String> getRefs();
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.base;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Text form of {@link FileSystemRefsAware#getRefs()} used on messages and uris: <code>name:id</code> pairs separated
+ * by commas (ref names can't hold a colon).
+ */
+public class FileSystemRefsUtil {
+
+    public static String toString( final Map<String, String> refs ) {
+        final StringBuilder sb = new StringBuilder();
+        final Iterator<Map.Entry<String, String>> iterator = refs.entrySet().iterator();
+        while ( iterator.hasNext() ) {
+            final Map.Entry<String, String> entry = iterator.next();
+            sb.append( entry.getKey() ).append( ':' ).append( entry.getValue() );
+            if ( iterator.hasNext() ) {
+                sb.append( ',' );
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses the text form back, or returns null if it's malformed so the caller can fall back to a full sync.
+     */
+    public static Map<String, String> fromString( final String value ) {
+        if ( value == null || value.isEmpty() ) {
+            return null;
+        }
+        final Map<String, String> refs = new LinkedHashMap<String, String>();
+        for ( final String pair : value.split( "," ) ) {
+            final int index = pair.lastIndexOf( ':' );
+            if ( index <= 0 || index == pair.length() - 1 ) {
+                return null;
+            }
+            refs.put( pair.substring( 0, index ), pair.substring( index + 1 ) );
+        }
+        return refs;
+    }
+
+}
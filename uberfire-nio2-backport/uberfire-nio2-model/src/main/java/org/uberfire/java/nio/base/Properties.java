@@ -3,6 +3,8 @@ package org.uberfire.java.nio.base;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,10 +12,16 @@ import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.XStreamException;
 
 /**
- *
+ * Attributes kept in dot-files, stored as XStream XML or, when {@code org.uberfire.nio.dotfile.format} is set to
+ * {@code binary}, in the more compact {@link BinaryPropertiesFormat}. Both are always read back.
  */
 public class Properties extends HashMap<String, Object> {
 
+    private static final boolean BINARY_FORMAT = "binary".equalsIgnoreCase( System.getProperty( "org.uberfire.nio.dotfile.format", "xml" ) );
+
+    // configured once, XStream is safe to share between threads
+    private static final XStream XSTREAM = new XStream();
+
     public Properties() {
     }
 
@@ -40,12 +48,26 @@ public class Properties extends HashMap<String, Object> {
 
     public void store( final OutputStream out,
                        boolean closeOnFinish ) {
-        final XStream xstream = new XStream();
-        xstream.toXML( this, out );
-        if ( closeOnFinish ) {
-            try {
-                out.close();
-            } catch ( IOException e ) {
+        store( out, closeOnFinish, BINARY_FORMAT );
+    }
+
+    void store( final OutputStream out,
+                final boolean closeOnFinish,
+                final boolean binary ) {
+        try {
+            if ( binary ) {
+                BinaryPropertiesFormat.write( this, out, XSTREAM );
+            } else {
+                XSTREAM.toXML( this, out );
+            }
+        } catch ( final IOException e ) {
+            throw new org.uberfire.java.nio.IOException( e );
+        } finally {
+            if ( closeOnFinish ) {
+                try {
+                    out.close();
+                } catch ( IOException e ) {
+                }
             }
         }
     }
@@ -54,15 +76,44 @@ public class Properties extends HashMap<String, Object> {
         load( in, true );
     }
 
+    /**
+     * Reads content in either format, whatever format this instance would store.
+     */
     public void load( final InputStream in,
                       boolean closeOnFinish ) {
-        final XStream xstream = new XStream();
         final Properties temp = new Properties();
         try {
-            xstream.fromXML( in, temp );
-        } catch ( final XStreamException ex ) {
-            if ( !ex.getMessage().equals( " : input contained no data" ) ) {
-                throw ex;
+            final PushbackInputStream content = new PushbackInputStream( in, BinaryPropertiesFormat.MAGIC.length );
+            final byte[] head = new byte[ BinaryPropertiesFormat.MAGIC.length ];
+            int read = 0;
+            while ( read < head.length ) {
+                final int count = content.read( head, read, head.length - read );
+                if ( count < 0 ) {
+                    break;
+                }
+                read += count;
+            }
+
+            if ( read == head.length && Arrays.equals( head, BinaryPropertiesFormat.MAGIC ) ) {
+                BinaryPropertiesFormat.read( temp, content, XSTREAM );
+            } else if ( read > 0 ) {
+                content.unread( head, 0, read );
+                try {
+                    XSTREAM.fromXML( content, temp );
+                } catch ( final XStreamException ex ) {
+                    if ( !ex.getMessage().equals( " : input contained no data" ) ) {
+                        throw ex;
+                    }
+                }
+            }
+        } catch ( final IOException e ) {
+            throw new org.uberfire.java.nio.IOException( e );
+        } finally {
+            if ( closeOnFinish ) {
+                try {
+                    in.close();
+                } catch ( IOException e ) {
+                }
             }
         }
 
@@ -72,12 +123,6 @@ public class Properties extends HashMap<String, Object> {
             }
         }
         temp.clear();
-        if ( closeOnFinish ) {
-            try {
-                in.close();
-            } catch ( IOException e ) {
-            }
-        }
     }
 
 }
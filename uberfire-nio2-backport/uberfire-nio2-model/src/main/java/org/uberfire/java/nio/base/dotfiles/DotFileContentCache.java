@@ -0,0 +1,60 @@
+package org.uberfire.java.nio.base.dotfiles;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.uberfire.java.nio.base.Properties;
+
+/**
+ * Parsed dot-file contents, keyed by an id of the stored content (e.g. a git blob id), so content that didn't change
+ * is never parsed twice. Holds up to a given number of entries, evicting the least recently used one.
+ * <p>
+ * Callers get their own copy of the cached properties; the values themselves are shared and must not be mutated.
+ */
+public class DotFileContentCache {
+
+    private final Map<Object, Properties> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public DotFileContentCache( final int maxEntries ) {
+        this.entries = new LinkedHashMap<Object, Properties>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<Object, Properties> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized Properties get( final Object contentId ) {
+        final Properties cached = entries.get( contentId );
+        if ( cached == null ) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new Properties( cached );
+    }
+
+    public synchronized void put( final Object contentId,
+                                  final Properties content ) {
+        entries.put( contentId, new Properties( content ) );
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -23,6 +23,17 @@ import java.util.List;
  */
 public interface VersionHistory {
 
+    /**
+     * Returns the complete history, oldest record first.
+     */
     List<VersionRecord> records();
 
+    /**
+     * Returns a page of the history, newest record first; only the requested records are loaded.
+     * @param offset number of (newest) records to skip
+     * @param limit max number of records to return
+     */
+    List<VersionRecord> records( final int offset,
+                                 final int limit );
+
 }
@@ -15,6 +15,11 @@ public final class StandardWatchEventKind {
 
     public static final WatchEvent.Kind<Pair> ENTRY_RENAME = new StdWatchEventKind<Pair>( "ENTRY_RENAME", Pair.class );
 
+    /**
+     * Events were lost, the count of the event tells how many; its context is null.
+     */
+    public static final WatchEvent.Kind<Object> OVERFLOW = new StdWatchEventKind<Object>( "OVERFLOW", Object.class );
+
     private static class StdWatchEventKind<T> implements WatchEvent.Kind<T> {
 
         private final String name;
@@ -1,11 +1,15 @@
 package org.uberfire.java.nio.base;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -76,4 +80,54 @@ public class PropertiesTest {
         assertFalse( properties.containsKey( "key2" ) );
     }
 
+    @Test
+    public void testBinaryState() {
+        final Properties properties = new Properties();
+        final Date dt = new Date();
+        final Map<String, Object> map = new HashMap<String, Object>();
+        map.put( "nested", Arrays.asList( "a", "b" ) );
+
+        properties.put( "int", 10453 );
+        properties.put( "long", 1000000L );
+        properties.put( "date", dt );
+        properties.put( "string", "\u00e7\u00e3o" );
+        properties.put( "list", new ArrayList<String>( Arrays.asList( "one", "two" ) ) );
+        properties.put( "map", map );
+        properties.put( "other", new StringBuilder( "xstream" ).toString().toCharArray() );
+
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        properties.store( binary, true, true );
+        final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        properties.store( xml, true, false );
+
+        assertTrue( binary.size() < xml.size() );
+
+        final Properties loadProperties = new Properties();
+        loadProperties.load( new ByteArrayInputStream( binary.toByteArray() ) );
+
+        assertEquals( 10453, loadProperties.get( "int" ) );
+        assertEquals( 1000000L, loadProperties.get( "long" ) );
+        assertEquals( dt, loadProperties.get( "date" ) );
+        assertEquals( "\u00e7\u00e3o", loadProperties.get( "string" ) );
+        assertEquals( Arrays.asList( "one", "two" ), loadProperties.get( "list" ) );
+        assertEquals( map, loadProperties.get( "map" ) );
+        assertArrayEquals( "xstream".toCharArray(), (char[]) loadProperties.get( "other" ) );
+    }
+
+    @Test
+    public void testReadsLegacyXml() {
+        final String xml = "<org.uberfire.java.nio.base.Properties>\n" +
+                "  <entry>\n" +
+                "    <string>dcore.creator[0]</string>\n" +
+                "    <string>admin</string>\n" +
+                "  </entry>\n" +
+                "</org.uberfire.java.nio.base.Properties>";
+
+        final Properties loadProperties = new Properties();
+        loadProperties.load( new ByteArrayInputStream( xml.getBytes() ) );
+
+        assertEquals( 1, loadProperties.size() );
+        assertEquals( "admin", loadProperties.get( "dcore.creator[0]" ) );
+    }
+
 }
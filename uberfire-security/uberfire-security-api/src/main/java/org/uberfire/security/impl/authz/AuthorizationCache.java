@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.security.impl.authz;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.uberfire.security.authz.AuthorizationResult;
+
+/**
+ * Authorization decisions per resource signature and user, bounded in size (least recently used decisions are
+ * evicted first) and optionally in age.
+ * <p>
+ * This class is also compiled to JavaScript, so it sticks to synchronized methods over plain collections rather than
+ * {@code java.util.concurrent}.
+ */
+public class AuthorizationCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_TTL = 10 * 60 * 1000;
+
+    private final long ttl;
+    private final Map<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public AuthorizationCache() {
+        this( DEFAULT_MAX_ENTRIES, DEFAULT_TTL );
+    }
+
+    /**
+     * @param maxEntries maximum number of decisions kept
+     * @param ttl time in milliseconds a decision is kept, or zero to keep it until evicted or invalidated
+     */
+    public AuthorizationCache( final int maxEntries,
+                               final long ttl ) {
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, Entry> eldest ) {
+                if ( size() > maxEntries ) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized AuthorizationResult get( final String signatureId,
+                                                 final String userId ) {
+        final String key = key( signatureId, userId );
+        final Entry entry = entries.get( key );
+        if ( entry == null ) {
+            misses++;
+            return null;
+        }
+        if ( ttl > 0 && System.currentTimeMillis() - entry.created > ttl ) {
+            entries.remove( key );
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    public synchronized void put( final String signatureId,
+                                  final String userId,
+                                  final AuthorizationResult result ) {
+        entries.put( key( signatureId, userId ), new Entry( signatureId, userId, result ) );
+    }
+
+    /**
+     * Drops the decisions taken for a resource, e.g. once its restrictions changed.
+     */
+    public synchronized void invalidateResource( final String signatureId ) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while ( iterator.hasNext() ) {
+            if ( iterator.next().signatureId.equals( signatureId ) ) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the decisions taken for a user, e.g. once its roles changed.
+     */
+    public synchronized void invalidateUser( final String userId ) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while ( iterator.hasNext() ) {
+            if ( iterator.next().userId.equals( userId ) ) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthorizationCache [size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+
+    private static String key( final String signatureId,
+                               final String userId ) {
+        return signatureId.length() + ":" + signatureId + userId;
+    }
+
+    private static class Entry {
+
+        private final String signatureId;
+        private final String userId;
+        private final AuthorizationResult result;
+        private final long created = System.currentTimeMillis();
+
+        Entry( final String signatureId,
+               final String userId,
+               final AuthorizationResult result ) {
+            this.signatureId = signatureId;
+            this.userId = userId;
+            this.result = result;
+        }
+    }
+}
@@ -20,8 +20,6 @@ import static org.uberfire.commons.validation.PortablePreconditions.*;
 import static org.uberfire.security.authz.AuthorizationResult.*;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.jboss.errai.security.shared.api.Role;
 import org.jboss.errai.security.shared.api.identity.User;
@@ -42,12 +40,17 @@ public class RuntimeResourceDecisionManager implements ResourceDecisionManager {
     private static final UnanimousBasedVoter ALL_VOTER = new UnanimousBasedVoter();
     private static final AffirmativeBasedVoter DEFAULT_VOTER = new AffirmativeBasedVoter();
 
-    private final RuntimeAuthzCache cache = new RuntimeAuthzCache();
+    private final AuthorizationCache cache;
 
     private final RuntimeResourceManager resourceManager;
 
     public RuntimeResourceDecisionManager(final RuntimeResourceManager resourceManager) {
-        this.resourceManager = resourceManager;
+        this(resourceManager, new AuthorizationCache());
+    }
+
+    public RuntimeResourceDecisionManager(final RuntimeResourceManager resourceManager, final AuthorizationCache cache) {
+        this.resourceManager = checkNotNull("resourceManager", resourceManager);
+        this.cache = checkNotNull("cache", cache);
     }
 
     @Override
@@ -73,96 +76,87 @@ public class RuntimeResourceDecisionManager implements ResourceDecisionManager {
         }
         final RuntimeResource runtimeResource = (RuntimeResource) resource;
 
-        if (cache.notContains(user, runtimeResource) || refreshCache) {
-            if (!resourceManager.requiresAuthentication(runtimeResource)) {
-                return ACCESS_ABSTAIN;
+        if (refreshCache) {
+            // restrictions changed, so every decision taken on them is stale
+            cache.invalidateResource(runtimeResource.getSignatureId());
+        } else if (user != null) {
+            final AuthorizationResult cached = cache.get(runtimeResource.getSignatureId(), user.getIdentifier());
+            if (cached != null) {
+                return cached;
             }
+        }
 
-            final RuntimeResourceManager.RuntimeRestriction restriction = resourceManager.getRestriction(runtimeResource);
+        if (!resourceManager.requiresAuthentication(runtimeResource)) {
+            return ACCESS_ABSTAIN;
+        }
 
-            if (restriction == null || restriction.isEmpty()) {
-                return ACCESS_ABSTAIN;
-            }
+        final RuntimeResourceManager.RuntimeRestriction restriction = resourceManager.getRestriction(runtimeResource);
 
-            boolean invertResult = false;
-            VotingStrategy votingStrategy = null;
-
-            for (final String trait : restriction.getTraits()) {
-                if (trait.equals(All.class.getName())) {
-                    votingStrategy = ALL_VOTER;
-                } else if (trait.equals(Authorized.class.getName())) {
-                    if (user != null) {
-                        return ACCESS_GRANTED;
-                    }
-                } else if (trait.equals(Deny.class.getName())) {
-                    invertResult = true;
-                }
-            }
+        if (restriction == null || restriction.isEmpty()) {
+            return ACCESS_ABSTAIN;
+        }
 
-            if (votingStrategy == null) {
-                votingStrategy = DEFAULT_VOTER;
-            }
+        boolean invertResult = false;
+        VotingStrategy votingStrategy = null;
 
-            final RolesResource rolesResource = new RolesResource() {
-                @Override
-                public Collection<Role> getRoles() {
-                    return restriction.getRoles();
+        for (final String trait : restriction.getTraits()) {
+            if (trait.equals(All.class.getName())) {
+                votingStrategy = ALL_VOTER;
+            } else if (trait.equals(Authorized.class.getName())) {
+                if (user != null) {
+                    return ACCESS_GRANTED;
                 }
-            };
-
-            final AuthorizationResult result = votingStrategy.vote(roleDecisionManager.decide(rolesResource, user));
-
-            if (invertResult) {
-                cache.put(user, runtimeResource, result.invert());
-            } else {
-                cache.put(user, runtimeResource, result);
-            }
-            if (resource instanceof Cacheable) {
-                ((Cacheable) resource).markAsCached();
+            } else if (trait.equals(Deny.class.getName())) {
+                invertResult = true;
             }
         }
 
-        return cache.get(user, runtimeResource);
-    }
-
-    class RuntimeAuthzCache {
-
-        final Map<String, Map<String, AuthorizationResult>> internal = new HashMap<String, Map<String, AuthorizationResult>>();
-
-        public boolean notContains(final User user, final RuntimeResource resource) {
+        if (votingStrategy == null) {
+            votingStrategy = DEFAULT_VOTER;
+        }
 
-            final Map<String, AuthorizationResult> result = internal.get(resource.getSignatureId());
-            if (result == null) {
-                return true;
+        final RolesResource rolesResource = new RolesResource() {
+            @Override
+            public Collection<Role> getRoles() {
+                return restriction.getRoles();
             }
+        };
 
-            return !result.containsKey(user.getIdentifier());
-        }
+        final AuthorizationResult vote = votingStrategy.vote(roleDecisionManager.decide(rolesResource, user));
+        final AuthorizationResult result = invertResult ? vote.invert() : vote;
 
-        public void put(final User user, final RuntimeResource resource, final AuthorizationResult authzResult) {
-            if (!internal.containsKey(resource.getSignatureId())) {
-                internal.put(resource.getSignatureId(), new HashMap<String, AuthorizationResult>());
-            }
-            final Map<String, AuthorizationResult> result = internal.get(resource.getSignatureId());
-            AuthorizationResult knowValue = result.get(user.getIdentifier());
-            if (result.containsKey(user.getIdentifier()) && knowValue.equals(authzResult)) {
-                return;
-            }
-            result.put(user.getIdentifier(), authzResult);
+        if (user != null) {
+            cache.put(runtimeResource.getSignatureId(), user.getIdentifier(), result);
+        }
+        if (resource instanceof Cacheable) {
+            ((Cacheable) resource).markAsCached();
         }
 
-        public AuthorizationResult get(final User user, final RuntimeResource resource) {
-            final Map<String, AuthorizationResult> result = internal.get(resource.getSignatureId());
-            if (result == null) {
-                return ACCESS_DENIED;
-            }
+        return result;
+    }
 
-            final AuthorizationResult decision = result.get(user.getIdentifier());
-            if (decision == null) {
-                return ACCESS_DENIED;
-            }
+    /**
+     * Forgets the decisions taken for the given user, to be called when its roles change.
+     */
+    public void invalidate(final User user) {
+        cache.invalidateUser(checkNotNull("user", user).getIdentifier());
+    }
 
-            return decision;
-        }
+    /**
+     * Forgets the restrictions and decisions of the given resource, to be called when its restrictions change.
+     */
+    public void invalidate(final RuntimeResource resource) {
+        checkNotNull("resource", resource);
+        resourceManager.invalidate(resource.getSignatureId());
+        cache.invalidateResource(resource.getSignatureId());
+    }
+
+    public void invalidateAll() {
+        resourceManager.invalidateAll();
+        cache.invalidateAll();
+    }
+
+    public AuthorizationCache getCache() {
+        return cache;
     }
 }
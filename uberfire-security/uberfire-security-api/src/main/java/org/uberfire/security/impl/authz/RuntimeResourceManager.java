@@ -20,7 +20,7 @@ import static java.util.Collections.*;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,9 +33,27 @@ import org.uberfire.security.authz.RuntimeResource;
 
 public class RuntimeResourceManager implements ResourceManager {
 
-    final Map<String, RuntimeRestriction> restrictions = new HashMap<String, RuntimeRestriction>();
+    public static final int DEFAULT_MAX_RESTRICTIONS = 10000;
 
-    private RuntimeRestriction addResource( final RuntimeResource resource ) {
+    final Map<String, RuntimeRestriction> restrictions;
+
+    public RuntimeResourceManager() {
+        this( DEFAULT_MAX_RESTRICTIONS );
+    }
+
+    /**
+     * @param maxRestrictions number of resource restrictions kept, the least recently used ones are rebuilt on demand
+     */
+    public RuntimeResourceManager( final int maxRestrictions ) {
+        this.restrictions = new LinkedHashMap<String, RuntimeRestriction>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, RuntimeRestriction> eldest ) {
+                return size() > maxRestrictions;
+            }
+        };
+    }
+
+    private synchronized RuntimeRestriction addResource( final RuntimeResource resource ) {
 
         final RuntimeRestriction runtimeRestriction = new RuntimeRestriction( resource.getRoles(), resource.getTraits() );
         restrictions.put( resource.getSignatureId(), runtimeRestriction );
@@ -43,10 +61,18 @@ public class RuntimeResourceManager implements ResourceManager {
         return runtimeRestriction;
     }
 
-    public RuntimeRestriction getRestriction( final RuntimeResource resource ) {
+    public synchronized RuntimeRestriction getRestriction( final RuntimeResource resource ) {
         return restrictions.get( resource.getSignatureId() );
     }
 
+    public synchronized void invalidate( final String signatureId ) {
+        restrictions.remove( signatureId );
+    }
+
+    public synchronized void invalidateAll() {
+        restrictions.clear();
+    }
+
     @Override
     public boolean supports( final Resource resource ) {
         if ( resource instanceof RuntimeResource ) {
@@ -68,7 +94,7 @@ public class RuntimeResourceManager implements ResourceManager {
 
         final RuntimeResource runtimeResource = (RuntimeResource) resource;
 
-        RuntimeRestriction restriction = restrictions.get( runtimeResource.getSignatureId() );
+        RuntimeRestriction restriction = getRestriction( runtimeResource );
 
         if ( restriction == null || refreshCache ) {
             restriction = addResource( runtimeResource );
@@ -0,0 +1,71 @@
+package org.uberfire.security.impl.authz;
+
+import static org.junit.Assert.*;
+import static org.uberfire.security.authz.AuthorizationResult.*;
+
+import org.junit.Test;
+
+public class AuthorizationCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final AuthorizationCache cache = new AuthorizationCache( 2, 0 );
+
+        cache.put( "resource1", "john", ACCESS_GRANTED );
+        cache.put( "resource2", "john", ACCESS_DENIED );
+        assertEquals( ACCESS_GRANTED, cache.get( "resource1", "john" ) );
+
+        cache.put( "resource3", "john", ACCESS_GRANTED );
+
+        assertEquals( 2, cache.size() );
+        assertEquals( 1, cache.getEvictions() );
+        assertNull( cache.get( "resource2", "john" ) );
+        assertEquals( ACCESS_GRANTED, cache.get( "resource1", "john" ) );
+        assertEquals( 2, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+    }
+
+    @Test
+    public void testExpiresAfterTtl() throws Exception {
+        final AuthorizationCache cache = new AuthorizationCache( 10, 20 );
+
+        cache.put( "resource1", "john", ACCESS_GRANTED );
+        assertEquals( ACCESS_GRANTED, cache.get( "resource1", "john" ) );
+
+        Thread.sleep( 50 );
+
+        assertNull( cache.get( "resource1", "john" ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testTargetedInvalidation() {
+        final AuthorizationCache cache = new AuthorizationCache();
+
+        cache.put( "resource1", "john", ACCESS_GRANTED );
+        cache.put( "resource1", "mary", ACCESS_GRANTED );
+        cache.put( "resource2", "john", ACCESS_DENIED );
+        cache.put( "resource2", "mary", ACCESS_DENIED );
+
+        cache.invalidateUser( "john" );
+        assertNull( cache.get( "resource1", "john" ) );
+        assertNull( cache.get( "resource2", "john" ) );
+        assertEquals( 2, cache.size() );
+
+        cache.invalidateResource( "resource1" );
+        assertNull( cache.get( "resource1", "mary" ) );
+        assertEquals( ACCESS_DENIED, cache.get( "resource2", "mary" ) );
+
+        cache.invalidateAll();
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testKeysDontCollide() {
+        final AuthorizationCache cache = new AuthorizationCache();
+
+        cache.put( "ab", "c", ACCESS_GRANTED );
+
+        assertNull( cache.get( "a", "bc" ) );
+    }
+}
@@ -11,7 +11,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.uberfire.io.regex.AntPathMatcher;
+import org.uberfire.io.regex.AntPathFilter;
 import org.uberfire.java.nio.file.Path;
 
 import static javax.servlet.http.HttpServletResponse.*;
@@ -23,6 +23,11 @@ public abstract class BaseFilteredServlet extends HttpServlet {
     protected Collection<String> includes = new ArrayList<String>();
     protected Collection<String> excludes = new ArrayList<String>();
 
+    /**
+     * {@link #includes} and {@link #excludes} compiled at {@link #init(ServletConfig)}, so requests don't parse them.
+     */
+    protected AntPathFilter pathFilter = new AntPathFilter( includes, excludes );
+
     @Override
     public void init( final ServletConfig config ) throws ServletException {
         super.init( config );
@@ -34,11 +39,12 @@ public abstract class BaseFilteredServlet extends HttpServlet {
         if ( _excludes != null && !_excludes.trim().isEmpty() ) {
             excludes.addAll( Arrays.asList( _excludes.split( "," ) ) );
         }
+        pathFilter = new AntPathFilter( includes, excludes );
     }
 
     protected boolean validateAccess( final URI uri,
                                       final HttpServletResponse response ) {
-        if ( !AntPathMatcher.filter( includes, excludes, uri ) ) {
+        if ( !pathFilter.accept( uri ) ) {
             logger.error( "Invalid credentials to path." );
             try {
                 response.sendError( SC_FORBIDDEN );
@@ -52,7 +58,7 @@ public abstract class BaseFilteredServlet extends HttpServlet {
 
     protected boolean validateAccess( final Path path,
                                       final HttpServletResponse response ) {
-        if ( !AntPathMatcher.filter( includes, excludes, path ) ) {
+        if ( !pathFilter.accept( path ) ) {
             logger.error( "Invalid credentials to path." );
             try {
                 response.sendError( SC_FORBIDDEN );
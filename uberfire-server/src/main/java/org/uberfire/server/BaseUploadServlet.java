@@ -1,12 +1,19 @@
 package org.uberfire.server;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Iterator;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.FileItemFactory;
+import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
@@ -14,12 +21,37 @@ import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.io.IOService;
+import org.uberfire.java.nio.base.AbortableOutputStream;
 import org.uberfire.java.nio.file.Path;
 
+/**
+ * Base of the upload servlets.
+ * <p>
+ * Uploads are limited and buffered according to the "size-threshold" (bytes kept in memory before an item goes to a
+ * temporary file), "max-file-size", "max-request-size" (-1 for no limit) and "repository" (temporary directory)
+ * init parameters, or the matching <code>org.uberfire.upload.*</code> system properties. Uploaded content is always
+ * copied into the VFS through a stream and never held in memory; {@link #getFileItemIterator(HttpServletRequest)}
+ * reads files straight from the request, to be staged on disk with {@link #stage(InputStream)} until the request was
+ * received completely.
+ */
 public abstract class BaseUploadServlet extends BaseFilteredServlet {
 
     private static final Logger logger = LoggerFactory.getLogger( BaseUploadServlet.class );
 
+    private DiskFileItemFactory factory = new DiskFileItemFactory();
+    private long maxFileSize = -1;
+    private long maxRequestSize = -1;
+
+    @Override
+    public void init( final ServletConfig config ) throws ServletException {
+        super.init( config );
+        final int sizeThreshold = Integer.parseInt( getSetting( config, "size-threshold", "org.uberfire.upload.threshold", String.valueOf( DiskFileItemFactory.DEFAULT_SIZE_THRESHOLD ) ) );
+        final String repository = getSetting( config, "repository", "org.uberfire.upload.repository", null );
+        factory = new DiskFileItemFactory( sizeThreshold, repository == null ? null : new File( repository ) );
+        maxFileSize = Long.parseLong( getSetting( config, "max-file-size", "org.uberfire.upload.maxfilesize", "-1" ) );
+        maxRequestSize = Long.parseLong( getSetting( config, "max-request-size", "org.uberfire.upload.maxrequestsize", "-1" ) );
+    }
+
     protected FileItem getFileItem( HttpServletRequest request ) throws FileUploadException {
         final Iterator iterator = getServletFileUpload().parseRequest( request ).iterator();
         while ( iterator.hasNext() ) {
@@ -31,6 +63,13 @@ public abstract class BaseUploadServlet extends BaseFilteredServlet {
         return null;
     }
 
+    /**
+     * Items of a multipart request in the order they're sent, each readable only once and before moving to the next.
+     */
+    protected FileItemIterator getFileItemIterator( final HttpServletRequest request ) throws FileUploadException, IOException {
+        return getServletFileUpload().getItemIterator( request );
+    }
+
     protected void writeResponse( HttpServletResponse response,
                                   String ok ) throws IOException {
         response.setContentType( "text/html" );
@@ -39,25 +78,111 @@ public abstract class BaseUploadServlet extends BaseFilteredServlet {
     }
 
     protected ServletFileUpload getServletFileUpload() {
-        FileItemFactory factory = new DiskFileItemFactory();
         ServletFileUpload upload = new ServletFileUpload( factory );
         upload.setHeaderEncoding( "UTF-8" );
+        upload.setFileSizeMax( maxFileSize );
+        upload.setSizeMax( maxRequestSize );
         return upload;
     }
 
     protected void writeFile( final IOService ioService,
                               final Path path,
                               final FileItem uploadedItem ) throws IOException {
-        if ( !ioService.exists( path ) ) {
+        final InputStream in = uploadedItem.getInputStream();
+        try {
+            copyInto( ioService, path, in );
+        } finally {
+            in.close();
+            uploadedItem.delete();
+        }
+    }
+
+    protected void writeFile( final IOService ioService,
+                              final Path path,
+                              final File staged ) throws IOException {
+        final InputStream in = new FileInputStream( staged );
+        try {
+            copyInto( ioService, path, in );
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copies the content into a temporary file of the upload repository with a fixed size buffer, deleting it if the
+     * content can't be read to the end.
+     */
+    protected File stage( final InputStream content ) throws IOException {
+        final File staged = File.createTempFile( "upload", ".tmp", factory.getRepository() );
+        boolean received = false;
+        try {
+            final OutputStream out = new FileOutputStream( staged );
+            try {
+                IOUtils.copyLarge( content, out );
+            } finally {
+                out.close();
+            }
+            received = true;
+            return staged;
+        } finally {
+            if ( !received ) {
+                staged.delete();
+            }
+        }
+    }
+
+    /**
+     * The VFS output stream commits when closed, so it's closed only once the copy succeeded; on failure it's aborted,
+     * releasing what it buffered, and a file created for the copy is removed again.
+     */
+    private void copyInto( final IOService ioService,
+                           final Path path,
+                           final InputStream in ) throws IOException {
+        final boolean created = !ioService.exists( path );
+        if ( created ) {
             ioService.createFile( path );
         }
 
-        ioService.write( path, IOUtils.toByteArray( uploadedItem.getInputStream() ) );
+        boolean copied = false;
+        try {
+            final OutputStream out = ioService.newOutputStream( path );
+            try {
+                IOUtils.copyLarge( in, out );
+                copied = true;
+            } finally {
+                if ( copied ) {
+                    out.close();
+                } else {
+                    abort( out );
+                }
+            }
+        } finally {
+            if ( !copied && created ) {
+                ioService.deleteIfExists( path );
+            }
+        }
+    }
 
-        uploadedItem.getInputStream().close();
+    private void abort( final OutputStream out ) {
+        if ( out instanceof AbortableOutputStream ) {
+            ( (AbortableOutputStream) out ).abort();
+        } else {
+            IOUtils.closeQuietly( out );
+        }
     }
 
     protected void logError( Throwable e ) {
         logger.error( "Failed to upload a file.", e );
     }
+
+    private static String getSetting( final ServletConfig config,
+                                      final String param,
+                                      final String property,
+                                      final String defaultValue ) {
+        final String value = config.getInitParameter( param );
+        if ( value != null && !value.trim().isEmpty() ) {
+            return value.trim();
+        }
+        return System.getProperty( property, defaultValue );
+    }
 }
@@ -1,6 +1,8 @@
 package org.uberfire.server;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -12,14 +14,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.attribute.BasicFileAttributeView;
+import org.uberfire.java.nio.file.attribute.BasicFileAttributes;
 
 import static java.lang.String.*;
-
+import static javax.servlet.http.HttpServletResponse.*;
+
+/**
+ * Streams a file of the VFS to the client with a fixed size buffer.
+ * <p>
+ * When the file system gives files a content based key (the blob id on git) it's used as a strong ETag, so clients
+ * can revalidate with {@code If-None-Match}. A single {@code bytes} range is honoured, letting interrupted downloads
+ * resume; multiple ranges are answered with the whole file.
+ */
 public class FileDownloadServlet
         extends BaseFilteredServlet {
 
     private static final Logger logger = LoggerFactory.getLogger( FileDownloadServlet.class );
 
+    private static final int BUFFER_SIZE = 8192;
+
     @Inject
     @Named("ioStrategy")
     private IOService ioService;
@@ -38,22 +52,170 @@ public class FileDownloadServlet
             }
 
             final Path path = ioService.get( uri );
-
-            byte[] bytes = ioService.readAllBytes( path );
+            final BasicFileAttributes attrs = ioService.getFileAttributeView( path, BasicFileAttributeView.class ).readAttributes();
+            final long size = attrs.size();
+            final String etag = attrs.fileKey() == null ? null : "\"" + attrs.fileKey().toString() + "\"";
+
+            response.setHeader( "Accept-Ranges", "bytes" );
+            if ( etag != null ) {
+                response.setHeader( "ETag", etag );
+                if ( matches( request.getHeader( "If-None-Match" ), etag ) ) {
+                    response.setStatus( SC_NOT_MODIFIED );
+                    return;
+                }
+            }
 
             response.setHeader( "Content-Disposition",
                                 format( "attachment; filename=%s;", path.getFileName().toString() ) );
 
-            response.setContentType( "application/octet-stream" );
+            response.setContentType( contentType( path ) );
+
+            long[] range = null;
+            final String rangeHeader = request.getHeader( "Range" );
+            final String ifRange = request.getHeader( "If-Range" );
+            if ( rangeHeader != null && ( ifRange == null || ifRange.equals( etag ) ) ) {
+                range = parseRange( rangeHeader, size );
+                if ( range != null && range.length == 0 ) {
+                    response.setHeader( "Content-Range", "bytes */" + size );
+                    response.sendError( SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+                    return;
+                }
+            }
 
-            response.getOutputStream().write(
-                    bytes,
-                    0,
-                    bytes.length );
+            final long offset;
+            final long length;
+            if ( range == null ) {
+                offset = 0;
+                length = size;
+            } else {
+                offset = range[ 0 ];
+                length = range[ 1 ] - range[ 0 ] + 1;
+                response.setStatus( SC_PARTIAL_CONTENT );
+                response.setHeader( "Content-Range", "bytes " + range[ 0 ] + "-" + range[ 1 ] + "/" + size );
+            }
+            setContentLength( response, length );
+
+            final InputStream in = ioService.newInputStream( path );
+            try {
+                copy( in, response.getOutputStream(), offset, length );
+            } finally {
+                in.close();
+            }
 
         } catch ( final Exception e ) {
             logger.error( "Failed to download a file.", e );
         }
 
     }
+
+    protected String contentType( final Path path ) {
+        final String fileName = path.getFileName().toString();
+        final int dot = fileName.lastIndexOf( '.' );
+        if ( dot >= 0 ) {
+            final MimeType mimeType = MimeType.fromExtension( fileName.substring( dot ) );
+            if ( mimeType != null ) {
+                return mimeType.getType();
+            }
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * @return whether an {@code If-None-Match} header lists the given entity tag
+     */
+    static boolean matches( final String ifNoneMatch,
+                            final String etag ) {
+        if ( ifNoneMatch == null ) {
+            return false;
+        }
+        for ( final String candidate : ifNoneMatch.split( "," ) ) {
+            final String value = candidate.trim();
+            if ( value.equals( "*" ) || value.equals( etag ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a {@code Range} header holding a single byte range.
+     * @return first and last byte positions (inclusive), an empty array if the range can't be satisfied, or null when
+     * the header should be ignored and the whole file sent (malformed, other units or several ranges)
+     */
+    static long[] parseRange( final String header,
+                              final long size ) {
+        final String value = header.trim();
+        if ( !value.startsWith( "bytes=" ) || value.indexOf( ',' ) >= 0 ) {
+            return null;
+        }
+        final String spec = value.substring( "bytes=".length() ).trim();
+        final int dash = spec.indexOf( '-' );
+        if ( dash < 0 ) {
+            return null;
+        }
+        try {
+            final String first = spec.substring( 0, dash ).trim();
+            final String last = spec.substring( dash + 1 ).trim();
+            if ( first.isEmpty() ) {
+                if ( last.isEmpty() ) {
+                    return null;
+                }
+                final long suffix = Long.parseLong( last );
+                if ( suffix <= 0 || size == 0 ) {
+                    return new long[ 0 ];
+                }
+                return new long[]{ Math.max( 0, size - suffix ), size - 1 };
+            }
+            final long start = Long.parseLong( first );
+            final long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong( last );
+            if ( end < start ) {
+                return null;
+            }
+            if ( start >= size ) {
+                return new long[ 0 ];
+            }
+            return new long[]{ start, Math.min( end, size - 1 ) };
+        } catch ( final NumberFormatException e ) {
+            return null;
+        }
+    }
+
+    private static void setContentLength( final HttpServletResponse response,
+                                          final long length ) {
+        if ( length <= Integer.MAX_VALUE ) {
+            response.setContentLength( (int) length );
+        } else {
+            response.setHeader( "Content-Length", String.valueOf( length ) );
+        }
+    }
+
+    private static void copy( final InputStream in,
+                              final OutputStream out,
+                              final long offset,
+                              final long length ) throws IOException {
+        long toSkip = offset;
+        while ( toSkip > 0 ) {
+            final long skipped = in.skip( toSkip );
+            if ( skipped <= 0 ) {
+                if ( in.read() < 0 ) {
+                    return;
+                }
+                toSkip--;
+            } else {
+                toSkip -= skipped;
+            }
+        }
+
+        final byte[] buffer = new byte[ BUFFER_SIZE ];
+        long remaining = length;
+        while ( remaining > 0 ) {
+            final int read = in.read( buffer, 0, (int) Math.min( buffer.length, remaining ) );
+            if ( read < 0 ) {
+                break;
+            }
+            out.write( buffer, 0, read );
+            remaining -= read;
+        }
+        out.flush();
+    }
 }
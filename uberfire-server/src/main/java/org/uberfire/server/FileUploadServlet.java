@@ -1,8 +1,14 @@
 package org.uberfire.server;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.servlet.ServletException;
@@ -10,7 +16,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
 import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.io.FilenameUtils;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.Path;
 
@@ -51,6 +61,15 @@ public class FileUploadServlet
                 writeResponse( response,
                                RESPONSE_OK );
 
+            } else if ( request.getParameter( PARAM_FOLDER ) != null && request.getParameter( PARAM_FILENAME ) == null ) {
+
+                if ( !writeFiles( request, response, request.getParameter( PARAM_FOLDER ) ) ) {
+                    return;
+                }
+
+                writeResponse( response,
+                               RESPONSE_OK );
+
             } else if ( request.getParameter( PARAM_FOLDER ) != null ) {
 
                 //See https://bugzilla.redhat.com/show_bug.cgi?id=1091204
@@ -87,6 +106,12 @@ public class FileUploadServlet
             writeResponse( response,
                            RESPONSE_FAIL );
 
+        } catch ( FileUploadBase.FileUploadIOException e ) {
+            //Size limits hit while a file is streamed from the request come wrapped in an IOException
+            logError( e.getCause() );
+            writeResponse( response,
+                           RESPONSE_FAIL );
+
         } catch ( URISyntaxException e ) {
             logError( e );
             writeResponse( response,
@@ -94,6 +119,79 @@ public class FileUploadServlet
         }
     }
 
+    /**
+     * Writes every file of the request into the folder, under its original name, committing them all in one batch.
+     * Files are read from the request with a fixed buffer and staged on disk, and nothing is written until the whole
+     * request was received and every name validated; if writing then fails, the files the batch created are removed
+     * again.
+     * @return false if a file was refused, the response being already sent
+     */
+    private boolean writeFiles( final HttpServletRequest request,
+                                final HttpServletResponse response,
+                                final String folder ) throws FileUploadException, IOException, URISyntaxException {
+        final Map<Path, File> staged = new LinkedHashMap<Path, File>();
+        try {
+            final FileItemIterator iterator = getFileItemIterator( request );
+            while ( iterator.hasNext() ) {
+                final FileItemStream item = iterator.next();
+                final String fileName = FilenameUtils.getName( item.getName() );
+                if ( item.isFormField() || fileName == null || fileName.isEmpty() ) {
+                    continue;
+                }
+
+                final URI uri = new URI( folder + "/" + fileName );
+
+                if ( !validateAccess( uri,
+                                      response ) ) {
+                    return false;
+                }
+
+                final InputStream in = item.openStream();
+                try {
+                    staged.put( ioService.get( uri ), stage( in ) );
+                } finally {
+                    in.close();
+                }
+            }
+
+            if ( !staged.isEmpty() ) {
+                writeBatch( staged );
+            }
+        } finally {
+            for ( final File file : staged.values() ) {
+                file.delete();
+            }
+        }
+        return true;
+    }
+
+    private void writeBatch( final Map<Path, File> staged ) throws IOException {
+        final List<Path> created = new ArrayList<Path>();
+        boolean written = false;
+        ioService.startBatch( staged.keySet().iterator().next().getFileSystem() );
+        try {
+            for ( final Map.Entry<Path, File> entry : staged.entrySet() ) {
+                if ( !ioService.exists( entry.getKey() ) ) {
+                    created.add( entry.getKey() );
+                }
+                writeFile( ioService,
+                           entry.getKey(),
+                           entry.getValue() );
+            }
+            written = true;
+        } finally {
+            try {
+                if ( !written ) {
+                    for ( final Path path : created ) {
+                        ioService.deleteIfExists( path );
+                    }
+                }
+            } finally {
+                ioService.endBatch();
+            }
+        }
+    }
+
     private String getExtension( final String originalFileName ) {
         if ( originalFileName.contains( "." ) ) {
             return "." + originalFileName.substring( originalFileName.lastIndexOf( "." ) + 1 );
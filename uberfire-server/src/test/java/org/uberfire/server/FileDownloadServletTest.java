@@ -0,0 +1,50 @@
+package org.uberfire.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FileDownloadServletTest {
+
+    @Test
+    public void testRange() {
+        assertArrayEquals( new long[]{ 0, 99 }, FileDownloadServlet.parseRange( "bytes=0-99", 1000 ) );
+        assertArrayEquals( new long[]{ 500, 999 }, FileDownloadServlet.parseRange( "bytes=500-2000", 1000 ) );
+    }
+
+    @Test
+    public void testOpenEndedRange() {
+        assertArrayEquals( new long[]{ 900, 999 }, FileDownloadServlet.parseRange( "bytes=900-", 1000 ) );
+    }
+
+    @Test
+    public void testSuffixRange() {
+        assertArrayEquals( new long[]{ 900, 999 }, FileDownloadServlet.parseRange( "bytes=-100", 1000 ) );
+        assertArrayEquals( new long[]{ 0, 999 }, FileDownloadServlet.parseRange( "bytes=-5000", 1000 ) );
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        assertEquals( 0, FileDownloadServlet.parseRange( "bytes=1000-", 1000 ).length );
+        assertEquals( 0, FileDownloadServlet.parseRange( "bytes=-0", 1000 ).length );
+        assertEquals( 0, FileDownloadServlet.parseRange( "bytes=-10", 0 ).length );
+    }
+
+    @Test
+    public void testIgnoredRange() {
+        assertNull( FileDownloadServlet.parseRange( "bytes=0-9,20-29", 1000 ) );
+        assertNull( FileDownloadServlet.parseRange( "items=0-9", 1000 ) );
+        assertNull( FileDownloadServlet.parseRange( "bytes=9-0", 1000 ) );
+        assertNull( FileDownloadServlet.parseRange( "bytes=a-b", 1000 ) );
+        assertNull( FileDownloadServlet.parseRange( "bytes=-", 1000 ) );
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue( FileDownloadServlet.matches( "\"abc\"", "\"abc\"" ) );
+        assertTrue( FileDownloadServlet.matches( "\"xyz\", \"abc\"", "\"abc\"" ) );
+        assertTrue( FileDownloadServlet.matches( "*", "\"abc\"" ) );
+        assertFalse( FileDownloadServlet.matches( "\"xyz\"", "\"abc\"" ) );
+        assertFalse( FileDownloadServlet.matches( null, "\"abc\"" ) );
+    }
+}